@@ -17,6 +17,8 @@ package org.jwatter.browser;
 
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -157,6 +159,24 @@ public abstract class BaseWebAutomationFramework implements
 		throw new NotImplementedException();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.WebAutomationFramework#executeJavascript(java.lang.String, java.lang.Object[])
+	 */
+	public Object executeJavascript (String script, Object... arguments)
+			throws Exception {
+		throw new NotImplementedException();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.WebAutomationFramework#evaluateJavascript(java.lang.String, java.lang.Object[])
+	 */
+	public Object evaluateJavascript (String script, Object... arguments)
+			throws Exception {
+		return executeJavascript(script, arguments);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.jwatter.WebAutomationFramework#setTargetToFrame(int)
@@ -181,6 +201,25 @@ public abstract class BaseWebAutomationFramework implements
 		throw new NotImplementedException();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.WebAutomationFramework#setTargetToFramePath(java.util.List)
+	 */
+	public void setTargetToFramePath (List<String> framePath) throws Exception {
+		// the current target is not tracked, so the path is relative to the
+		// top-level document
+		StringBuilder frameAddress = new StringBuilder();
+		for (String name : framePath) {
+			if (frameAddress.length() > 0) {
+				frameAddress.append('.');
+			}
+			frameAddress.append(name);
+		}
+		if (frameAddress.length() > 0) {
+			setTargetToFrameWithId(frameAddress.toString());
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.jwatter.WebAutomationFramework#setTargetToWindow(java.lang.String)
@@ -213,6 +252,15 @@ public abstract class BaseWebAutomationFramework implements
 		throw new NotImplementedException();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.WebAutomationFramework#getTargetFrameAddress()
+	 */
+	public String getTargetFrameAddress () throws Exception {
+		// the target is not tracked
+		return null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1489,4 +1537,29 @@ public abstract class BaseWebAutomationFramework implements
 			Map<String, String> attributes) {
 		throw new NotImplementedException();
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.jwatter.WebAutomationFramework#
+	 * harvestElements(java.util.Collection, java.util.Collection, boolean)
+	 */
+	public Map<String, List<Element>> harvestElements (
+			Collection<String> tagNames, Collection<String> attributeNames,
+			boolean fetchText) {
+		Map<String, List<Element>> harvested =
+				new LinkedHashMap<String, List<Element>>();
+		String[] attributes =
+				attributeNames.toArray(new String[attributeNames.size()]);
+		for (String tagName : tagNames) {
+			List<Element> elements = getElementsByName(tagName);
+			for (Element element : elements) {
+				if (attributes.length > 0) {
+					element.prefetch(attributes);
+				}
+			}
+			harvested.put(tagName, elements);
+		}
+		return harvested;
+	}
 }
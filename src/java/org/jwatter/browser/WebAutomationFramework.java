@@ -16,6 +16,7 @@ limitations under the License.
 package org.jwatter.browser;
 
 import java.net.URISyntaxException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -169,6 +170,44 @@ public interface WebAutomationFramework {
 	 */
 	public void enableJavascriptConfirm () throws Exception;
 
+	/**
+	 * Executes JavaScript in the currently targeted window or frame. The
+	 * script is the body of a function; it can access the arguments through
+	 * <code>arguments</code> and must use <code>return</code> to return a
+	 * value.
+	 * 
+	 * @param script
+	 *             the script to execute
+	 * @param arguments
+	 *             the arguments of the script
+	 * @return the value returned by the script: a Boolean, Long, String,
+	 *         List or null
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	public Object executeJavascript (String script, Object... arguments)
+			throws Exception;
+
+	/**
+	 * Evaluates JavaScript that only reads the currently targeted window or
+	 * frame, such as a readiness check. Unlike
+	 * {@link #executeJavascript(String, Object...)}, the script must not
+	 * navigate, replace frames or close windows, so the browser target is
+	 * known to be unchanged afterwards.
+	 * 
+	 * @param script
+	 *             the script to evaluate, as for
+	 *             {@link #executeJavascript(String, Object...)}
+	 * @param arguments
+	 *             the arguments of the script
+	 * @return the value returned by the script: a Boolean, Long, String,
+	 *         List or null
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	public Object evaluateJavascript (String script, Object... arguments)
+			throws Exception;
+
 	/**
 	 * Set the target of subsequent browser operations to the specified frame.
 	 * 
@@ -212,6 +251,24 @@ public interface WebAutomationFramework {
 	public void setTargetToFrameWithName (@HtmlAttribute("name") String frameAddress)
 			throws Exception;
 
+	/**
+	 * Set the target of subsequent browser operations to a nested frame in the
+	 * window that is the current target. The path lists the names of the
+	 * frames from the top-level document of the window down to the requested
+	 * frame, where each <i>name</i> can be a frame id, frame name, or frame
+	 * index (zero-based). Frameworks that track the current target only
+	 * switch through the part of the path that differs from the current
+	 * target; other frameworks require that the top-level document of the
+	 * window is the current target.
+	 * 
+	 * @param framePath
+	 *             the names of the frames from the top-level document to the
+	 *             requested frame
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	public void setTargetToFramePath (List<String> framePath) throws Exception;
+
 	/**
 	 * Set the target of subsequent browser operations to the window with the
 	 * specified name, or to the default window.
@@ -265,6 +322,20 @@ public interface WebAutomationFramework {
 	 */
 	public String getMostRecentWindowName () throws Exception;
 
+	/**
+	 * Returns the address of the frame that is the current target of browser
+	 * operations, in the form <i>name</i>[.<i>name</i>...], relative to the
+	 * window returned by {@link #getWindowName()}. Frameworks that track the
+	 * current target use this to skip switching to a frame that is already
+	 * the target.
+	 * 
+	 * @return the address of the target frame, or null if the target is not a
+	 *         frame or the target frame is not known
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	public String getTargetFrameAddress () throws Exception;
+
 	/**
 	 * Returns the URL of the current page.
 	 * 
@@ -2177,4 +2248,27 @@ public interface WebAutomationFramework {
 	 */
 	public List<Element> getElementsByName (String tagName,
 			Map<String, String> attributes);
+
+	/**
+	 * Find the elements with several tag names in the current page and fetch
+	 * their attributes, and optionally their text, in as few round trips to
+	 * the browser as possible. Subsequent calls of
+	 * {@link Element#getAttributeValue(String)} with the specified attributes
+	 * and of {@link Element#getText()} on the returned elements do not query
+	 * the browser again, so they return the values at the time of the
+	 * harvest. Use the returned elements only to inspect the page as it was;
+	 * look up elements again after acting on the page.
+	 * 
+	 * @param tagNames
+	 *            the tag names of the elements to look for, in lower case
+	 * @param attributeNames
+	 *            the attributes to fetch for all elements
+	 * @param fetchText
+	 *            if true, the text of the elements is fetched as well
+	 * @return a mapping from each tag name to all elements with that tag name,
+	 *            in document order
+	 */
+	public Map<String, List<Element>> harvestElements (
+			Collection<String> tagNames, Collection<String> attributeNames,
+			boolean fetchText);
 }
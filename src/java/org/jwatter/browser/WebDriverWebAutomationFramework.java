@@ -17,23 +17,27 @@ package org.jwatter.browser;
 
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.Keys;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 
 import org.jwatter.browser.finders.By;
 import org.jwatter.browser.finders.ByUrlFilter;
 import org.jwatter.html.Element;
 import org.jwatter.html.NoSuchOptionException;
-import org.jwatter.html.WebDriverElement;
+import org.jwatter.html.WebDriverElementMap;
+import org.jwatter.util.StringUtil;
 
 /**
  * An implementation of the web automation framework interface for WebDriver.
@@ -52,6 +56,15 @@ public abstract class WebDriverWebAutomationFramework
 	protected WebDriver browser;
 	protected LinkedHashMap<String, String> windowNames;
 	protected String defaultWindowHandle;
+	// wrappers for the elements on the current page
+	protected WebDriverElementMap elementMap;
+	// handle of the window that was last made the target, or null if not
+	// known; only reliable while targetFramePath is not null
+	protected String targetWindowHandle;
+	// path of the frame that is the current target, empty if the target is
+	// the top-level document, or null if not known because an action may have
+	// navigated or closed a window or frame since the target was set
+	protected List<String> targetFramePath;
 
 	/**
 	 * Creates a new instance.
@@ -60,11 +73,121 @@ public abstract class WebDriverWebAutomationFramework
 		browser = null;
 		windowNames = new LinkedHashMap<String, String>();
 		defaultWindowHandle = null;
+		elementMap = null;
+		targetWindowHandle = null;
+		targetFramePath = null;
 	}
 	
 	protected void initBrowser () {
 		defaultWindowHandle = browser.getWindowHandle();
 		windowNames.put(defaultWindowHandle, defaultWindowHandle);
+		setTarget(defaultWindowHandle);
+	}
+
+	/**
+	 * Records that the top-level document of a window is the current target.
+	 * 
+	 * @param windowHandle
+	 *            the window handle, or null if the target is not known
+	 */
+	protected void setTarget (String windowHandle) {
+		targetWindowHandle = windowHandle;
+		targetFramePath = windowHandle != null ? new ArrayList<String>() : null;
+	}
+
+	/**
+	 * Records that an action may have changed the current target, by
+	 * navigating a window or frame, replacing a frameset or closing a window.
+	 * Called through {@link #pageChanged()} by actions that can navigate:
+	 * clicks on links, buttons and images, pressing Enter, and scripts run
+	 * with executeJavascript.
+	 * The frame is switched from the top-level document the next time a frame
+	 * becomes the target, and the window is checked with the browser the next
+	 * time a window becomes the target.
+	 */
+	protected void forgetTargetFrame () {
+		targetFramePath = null;
+	}
+
+	/**
+	 * Records that the target moved into a child frame of the current
+	 * target.
+	 * 
+	 * @param frameAddress
+	 *            the address of the child frame, relative to the current target
+	 */
+	protected void addTargetFrame (String frameAddress) {
+		if (targetFramePath != null) {
+			for (String name : frameAddress.split("\\.")) {
+				targetFramePath.add(name);
+			}
+		}
+	}
+
+	/**
+	 * Returns the handle of a window with a known name, without asking the
+	 * browser.
+	 * 
+	 * @return the window handle, or null if the name is not known
+	 */
+	protected String getKnownWindowHandle (String windowName) {
+		if (windowNames.containsKey(windowName)) {
+			return windowName;
+		}
+		for (Entry<String, String> window : windowNames.entrySet()) {
+			if (window.getValue().equals(windowName)) {
+				return window.getKey();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the browser as a JavaScript executor, or null if the browser
+	 * does not support JavaScript.
+	 */
+	protected JavascriptExecutor getJavascriptExecutor () {
+		return browser instanceof JavascriptExecutor
+				? (JavascriptExecutor) browser : null;
+	}
+
+	/**
+	 * Returns the map of element wrappers for the current page.
+	 */
+	protected WebDriverElementMap getElementMap () {
+		if (elementMap == null) {
+			elementMap = new WebDriverElementMap(getJavascriptExecutor());
+		}
+		return elementMap;
+	}
+
+	/**
+	 * Discards the values cached by the element wrappers of the current page.
+	 * Must be called after an action that can change elements of the page.
+	 */
+	protected void invalidateElementMap () {
+		if (elementMap != null) {
+			elementMap.invalidate();
+		}
+	}
+
+	/**
+	 * Records that an action may have navigated: forgets the target frame and
+	 * the element wrappers of the current page.
+	 */
+	protected void pageChanged () {
+		forgetTargetFrame();
+		clearElementMap();
+	}
+
+	/**
+	 * Forgets the element wrappers of the current page. Must be called
+	 * whenever the browser navigates to another page.
+	 */
+	protected void clearElementMap () {
+		if (elementMap != null) {
+			elementMap.clear();
+		}
 	}
 
 	/*
@@ -79,6 +202,8 @@ public abstract class WebDriverWebAutomationFramework
 		browser = null;
 		windowNames.clear();
 		defaultWindowHandle = null;
+		elementMap = null;
+		setTarget(null);
 	}
 
 	/*
@@ -93,6 +218,8 @@ public abstract class WebDriverWebAutomationFramework
 			defaultWindowHandle = null;
 		}
 		browser.close();
+		clearElementMap();
+		setTarget(null);
 	}
 
 	/*
@@ -116,6 +243,9 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void loadUrl (String url) throws Exception {
 		browser.get(url);
+		clearElementMap();
+		// the frame that was the target may be gone
+		targetFramePath = null;
 	}
 
 	/*
@@ -126,6 +256,9 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void back () throws Exception {
 		browser.navigate().back();
+		clearElementMap();
+		// the frame that was the target may be gone
+		targetFramePath = null;
 	}
 
 	/*
@@ -137,6 +270,9 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void forward () throws Exception {
 		browser.navigate().forward();
+		clearElementMap();
+		// the frame that was the target may be gone
+		targetFramePath = null;
 	}
 
 	/*
@@ -179,6 +315,28 @@ public abstract class WebDriverWebAutomationFramework
 				"if(typeof(window.__webdriver__savedconfirm)!=undefined&&window.__webdriver_savedconfirm!=undefined){window.confirm=window.__webdriver_savedconfirm;window.__webdriver_savedconfirm=undefined;};");
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.BaseWebAutomationFramework#executeJavascript(java.lang.String, java.lang.Object[])
+	 */
+	@Override
+	public Object executeJavascript (String script, Object... arguments)
+			throws Exception {
+		pageChanged();
+		return ((JavascriptExecutor) browser).executeScript(script, arguments);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.BaseWebAutomationFramework#evaluateJavascript(java.lang.String, java.lang.Object[])
+	 */
+	@Override
+	public Object evaluateJavascript (String script, Object... arguments)
+			throws Exception {
+		// a read-only script leaves the target as it is
+		return ((JavascriptExecutor) browser).executeScript(script, arguments);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.jwatter.BaseWebAutomationFramework#setTargetToFrame(int)
@@ -186,6 +344,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void setTargetToFrame (int frameIndex) throws Exception {
 		browser.switchTo().frame(frameIndex);
+		addTargetFrame(String.valueOf(frameIndex));
 	}
 
 	/*
@@ -195,6 +354,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void setTargetToFrameWithId (String frameAddress) throws Exception {
 		browser.switchTo().frame(frameAddress);
+		addTargetFrame(frameAddress);
 	}
 
 	/*
@@ -204,6 +364,40 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void setTargetToFrameWithName (String frameAddress) throws Exception {
 		browser.switchTo().frame(frameAddress);
+		addTargetFrame(frameAddress);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.BaseWebAutomationFramework#setTargetToFramePath(java.util.List)
+	 */
+	@Override
+	public void setTargetToFramePath (List<String> framePath) throws Exception {
+		long start = System.currentTimeMillis();
+		int targetDepth = targetFramePath != null ? targetFramePath.size() : -1;
+		int common;
+		if (targetDepth >= 0 && targetDepth <= framePath.size()
+				&& framePath.subList(0, targetDepth).equals(targetFramePath)) {
+			// the requested frame is the target or one of its descendants
+			common = targetDepth;
+		}
+		else {
+			// WebDriver cannot switch to a parent frame, start from the top
+			browser.switchTo().defaultContent();
+			targetFramePath = new ArrayList<String>();
+			common = 0;
+		}
+		if (common < framePath.size()) {
+			// WebDriver switches through a dotted frame path in one call
+			List<String> remaining = framePath.subList(common, framePath.size());
+			browser.switchTo().frame(StringUtil.join(remaining, "."));
+			targetFramePath.addAll(remaining);
+		}
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("switched to frame " + framePath + " through "
+					+ (framePath.size() - common) + " of " + framePath.size()
+					+ " frames in " + (System.currentTimeMillis() - start) + " ms");
+		}
 	}
 
 	/*
@@ -212,13 +406,48 @@ public abstract class WebDriverWebAutomationFramework
 	 */
 	@Override
 	public void setTargetToWindow (String windowName) throws Exception {
+		String windowHandle = windowName != null
+				? getKnownWindowHandle(windowName) : defaultWindowHandle;
+		if (windowHandle != null && windowHandle.equals(targetWindowHandle)) {
+			if (targetFramePath != null) {
+				// already in the right window, at most leave the current frame
+				if (!targetFramePath.isEmpty()) {
+					browser.switchTo().defaultContent();
+					targetFramePath.clear();
+				}
+				return;
+			}
+			// an action may have closed the window, so ask the browser
+			if (isCurrentWindow(windowHandle)) {
+				browser.switchTo().defaultContent();
+				setTarget(windowHandle);
+				return;
+			}
+		}
 		syncWindowNames();
 		if (windowName != null) {
 			browser.switchTo().window(windowName);
-			windowNames.put(browser.getWindowHandle(), windowName);
+			windowHandle = browser.getWindowHandle();
+			windowNames.put(windowHandle, windowName);
 		}
 		else {
 			browser.switchTo().window(defaultWindowHandle);
+			windowHandle = defaultWindowHandle;
+		}
+		setTarget(windowHandle);
+	}
+
+	/**
+	 * Returns true if the browser still targets the window with the specified
+	 * handle.
+	 */
+	protected boolean isCurrentWindow (String windowHandle) {
+		try {
+			return windowHandle.equals(browser.getWindowHandle());
+		}
+		catch (WebDriverException e) {
+			// the window is closed
+			return false;
 		}
 	}
 
@@ -228,6 +457,10 @@ public abstract class WebDriverWebAutomationFramework
 	 */
 	@Override
 	public String getWindowName () throws Exception {
+		if (targetWindowHandle != null && targetFramePath != null
+				&& windowNames.containsKey(targetWindowHandle)) {
+			return windowNames.get(targetWindowHandle);
+		}
 		syncWindowNames();
 		return windowNames.get(browser.getWindowHandle());
 	}
@@ -249,6 +482,25 @@ public abstract class WebDriverWebAutomationFramework
 		List<String> windownames = getWindowNames();
 		return windownames.get(windownames.size() - 1);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.BaseWebAutomationFramework#getTargetFrameAddress()
+	 */
+	@Override
+	public String getTargetFrameAddress () throws Exception {
+		if (targetFramePath == null || targetFramePath.isEmpty()) {
+			return null;
+		}
+		StringBuilder address = new StringBuilder();
+		for (String name : targetFramePath) {
+			if (address.length() > 0) {
+				address.append('.');
+			}
+			address.append(name);
+		}
+		return address.toString();
+	}
 	
 	protected void syncWindowNames () throws Exception {
 		Set<String> windowhandles = browser.getWindowHandles();
@@ -304,6 +556,7 @@ public abstract class WebDriverWebAutomationFramework
 	 */
 	@Override
 	public void clickButtonWithId (String id) throws NoSuchElementException {
+		pageChanged();
 		findButtonWithId(id).click();
 	}
 
@@ -315,6 +568,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickButtonWithName (String name, int which)
 			throws NoSuchElementException, Exception {
+		pageChanged();
 		findButtonWithName(name, which).click();
 	}
 
@@ -328,6 +582,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickButtonWithText (String text, int which)
 			throws NoSuchElementException, Exception {
+		pageChanged();
 		findButtonWithText(text, which).click();
 	}
 
@@ -341,6 +596,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickButtonWithTitle (String title, int which)
 			throws NoSuchElementException, Exception {
+		pageChanged();
 		findButtonWithTitle(title, which).click();
 	}
 
@@ -354,6 +610,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickImageWithUrl (String imageurl, int which)
 			throws NoSuchElementException, URISyntaxException, Exception {
+		pageChanged();
 		findImageWithUrl(imageurl, which).click();
 	}
 
@@ -367,6 +624,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickLinkWithText (String text, int which)
 			throws NoSuchElementException, Exception {
+		pageChanged();
 		findLinkWithText(text, which).click();
 	}
 
@@ -379,6 +637,7 @@ public abstract class WebDriverWebAutomationFramework
 	 */
 	@Override
 	public void clickTextInputWithId (String id) throws NoSuchElementException {
+		invalidateElementMap();
 		findTextInputWithId(id).click();
 	}
 
@@ -391,6 +650,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickTextInputWithName (String name, int which)
 			throws NoSuchElementException, Exception {
+		invalidateElementMap();
 		findTextInputWithName(name, which).click();
 	}
 
@@ -403,6 +663,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickPasswordInputWithId (String id)
 			throws NoSuchElementException {
+		invalidateElementMap();
 		findPasswordInputWithId(id).click();
 	}
 
@@ -415,6 +676,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickPasswordInputWithName (String name, int which)
 			throws NoSuchElementException, Exception {
+		invalidateElementMap();
 		findPasswordInputWithName(name, which).click();
 	}
 
@@ -425,6 +687,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickRadioButtonWithId (String id)
 			throws NoSuchElementException {
+		invalidateElementMap();
 		findRadioButtonWithId(id).click();
 	}
 
@@ -435,6 +698,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickRadioButtonWithName (String name, int which)
 			throws NoSuchElementException, Exception {
+		invalidateElementMap();
 		findRadioButtonWithName(name, which).click();
 	}
 
@@ -445,6 +709,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickCheckboxWithId (String id)
 			throws NoSuchElementException {
+		invalidateElementMap();
 		findCheckboxWithId(id).click();
 	}
 
@@ -455,6 +720,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void clickCheckboxWithName (String name, int which)
 			throws NoSuchElementException, Exception {
+		invalidateElementMap();
 		findCheckboxWithName(name, which).click();
 	}
 
@@ -470,6 +736,7 @@ public abstract class WebDriverWebAutomationFramework
 			throws NoSuchElementException {
 		WebElement input = findTextInputWithId(id);
 		input.clear();
+		invalidateElementMap();
 		input.sendKeys(value);
 	}
 
@@ -485,6 +752,7 @@ public abstract class WebDriverWebAutomationFramework
 			throws NoSuchElementException, Exception {
 		WebElement input = findTextInputWithName(name, which);
 		input.clear();
+		invalidateElementMap();
 		input.sendKeys(value);
 	}
 
@@ -499,6 +767,7 @@ public abstract class WebDriverWebAutomationFramework
 			throws NoSuchElementException {
 		WebElement input = findPasswordInputWithId(id);
 		input.clear();
+		invalidateElementMap();
 		input.sendKeys(value);
 	}
 
@@ -513,6 +782,7 @@ public abstract class WebDriverWebAutomationFramework
 			throws NoSuchElementException, Exception {
 		WebElement input = findPasswordInputWithName(name, which);
 		input.clear();
+		invalidateElementMap();
 		input.sendKeys(value);
 	}
 
@@ -525,6 +795,7 @@ public abstract class WebDriverWebAutomationFramework
 			throws NoSuchElementException {
 		WebElement textarea = findTextareaWithId(id);
 		textarea.clear();
+		invalidateElementMap();
 		textarea.sendKeys(value);
 	}
 
@@ -537,6 +808,7 @@ public abstract class WebDriverWebAutomationFramework
 			throws NoSuchElementException, Exception {
 		WebElement textarea = findTextareaWithName(name, which);
 		textarea.clear();
+		invalidateElementMap();
 		textarea.sendKeys(value);
 	}
 
@@ -581,6 +853,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void selectOptionFromDropDownMenuWithId (String id, String option)
 			throws NoSuchElementException, NoSuchOptionException {
+		invalidateElementMap();
 		findOptionInDropDownMenuWithId(id, option).setSelected();
 	}
 
@@ -592,6 +865,7 @@ public abstract class WebDriverWebAutomationFramework
 	public void selectOptionFromDropDownMenuWithName (String name, int which,
 			String option) throws NoSuchElementException, NoSuchOptionException,
 			Exception {
+		invalidateElementMap();
 		findOptionInDropDownMenuWithName(name, which, option).setSelected();
 	}
 
@@ -602,6 +876,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void pressEnterInTextInputWithId (String id)
 			throws NoSuchElementException {
+		pageChanged();
 		findTextInputWithId(id).sendKeys(Keys.ENTER);
 	}
 
@@ -612,6 +887,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void pressEnterInTextInputWithName (String name, int which)
 			throws NoSuchElementException, Exception {
+		pageChanged();
 		findTextInputWithName(name, which).sendKeys(Keys.ENTER);
 	}
 
@@ -622,6 +898,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void pressEnterInPasswordInputWithId (String id)
 			throws NoSuchElementException {
+		pageChanged();
 		findPasswordInputWithId(id).sendKeys(Keys.ENTER);
 	}
 
@@ -632,6 +909,7 @@ public abstract class WebDriverWebAutomationFramework
 	@Override
 	public void pressEnterInPasswordInputWithName (String name, int which)
 			throws NoSuchElementException, Exception {
+		pageChanged();
 		findPasswordInputWithName(name, which).sendKeys(Keys.ENTER);
 	}
 
@@ -1092,9 +1370,11 @@ public abstract class WebDriverWebAutomationFramework
 	public List<Element> getElementsByName (String tagName, String attName,
 			String attValue) {
 		List<Element> elements = new ArrayList<Element>();
-		for (WebElement element : browser.findElements(By.tagName(tagName))) {
-			if (attName == null || attValue.equals(element.getAttribute(attName))) {
-				elements.add(new WebDriverElement(element));
+		WebDriverElementMap map = getElementMap();
+		for (WebElement webElement : browser.findElements(By.tagName(tagName))) {
+			Element element = map.getElement(webElement);
+			if (attName == null || attValue.equals(element.getAttributeValue(attName))) {
+				elements.add(element);
 			}
 		}
 		return elements;
@@ -1104,20 +1384,40 @@ public abstract class WebDriverWebAutomationFramework
 	public List<Element> getElementsByName (String tagName,
 			Map<String, String> attributes) {
 		List<Element> elements = new ArrayList<Element>();
-		for (WebElement element : browser.findElements(By.tagName(tagName))) {
+		WebDriverElementMap map = getElementMap();
+		String[] attributeNames = attributes != null
+				? attributes.keySet().toArray(new String[attributes.size()]) : null;
+		for (WebElement webElement : browser.findElements(By.tagName(tagName))) {
+			Element element = map.getElement(webElement);
 			boolean addElement = true;
 			if (attributes != null) {
+				if (attributeNames.length > 1) {
+					element.prefetch(attributeNames);
+				}
 				for (Entry<String, String> pair : attributes.entrySet()) {
-					if (!pair.getValue().equals(element.getAttribute(pair.getKey()))) {
+					if (!pair.getValue().equals(element.getAttributeValue(pair.getKey()))) {
 						addElement = false;
 						break;
 					}
 				}
 			}
 			if (addElement) {
-				elements.add(new WebDriverElement(element));
+				elements.add(element);
 			}
 		}
 		return elements;
 	}
+
+	@Override
+	public Map<String, List<Element>> harvestElements (
+			Collection<String> tagNames, Collection<String> attributeNames,
+			boolean fetchText) {
+		Map<String, List<Element>> harvested =
+				getElementMap().harvest(tagNames, attributeNames, fetchText);
+		if (harvested == null) {
+			// no JavaScript, find the elements one tag name at a time
+			harvested = super.harvestElements(tagNames, attributeNames, fetchText);
+		}
+		return harvested;
+	}
 }
@@ -33,6 +33,16 @@ public interface Element
 
 	public String getAttributeValue ( String attribute );
 
+	/**
+	 * Fetches several attribute values at once, so that subsequent calls to
+	 * {@link #getAttributeValue(String)} for these attributes do not need to
+	 * access the browser.
+	 * 
+	 * @param attributes
+	 *            the names of the attributes to fetch
+	 */
+	public void prefetch ( String... attributes );
+
 	public String getText ();
 
 	public String getText ( int truncate );
@@ -17,30 +17,122 @@ package org.jwatter.html;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.jwatter.util.StringUtil;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 
 public class WebDriverElement implements Element
 {
-	protected final String[] DEFAULT_ATTRIBUTES = new String[]
+	protected static final String[] DEFAULT_ATTRIBUTES = new String[]
 	{
 			"id", "name", "type", "alt", "class", "src", "href", "value"
 	};
 	public static final int TRUNCATE_ELEMENT_TEXT = 40;
+	public static final int MAX_CACHED_ATTRIBUTES = 32;
+
+	/**
+	 * Fetches at most <code>arguments[1] + 1</code> characters of the text of
+	 * an element, normalizing whitespace first if <code>arguments[2]</code>
+	 * is true. The extra character tells the caller that the text was cut
+	 * off. Uses the same whitespace characters as
+	 * {@link StringUtil#normalizeWhitespace(String)}.
+	 */
+	protected static final String TRUNCATED_TEXT_SCRIPT =
+			"var e = arguments[0], n = arguments[1];"
+					+ "var t = e.innerText;"
+					+ "if (t == null) t = e.textContent;"
+					+ "if (t == null) return '';"
+					+ "if (arguments[2]) {"
+					+ " t = t.replace(/[ \\t\\n\\x0B\\f\\r]+/g, ' ');"
+					+ " if (t.charAt(0) == ' ') t = t.substring(1);"
+					+ " if (t.length > n + 1) t = t.substring(0, n + 1);"
+					+ " else if (t.charAt(t.length - 1) == ' ')"
+					+ "  t = t.substring(0, t.length - 1);"
+					+ "}"
+					+ "return t.length > n + 1 ? t.substring(0, n + 1) : t;";
+
+	/**
+	 * Defines <code>attributeValue(e, n)</code>, which returns the value of
+	 * attribute <code>n</code> of element <code>e</code> as a string or null.
+	 * Like WebDriver, reads the current value, resolved URLs and boolean
+	 * states from element properties and everything else from the element
+	 * attributes.
+	 */
+	protected static final String ATTRIBUTE_VALUE_FUNCTION =
+			"function attributeValue (e, n) {"
+					+ " var v = null;"
+					+ " if (n == 'class') v = e.className;"
+					+ " else if (n == 'style') v = e.style ? e.style.cssText : null;"
+					+ " else if ((n == 'value' || n == 'href' || n == 'src'"
+					+ "   || n == 'checked' || n == 'selected' || n == 'disabled')"
+					+ "   && e[n] !== undefined && e[n] !== null) v = e[n];"
+					+ " else v = e.getAttribute(n);"
+					+ " if (v === false) v = null;"
+					+ " return v === null || v === undefined ? null : '' + v;"
+					+ "}";
+
+	/**
+	 * Fetches several attributes of the element <code>arguments[0]</code>.
+	 */
+	protected static final String PREFETCH_ATTRIBUTES_SCRIPT =
+			ATTRIBUTE_VALUE_FUNCTION
+					+ "var e = arguments[0], values = [];"
+					+ "for (var i = 1; i < arguments.length; i++) {"
+					+ " values.push(attributeValue(e, arguments[i]));"
+					+ "}"
+					+ "return values;";
 
 	protected WebElement webdriverElement;
+	// used to fetch truncated text in the browser; may be null
+	protected JavascriptExecutor javascript;
+	// the map that owns this wrapper; may be null
+	protected WebDriverElementMap elementMap;
 	protected String nameCache = null;
+	// the complete text, if it was fetched together with the element by a
+	// harvest; wrappers in an element map never have it
+	protected String textCache = null;
 	protected Map<String, String> attributeCache =
-			new HashMap<String, String>();
+			new LinkedHashMap<String, String>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry (
+						Map.Entry<String, String> eldest )
+				{
+					return size() > MAX_CACHED_ATTRIBUTES;
+				}
+			};
 
 	public WebDriverElement ( WebElement element )
+	{
+		this(element, (JavascriptExecutor) null);
+	}
+
+	public WebDriverElement ( WebElement element,
+			JavascriptExecutor javascript )
 	{
 		webdriverElement = element;
+		this.javascript = javascript;
+	}
+
+	/**
+	 * Creates a wrapper that belongs to an element map. Use
+	 * {@link WebDriverElementMap#getElement(WebElement)} to obtain wrappers
+	 * for the elements on the current page.
+	 */
+	protected WebDriverElement ( WebElement element,
+			WebDriverElementMap elementMap )
+	{
+		this(element, elementMap.getJavascriptExecutor());
+		this.elementMap = elementMap;
 	}
 
 	public String getName ()
@@ -73,6 +165,88 @@ public class WebDriverElement implements Element
 		return attributeCache.get(attribute);
 	}
 
+	/**
+	 * Discards the cached attribute values and text of this element. The tag
+	 * name is kept, because it cannot change.
+	 */
+	protected void invalidate ()
+	{
+		attributeCache.clear();
+		textCache = null;
+	}
+
+	public void prefetch ( String... attributes )
+	{
+		List<String> missing = new ArrayList<String>(attributes.length);
+		for ( String attribute : attributes )
+		{
+			if ( !attributeCache.containsKey(attribute)
+					&& !missing.contains(attribute) )
+			{
+				missing.add(attribute);
+			}
+		}
+		if ( missing.isEmpty() || javascript == null ) return;
+		if ( missing.size() > MAX_CACHED_ATTRIBUTES )
+		{
+			missing = missing.subList(0, MAX_CACHED_ATTRIBUTES);
+		}
+		Object[] args = new Object[missing.size() + 1];
+		args[0] = webdriverElement;
+		for ( int i = 0 ; i < missing.size() ; i++ )
+		{
+			args[i + 1] = missing.get(i);
+		}
+		List<?> values;
+		try
+		{
+			values =
+					(List<?>) javascript.executeScript(
+							PREFETCH_ATTRIBUTES_SCRIPT, args);
+		}
+		catch ( WebDriverException e )
+		{
+			// attributes will be fetched one at a time
+			return;
+		}
+		if ( values == null || values.size() != missing.size() ) return;
+		for ( int i = 0 ; i < missing.size() ; i++ )
+		{
+			Object value = values.get(i);
+			attributeCache.put(missing.get(i), value != null
+					? value.toString() : null);
+		}
+	}
+
+	/**
+	 * Fills the caches of this element with values that were fetched
+	 * together with the element.
+	 * 
+	 * @param name
+	 *            the tag name
+	 * @param attributes
+	 *            the names of the fetched attributes
+	 * @param values
+	 *            the attribute values, in the same order as the names
+	 * @param text
+	 *            the text of the element, or null if it was not fetched
+	 */
+	protected void prefill ( String name, String[] attributes, List<?> values,
+			String text )
+	{
+		nameCache = name;
+		for ( int i = 0 ; i < attributes.length && i < values.size() ; i++ )
+		{
+			Object value = values.get(i);
+			attributeCache.put(attributes[i], value != null ? value.toString()
+					: null);
+		}
+		if ( text != null )
+		{
+			textCache = text;
+		}
+	}
+
 	public String getText ()
 	{
 		return getText(0);
@@ -90,22 +264,64 @@ public class WebDriverElement implements Element
 			throw new IllegalArgumentException(
 					"cannot truncate to negative length");
 		}
-		String text = webdriverElement.getText();
-		if ( normalizeWhitespace )
+		String text = null;
+		if ( textCache != null )
+		{
+			text = textCache;
+			if ( normalizeWhitespace )
+			{
+				text = StringUtil.normalizeWhitespace(text, truncate);
+			}
+		}
+		else if ( truncate > 0 && javascript != null )
+		{
+			text = fetchTruncatedText(truncate, normalizeWhitespace);
+		}
+		if ( text == null )
+		{
+			text = webdriverElement.getText();
+			if ( normalizeWhitespace )
+			{
+				text = StringUtil.normalizeWhitespace(text, truncate);
+			}
+		}
+		return StringUtil.truncate(text, truncate);
+	}
+
+	/**
+	 * Normalizes and truncates the text of this element in the browser so
+	 * that only the first characters are transferred.
+	 * 
+	 * @return the first <code>truncate + 1</code> characters of the text, or
+	 *         null if the script could not be executed
+	 */
+	protected String fetchTruncatedText ( int truncate,
+			boolean normalizeWhitespace )
+	{
+		try
+		{
+			Object text =
+					javascript.executeScript(TRUNCATED_TEXT_SCRIPT,
+							webdriverElement, truncate, normalizeWhitespace);
+			return text != null ? text.toString() : null;
+		}
+		catch ( WebDriverException e )
 		{
-			text = text.replaceAll("\\s+", " ").trim();
+			return null;
+		}
+		catch ( UnsupportedOperationException e )
+		{
+			// javascript is disabled
+			javascript = null;
+			return null;
 		}
-		if ( truncate == 0 || text.length() <= truncate ) return text;
-		if ( truncate <= 3 ) return text.substring(0, truncate);
-		return text.substring(0, truncate - 3) + "...";
 	}
 
 	public Element getParent ()
 	{
 		try
 		{
-			return new WebDriverElement(webdriverElement.findElement(By
-					.xpath("parent::*")));
+			return wrap(webdriverElement.findElement(By.xpath("parent::*")));
 		}
 		catch ( NoSuchElementException e )
 		{
@@ -121,8 +337,8 @@ public class WebDriverElement implements Element
 		}
 		try
 		{
-			return new WebDriverElement(webdriverElement.findElement(By
-					.xpath("*[" + childindex + "]")));
+			return wrap(webdriverElement.findElement(By.xpath("*["
+					+ childindex + "]")));
 		}
 		catch ( NoSuchElementException e )
 		{
@@ -132,12 +348,12 @@ public class WebDriverElement implements Element
 
 	public List<Element> getChildren ()
 	{
-		return toElementList(webdriverElement.findElements(By.xpath("*")));
+		return wrap(webdriverElement.findElements(By.xpath("*")));
 	}
 
 	public List<Element> getDescendantsByTagname ( String tagname )
 	{
-		return toElementList(webdriverElement.findElements(By.tagName(tagname)));
+		return wrap(webdriverElement.findElements(By.tagName(tagname)));
 	}
 
 	public void inspect ( PrintStream out )
@@ -155,6 +371,7 @@ public class WebDriverElement implements Element
 	public String toString ()
 	{
 		StringBuilder a = new StringBuilder();
+		prefetch(DEFAULT_ATTRIBUTES);
 		for ( String att : DEFAULT_ATTRIBUTES )
 		{
 			String value = getAttributeValue(att);
@@ -174,12 +391,30 @@ public class WebDriverElement implements Element
 		}
 	}
 
+	protected WebDriverElement wrap ( WebElement element )
+	{
+		return elementMap != null ? elementMap.getElement(element)
+				: new WebDriverElement(element, javascript);
+	}
+
+	protected List<Element> wrap ( List<WebElement> webelements )
+	{
+		return elementMap != null ? elementMap.getElements(webelements)
+				: toElementList(webelements, javascript);
+	}
+
 	protected static List<Element> toElementList ( List<WebElement> webelements )
 	{
-		List<Element> elements = new ArrayList<Element>();
+		return toElementList(webelements, null);
+	}
+
+	protected static List<Element> toElementList (
+			List<WebElement> webelements, JavascriptExecutor javascript )
+	{
+		List<Element> elements = new ArrayList<Element>(webelements.size());
 		for ( WebElement e : webelements )
 		{
-			elements.add(new WebDriverElement(e));
+			elements.add(new WebDriverElement(e, javascript));
 		}
 		return elements;
 	}
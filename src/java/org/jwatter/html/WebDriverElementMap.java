@@ -0,0 +1,244 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.html;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jwatter.util.StringUtil;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebElement;
+
+/**
+ * Maps the elements of the current page to their wrappers, so that the same
+ * underlying element is always represented by the same
+ * {@link WebDriverElement}. The wrappers cache attribute values and text
+ * across lookups; the cached values must be discarded with
+ * {@link #invalidate()} after actions that can change the page, and the map
+ * must be cleared when the browser navigates to another page. It
+ * holds at most {@link #MAX_ELEMENTS} wrappers and drops the least recently
+ * used ones.
+ * 
+ * @author kschneider
+ * 
+ */
+public class WebDriverElementMap
+{
+	public static final int MAX_ELEMENTS = 4096;
+
+	/**
+	 * Finds all elements whose tag name is in the comma separated list
+	 * <code>arguments[0]</code> and returns, for each element in document
+	 * order, the element, its tag name, the values of the attributes in the
+	 * comma separated list <code>arguments[1]</code> and, if
+	 * <code>arguments[2]</code> is true, its text.
+	 */
+	protected static final String HARVEST_ELEMENTS_SCRIPT =
+			WebDriverElement.ATTRIBUTE_VALUE_FUNCTION
+					+ "var tags = arguments[0].split(','), names ="
+					+ " arguments[1].length > 0 ? arguments[1].split(',') : [];"
+					+ "var es = [], result = [];"
+					+ "if (document.querySelectorAll) {"
+					+ " es = document.querySelectorAll(tags.join(','));"
+					+ "} else {"
+					+ " for (var i = 0; i < tags.length; i++) {"
+					+ "  var t = document.getElementsByTagName(tags[i]);"
+					+ "  for (var j = 0; j < t.length; j++) es.push(t[j]);"
+					+ " }"
+					+ "}"
+					+ "for (var i = 0; i < es.length; i++) {"
+					+ " var e = es[i], values = [], text = null;"
+					+ " for (var j = 0; j < names.length; j++)"
+					+ "  values.push(attributeValue(e, names[j]));"
+					+ " if (arguments[2]) {"
+					+ "  text = e.innerText;"
+					+ "  if (text == null) text = e.textContent;"
+					+ " }"
+					+ " result.push([e, e.tagName.toLowerCase(), values, text]);"
+					+ "}"
+					+ "return result;";
+
+	protected JavascriptExecutor javascript;
+	protected Map<Object, WebDriverElement> elements =
+			new LinkedHashMap<Object, WebDriverElement>(16, 0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry (
+						Map.Entry<Object, WebDriverElement> eldest )
+				{
+					return size() > MAX_ELEMENTS;
+				}
+			};
+
+	/**
+	 * Creates a new element map.
+	 * 
+	 * @param javascript
+	 *            the executor used by the wrappers to run scripts in the
+	 *            browser, or null if the browser does not support JavaScript
+	 */
+	public WebDriverElementMap ( JavascriptExecutor javascript )
+	{
+		this.javascript = javascript;
+	}
+
+	/**
+	 * Returns the wrapper for a WebDriver element, creating it if the element
+	 * has not been seen on the current page.
+	 */
+	public synchronized WebDriverElement getElement ( WebElement element )
+	{
+		Object key = getKey(element);
+		WebDriverElement wrapper = elements.get(key);
+		if ( wrapper == null )
+		{
+			wrapper = new WebDriverElement(element, this);
+			elements.put(key, wrapper);
+		}
+		return wrapper;
+	}
+
+	public List<Element> getElements ( List<WebElement> webelements )
+	{
+		List<Element> wrappers = new ArrayList<Element>(webelements.size());
+		for ( WebElement e : webelements )
+		{
+			wrappers.add(getElement(e));
+		}
+		return wrappers;
+	}
+
+	/**
+	 * Finds the elements with the specified tag names and fetches their
+	 * attributes and text with a single script. The elements are returned in
+	 * new wrappers that are not added to this map and return the fetched
+	 * values without asking the browser again, so they are a snapshot of the
+	 * page at the time of the harvest. Their text is the
+	 * <code>innerText</code> (or <code>textContent</code>) of the element.
+	 * 
+	 * @param tagNames
+	 *            the tag names of the elements to find, in lower case
+	 * @param attributeNames
+	 *            the attributes to fetch
+	 * @param fetchText
+	 *            if true, the text of the elements is fetched
+	 * @return the elements for each tag name, in document order, or null if
+	 *         the script could not be executed
+	 */
+	public Map<String, List<Element>> harvest ( Collection<String> tagNames,
+			Collection<String> attributeNames, boolean fetchText )
+	{
+		Map<String, List<Element>> harvested =
+				new LinkedHashMap<String, List<Element>>();
+		for ( String tagName : tagNames )
+		{
+			harvested.put(tagName, new ArrayList<Element>());
+		}
+		if ( tagNames.isEmpty() ) return harvested;
+		if ( javascript == null ) return null;
+		// also fetch the attributes that describe an element in toString()
+		Set<String> names = new LinkedHashSet<String>(attributeNames);
+		names.addAll(Arrays.asList(WebDriverElement.DEFAULT_ATTRIBUTES));
+		String[] attributes = names.toArray(new String[names.size()]);
+		List<?> result;
+		try
+		{
+			result =
+					(List<?>) javascript.executeScript(HARVEST_ELEMENTS_SCRIPT,
+							StringUtil.join(tagNames, ","), StringUtil.join(
+									names, ","), fetchText);
+		}
+		catch ( WebDriverException e )
+		{
+			return null;
+		}
+		catch ( UnsupportedOperationException e )
+		{
+			return null;
+		}
+		if ( result == null ) return null;
+		for ( Object item : result )
+		{
+			List<?> values = (List<?>) item;
+			String tagName = (String) values.get(1);
+			List<Element> elements = harvested.get(tagName);
+			if ( elements == null ) continue;
+			// the harvested values are kept out of the shared wrappers
+			WebDriverElement element =
+					new WebDriverElement((WebElement) values.get(0),
+							javascript);
+			element.prefill(tagName, attributes, (List<?>) values.get(2),
+					(String) values.get(3));
+			elements.add(element);
+		}
+		return harvested;
+	}
+
+	public JavascriptExecutor getJavascriptExecutor ()
+	{
+		return javascript;
+	}
+
+	/**
+	 * Discards the values cached by all wrappers, but keeps the wrappers.
+	 * Must be called after an action that can change elements of the current
+	 * page.
+	 */
+	public synchronized void invalidate ()
+	{
+		for ( WebDriverElement wrapper : elements.values() )
+		{
+			wrapper.invalidate();
+		}
+	}
+
+	/**
+	 * Forgets all wrappers. Must be called when the page changes.
+	 */
+	public synchronized void clear ()
+	{
+		elements.clear();
+	}
+
+	public synchronized int size ()
+	{
+		return elements.size();
+	}
+
+	/**
+	 * Remote elements are compared by their id, because
+	 * {@link RemoteWebElement#equals(Object)} asks the browser.
+	 */
+	protected Object getKey ( WebElement element )
+	{
+		if ( element instanceof RemoteWebElement )
+		{
+			String id = ((RemoteWebElement) element).getId();
+			if ( id != null ) return id;
+		}
+		return element;
+	}
+}
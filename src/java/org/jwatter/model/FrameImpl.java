@@ -15,6 +15,10 @@ limitations under the License.
 */
 package org.jwatter.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.jwatter.browser.WebAutomationFramework;
 import org.jwatter.util.Callable;
 import org.jwatter.util.Waiting.TimedOut;
@@ -29,6 +33,8 @@ public abstract class FrameImpl
     protected Window parent = null;
     protected Window topLevelWindow = null;
     protected String address = null;
+    // the frame names in the address
+    protected List<String> path = null;
 
     /**
      * Creates a new frame. You must use {@link #setParent(Window)} to set the parent frame or
@@ -127,6 +133,9 @@ public abstract class FrameImpl
         else {
             this.address = this.name;
         }
+        this.path = this.address != null
+            ? Collections.unmodifiableList(Arrays.asList(this.address.split("\\.")))
+            : null;
     }
 
     /*
@@ -165,11 +174,17 @@ public abstract class FrameImpl
             throw new WindowException("window for frame " + this.getClass().getSimpleName()
                 + " is not set");
         }
-        // first, set target to the window that contains this frame
-        this.topLevelWindow.setAsTarget();
-        // then set target to this frame
+        // first, set target to the window that contains this frame, unless the browser already
+        // targets a frame in that window
+        String windowName = this.topLevelWindow.getName();
+        if (windowName == null || this.browserFramework.getTargetFrameAddress() == null
+            || !windowName.equals(this.browserFramework.getWindowName())) {
+            this.topLevelWindow.setAsTarget();
+        }
+        // then set target to this frame, which only switches the frames that differ from the
+        // current target
         logger.info("Setting target to frame " + this.address);
-        this.browserFramework.setTargetToFrameWithId(this.address);
+        this.browserFramework.setTargetToFramePath(this.path);
         // tell the window that the target is on this frame
         this.topLevelWindow.setTargetFrameAddress(this.address);
     }
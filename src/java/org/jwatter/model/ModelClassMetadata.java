@@ -0,0 +1,213 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.model;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jwatter.browser.WebAutomationFramework;
+import org.jwatter.util.AccessibleFieldIterator;
+import org.jwatter.util.TestConfiguration;
+
+/**
+ * Reflection metadata of a page, window or frame class. The metadata is computed once per class
+ * and shared by all instances of the class, so that creating a model object does not have to look
+ * up constructors or walk the class hierarchy again.
+ * <p>
+ * The metadata is attached to the class with a {@link ClassValue}, so classes loaded by a
+ * temporary class loader, such as the page classes compiled by the toolkit, can still be unloaded.
+ * Constructors are kept as accessible {@link Constructor} objects rather than method handles: a
+ * method handle that is not a constant is not inlined, so it is no faster than a constructor
+ * without access checks.
+ * 
+ * @param <T>
+ *        the model class
+ */
+public class ModelClassMetadata<T> {
+
+    protected static final ClassValue<ModelClassMetadata<?>> metadataCache =
+        new ClassValue<ModelClassMetadata<?>>() {
+
+            @Override
+            protected ModelClassMetadata<?> computeValue (Class<?> modelClass) {
+                return newMetadata(modelClass);
+            }
+        };
+
+    // maximum number of page configurations for which routing indexes are kept per class
+    protected static final int MAX_ROUTING_INDEXES = 16;
+
+    /**
+     * Returns the metadata of the specified class, computing it if this is the first request for
+     * the class.
+     * 
+     * @param modelClass
+     *        a page, window or frame class
+     * @return the metadata of the class
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ModelClassMetadata<T> forClass (Class<T> modelClass) {
+        return (ModelClassMetadata<T>)metadataCache.get(modelClass);
+    }
+
+    protected static <T> ModelClassMetadata<T> newMetadata (Class<T> modelClass) {
+        return new ModelClassMetadata<T>(modelClass);
+    }
+
+    protected final Class<T> modelClass;
+
+    // constructor (WebAutomationFramework), or null if the class does not have one
+    protected final Constructor<T> constructor;
+    // constructor (WebAutomationFramework, Window), or null if the class does not have one
+    protected final Constructor<T> frameConstructor;
+
+    // accessible Page and Frame fields, indexed by field type
+    protected final Map<Class<? extends Page>, Field> pageFields;
+    protected final Map<Class<? extends Frame>, Field> frameFields;
+
+    // URL indexes of the pages of a window class, by page configuration, created on first use
+    protected final ConcurrentMap<TestConfiguration, PageRoutingIndex> routingIndexes =
+        new ConcurrentHashMap<TestConfiguration, PageRoutingIndex>();
+
+    protected ModelClassMetadata (Class<T> modelClass) {
+        this.modelClass = modelClass;
+        this.constructor = this.findConstructor(WebAutomationFramework.class);
+        this.frameConstructor = this.findConstructor(WebAutomationFramework.class, Window.class);
+        if (Window.class.isAssignableFrom(modelClass)) {
+            // keep the field order, which breaks ties when the current page is resolved
+            Map<Class<? extends Page>, Field> pages =
+                new LinkedHashMap<Class<? extends Page>, Field>();
+            Map<Class<? extends Frame>, Field> frames =
+                new HashMap<Class<? extends Frame>, Field>();
+            this.indexFields(Page.class, pages);
+            this.indexFields(Frame.class, frames);
+            this.pageFields = Collections.unmodifiableMap(pages);
+            this.frameFields = Collections.unmodifiableMap(frames);
+        }
+        else {
+            this.pageFields = Collections.emptyMap();
+            this.frameFields = Collections.emptyMap();
+        }
+    }
+
+    protected Constructor<T> findConstructor (Class<?>... parameterTypes) {
+        try {
+            Constructor<T> c = this.modelClass.getConstructor(parameterTypes);
+            try {
+                // skips the access check on each invocation
+                c.setAccessible(true);
+            }
+            catch (SecurityException e) {}
+            return c;
+        }
+        catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <F> void indexFields (Class<? extends F> indexClass,
+                                    Map<Class<? extends F>, Field> fieldIndex) {
+        AccessibleFieldIterator fields = new AccessibleFieldIterator(this.modelClass);
+        while (fields.hasNext()) {
+            Field field = fields.next();
+            Class<?> fieldClass = field.getType();
+            if (indexClass.isAssignableFrom(fieldClass)) {
+                fieldIndex.put((Class<? extends F>)fieldClass, field);
+            }
+        }
+    }
+
+    public Class<T> getModelClass () {
+        return this.modelClass;
+    }
+
+    /**
+     * Returns the public constructor that takes a {@link WebAutomationFramework}.
+     * 
+     * @throws NoSuchMethodException
+     *         if the class does not have such a constructor
+     */
+    public Constructor<T> getConstructor ()
+            throws NoSuchMethodException {
+        if (this.constructor == null) {
+            // throws the appropriate exception
+            return this.modelClass.getConstructor(WebAutomationFramework.class);
+        }
+        return this.constructor;
+    }
+
+    /**
+     * Returns the public constructor that takes a {@link WebAutomationFramework} and a parent
+     * {@link Window}.
+     * 
+     * @throws NoSuchMethodException
+     *         if the class does not have such a constructor
+     */
+    public Constructor<T> getFrameConstructor ()
+            throws NoSuchMethodException {
+        if (this.frameConstructor == null) {
+            // throws the appropriate exception
+            return this.modelClass.getConstructor(WebAutomationFramework.class, Window.class);
+        }
+        return this.frameConstructor;
+    }
+
+    /**
+     * Returns the accessible fields whose type implements {@link Page}, indexed by field type. The
+     * fields have been made accessible. The returned map cannot be modified.
+     */
+    public Map<Class<? extends Page>, Field> getPageFields () {
+        return this.pageFields;
+    }
+
+    /**
+     * Returns the accessible fields whose type implements {@link Frame}, indexed by field type.
+     * The fields have been made accessible. The returned map cannot be modified.
+     */
+    public Map<Class<? extends Frame>, Field> getFrameFields () {
+        return this.frameFields;
+    }
+
+    /**
+     * Returns the URL index of the pages in {@link #getPageFields()} for the page configuration
+     * of the current thread. An index is built once per configuration, so threads with different
+     * configurations do not rebuild each other's index.
+     */
+    public PageRoutingIndex getRoutingIndex () {
+        TestConfiguration configuration = PageImpl.getPageConfiguration();
+        PageRoutingIndex index = this.routingIndexes.get(configuration);
+        if (index == null) {
+            if (this.routingIndexes.size() >= MAX_ROUTING_INDEXES) {
+                // configurations created for single tests are not kept forever
+                this.routingIndexes.clear();
+            }
+            // building the index twice in a race is harmless
+            index = new PageRoutingIndex(this.pageFields.keySet(), configuration);
+            PageRoutingIndex existing = this.routingIndexes.putIfAbsent(configuration, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        return index;
+    }
+}
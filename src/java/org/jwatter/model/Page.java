@@ -55,7 +55,14 @@ public interface Page {
     public Window getTopLevelWindow ();
 
     /**
-     * Checks if the browser is on the page represented by this page object.
+     * Checks if the browser is on the page represented by this page object. The default
+     * implementation compares the path of the browser URL with the <code>url</code> page property,
+     * which can be an exact path, a prefix or a pattern (see {@link UrlPattern}). A
+     * <code>url</code> that contains <code>*</code> or <code>{</code> is read as a prefix or
+     * pattern, not as a literal path.
+     * <p>
+     * Page classes that override this method are not resolved from their <code>url</code> by
+     * {@link Window#getCurrentPage()}; they are only checked after no URL-indexed page matched.
      * 
      * @return true if the browser is on the page represented by this page object, else false
      * @throws Exception
@@ -66,8 +73,9 @@ public interface Page {
 
     /**
      * Checks if the page represented by this page object has finished loading. By default, this
-     * method checks whether the body element exists in the DOM tree. A subclass can override this
-     * method to define more specific loading conditions.
+     * method checks whether the body element exists in the DOM tree. If a readiness probe is set,
+     * this method evaluates the probe instead. A subclass can override this method to define more
+     * specific loading conditions.
      * 
      * @return true if the page has finished loading
      * @throws Exception
@@ -76,6 +84,23 @@ public interface Page {
     public boolean isLoaded ()
             throws Exception;
 
+    /**
+     * Sets the probe that {@link #isLoaded()} uses to decide whether this page has finished
+     * loading. The probe is evaluated in the browser with a single script call, so the browser
+     * framework must support JavaScript.
+     * 
+     * @param probe
+     *        the readiness probe, or null for {@link ReadinessProbe#BODY_PRESENT}
+     */
+    public void setReadinessProbe (ReadinessProbe probe);
+
+    /**
+     * Returns the probe that {@link #isLoaded()} uses.
+     * 
+     * @return the readiness probe, or null if the page uses {@link ReadinessProbe#BODY_PRESENT}
+     */
+    public ReadinessProbe getReadinessProbe ();
+
     /**
      * Opens the page represented by this page object, using the specified opener, sets the browser
      * target to the frame or window that displays the page and waits until the page is loaded.
@@ -33,6 +33,6 @@ public class PageFactory {
     public static <T extends Page> T newPage (Class<T> pageClass,
                                               WebAutomationFramework browserFramework)
             throws Exception {
-        return pageClass.getConstructor(WebAutomationFramework.class).newInstance(browserFramework);
+        return ModelClassMetadata.forClass(pageClass).getConstructor().newInstance(browserFramework);
     }
 }
@@ -18,15 +18,15 @@ limitations under the License.
  */
 package org.jwatter.model;
 
-import java.io.IOException;
 import java.net.URL;
 import java.util.MissingResourceException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
-import org.jwatter.util.FunctionalTestProperties;
 import org.jwatter.browser.WebAutomationFramework;
 import org.jwatter.test.WebFunctionalTestCase;
 import org.jwatter.util.Callable;
+import org.jwatter.util.TestConfiguration;
 import org.jwatter.util.Waiting;
 import org.jwatter.util.Waiting.TimedOut;
 
@@ -39,62 +39,114 @@ import org.jwatter.util.Waiting.TimedOut;
 public abstract class PageImpl implements Page {
 
     // property that specifies the properties file for page properties
-    protected static final String PAGE_PROPERTIESFILE_PROPERTY =
+    public static final String PAGE_PROPERTIESFILE_PROPERTY =
         Page.class.getName() + ".propertiesfile";
 
     protected static final String SYNC_PAGE_TIMEOUT_PROPERTY =
+        Page.class.getName() + ".syncPageTimeout";
+    // misspelled key read by earlier releases, still honoured if the new key is not set
+    protected static final String DEPRECATED_SYNC_PAGE_TIMEOUT_PROPERTY =
         Page.class.getName() + "syncPageTimeout";
 	protected static final int DEFAULT_SYNC_PAGE_TIMEOUT = 30;
 
+	// initial and maximum time between readiness checks, in milliseconds
+	protected static final int LOADED_MIN_POLL = 100;
+	protected static final int LOADED_MAX_POLL = 1000;
+
 	protected static Logger logger = Logger
 			.getLogger(WebFunctionalTestCase.class.getPackage().getName());
 
-	protected static String propertiesFilename;
-	protected static FunctionalTestProperties properties;
+	/**
+	 * Returns the configuration that contains the page properties. The page properties are read
+	 * from the file specified by the <code>org.jwatter.model.Page.propertiesfile</code> property
+	 * of the current configuration.
+	 */
+	protected static TestConfiguration getPageConfiguration () {
+	    return TestConfiguration.get().getReferencedConfiguration(PAGE_PROPERTIESFILE_PROPERTY);
+	}
 
 	/**
-	 * Default timeout for browser sync operations, in seconds.
+	 * Returns the default timeout for browser sync operations, in seconds. The timeout is read
+	 * from <code>org.jwatter.model.Page.syncPageTimeout</code>; the misspelled
+	 * <code>org.jwatter.model.PagesyncPageTimeout</code> is still read, with a warning, if the
+	 * new key is not set.
 	 */
-	protected static int syncPageTimeout;
-    
-    static {
-		propertiesFilename = WebFunctionalTestCase.getRequiredProperty(
-		        PAGE_PROPERTIESFILE_PROPERTY);
-		logger.info("Loading page properties from " + propertiesFilename);
-		try {
-			properties = new FunctionalTestProperties(propertiesFilename);
-		} catch( IOException e ) {
-			throw new RuntimeException(e);
-		}
-
-		String syncBrowserTimeoutProperty = 
-                WebFunctionalTestCase.getProperty(SYNC_PAGE_TIMEOUT_PROPERTY);
-		syncPageTimeout = syncBrowserTimeoutProperty != null
-		        ? Integer.parseInt(syncBrowserTimeoutProperty)
-		        : DEFAULT_SYNC_PAGE_TIMEOUT;
+	protected static int getSyncPageTimeout () {
+	    TestConfiguration configuration = TestConfiguration.get();
+	    String propertyName = SYNC_PAGE_TIMEOUT_PROPERTY;
+	    if (configuration.getProperty(SYNC_PAGE_TIMEOUT_PROPERTY) == null
+	            && configuration.getProperty(DEPRECATED_SYNC_PAGE_TIMEOUT_PROPERTY) != null) {
+	        if (!deprecatedSyncPageTimeoutReported) {
+	            deprecatedSyncPageTimeoutReported = true;
+	            logger.warning("Property " + DEPRECATED_SYNC_PAGE_TIMEOUT_PROPERTY
+	                    + " is deprecated, use " + SYNC_PAGE_TIMEOUT_PROPERTY + " instead");
+	        }
+	        propertyName = DEPRECATED_SYNC_PAGE_TIMEOUT_PROPERTY;
+	    }
+	    return (int)configuration.getDuration(propertyName, TimeUnit.SECONDS,
+	            DEFAULT_SYNC_PAGE_TIMEOUT);
 	}
 
+	private static volatile boolean deprecatedSyncPageTimeoutReported;
+
 	protected WebAutomationFramework browserFramework;
 
 	// the window or frame in which this page lives
 	protected Window pageWindow;
 
 	protected String url;
+	protected UrlPattern urlPattern;
+
+	// decides whether the page has finished loading, or null for ReadinessProbe.BODY_PRESENT
+	protected ReadinessProbe readinessProbe;
 
 	protected PageImpl (WebAutomationFramework browserFramework,
 	        Class<? extends Page> pageClass) throws Exception {
 		this.browserFramework = browserFramework;
 		this.url = getRequiredProperty("url", pageClass);
+		this.urlPattern = new UrlPattern(this.url);
 	}
 
 	public static String getRequiredProperty (String propertyName)
 			throws MissingResourceException {
-		return properties.getRequiredProperty(propertyName);
+		return getPageConfiguration().getRequiredProperty(propertyName);
 	}
 
 	public static String getRequiredProperty (String propertyName,
 			Class<? extends Page> cls) throws MissingResourceException {
-		return properties.getRequiredProperty(propertyName, cls);
+		return getPageConfiguration().getRequiredProperty(propertyName, cls);
+	}
+
+	/**
+	 * Returns the <code>url</code> property of a page class without creating
+	 * the page. Pages usually pass one of their superclasses to the
+	 * constructor, for example their generated actor class, so the property
+	 * is looked up for the class itself and then for its superclasses.
+	 * 
+	 * @param pageClass
+	 *        a page class
+	 * @return the URL path of the page, or null if it is not defined
+	 */
+	public static String getUrlProperty (Class<? extends Page> pageClass) {
+	    return getUrlProperty(pageClass, getPageConfiguration());
+	}
+
+	/**
+	 * Returns the <code>url</code> property of a page class from the specified page
+	 * configuration.
+	 * 
+	 * @see #getUrlProperty(Class)
+	 */
+	protected static String getUrlProperty (Class<? extends Page> pageClass,
+	        TestConfiguration configuration) {
+	    for (Class<?> cls = pageClass; cls != null && cls != PageImpl.class
+	            && Page.class.isAssignableFrom(cls); cls = cls.getSuperclass()) {
+	        String url = configuration.getProperty("url", cls);
+	        if (url != null) {
+	            return url;
+	        }
+	    }
+	    return null;
 	}
 
 	/* (non-Javadoc)
@@ -125,14 +177,58 @@ public abstract class PageImpl implements Page {
      */
 	public boolean onPage () throws Exception {
 	    URL browserUrl = new URL(browserFramework.getUrl());
-	    return this.url.equals(browserUrl.getPath());
+	    return this.urlPattern.matches(browserUrl.getPath());
 	}
 
 	/* (non-Javadoc)
      * @see org.jwatter.PageI#isLoaded()
      */
 	public boolean isLoaded () throws Exception {
-        return browserFramework.getElementsByName("body").size() > 0;
+	    if (this.readinessProbe != null) {
+	        return Boolean.TRUE.equals(browserFramework.evaluateJavascript(
+	                this.readinessProbe.getScript()));
+	    }
+	    try {
+	        return Boolean.TRUE.equals(browserFramework.evaluateJavascript(
+	                ReadinessProbe.BODY_PRESENT.getScript()));
+	    } catch (RuntimeException e) {
+	        // the browser framework does not support JavaScript (NotImplementedException), or
+	        // JavaScript is disabled in the browser (WebDriverException,
+	        // UnsupportedOperationException)
+	        return browserFramework.getElementsByName("body").size() > 0;
+	    }
+	}
+
+	/**
+	 * Runs the setup script of the readiness probe in the current browser target, if there is
+	 * one. Errors are ignored, since the probe installs what it needs when it is evaluated.
+	 */
+	protected void prepareReadinessProbe () {
+	    String setupScript = this.readinessProbe != null
+	            ? this.readinessProbe.getSetupScript() : null;
+	    if (setupScript != null) {
+	        try {
+	            browserFramework.evaluateJavascript(setupScript);
+	        } catch (Exception e) {
+	            logger.fine("readiness probe setup failed: " + e);
+	        }
+	    }
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.model.Page#setReadinessProbe(org.jwatter.model.ReadinessProbe)
+	 */
+	public void setReadinessProbe (ReadinessProbe probe) {
+	    this.readinessProbe = probe;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jwatter.model.Page#getReadinessProbe()
+	 */
+	public ReadinessProbe getReadinessProbe () {
+	    return this.readinessProbe;
 	}
 
 	/*
@@ -140,6 +236,8 @@ public abstract class PageImpl implements Page {
 	 * @see org.jwatter.PageI#open(org.jwatter.util.Callable, int)
 	 */
 	public void open (Callable opener, int timeout) throws Exception {
+	    // lets the probe see requests that the opener starts without loading a new document
+	    this.prepareReadinessProbe();
 	    opener.call();
 	    this.switchTo(timeout);
 	}
@@ -149,7 +247,7 @@ public abstract class PageImpl implements Page {
 	 * @see org.jwatter.PageI#open(org.jwatter.util.Callable)
 	 */
 	public void open (Callable opener) throws TimedOut, Exception {
-	    this.open(opener, syncPageTimeout);
+	    this.open(opener, getSyncPageTimeout());
 	}
 
 	/*
@@ -166,16 +264,18 @@ public abstract class PageImpl implements Page {
 	 * @see org.jwatter.model.Page#switchTo()
 	 */
 	public void switchTo () throws TimedOut, Exception {
-	    this.switchTo(syncPageTimeout);
+	    this.switchTo(getSyncPageTimeout());
 	}
 
 	/* (non-Javadoc)
      * @see org.jwatter.PageI#waitUntilLoaded(int)
      */
 	public void waitUntilLoaded (int timeout) throws TimedOut, Exception {
+	    this.prepareReadinessProbe();
 	    final Page thisPage = this;
-	    new Waiting(timeout * 1000, this.getClass().getSimpleName() +
-	                " page still not loaded after " + timeout + "seconds") {
+	    new Waiting(timeout * 1000, LOADED_MIN_POLL, LOADED_MAX_POLL,
+	                this.getClass().getSimpleName() + " page still not loaded after " +
+	                timeout + "seconds") {
 	        @Override
 	        public boolean until () throws Exception {
 	            return thisPage.isLoaded();
@@ -187,7 +287,7 @@ public abstract class PageImpl implements Page {
      * @see org.jwatter.PageI#waitUntilLoaded()
      */
 	public void waitUntilLoaded () throws TimedOut, Exception {
-	    this.waitUntilLoaded(syncPageTimeout);
+	    this.waitUntilLoaded(getSyncPageTimeout());
 	}
 
 	/* (non-Javadoc)
@@ -209,7 +309,7 @@ public abstract class PageImpl implements Page {
      * @see org.jwatter.PageI#leavePage()
      */
 	public void leavePage () throws TimedOut, Exception {
-	    this.leavePage(syncPageTimeout);
+	    this.leavePage(getSyncPageTimeout());
 	}
 
     /**
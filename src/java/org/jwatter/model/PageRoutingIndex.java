@@ -0,0 +1,163 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.model;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jwatter.util.TestConfiguration;
+
+/**
+ * Maps URL paths to the page classes of a window, so that the current page can be determined from
+ * the browser URL with a single lookup. The index is built from the <code>url</code> properties of
+ * the pages. Exact paths are resolved with a hash lookup, then patterns are tried in order, then
+ * the longest matching prefix wins. Where two pages tie (same exact path, several matching
+ * patterns, or prefixes of equal length) the page that comes first in the given collection wins.
+ * 
+ * Pages that override {@link Page#onPage()}, or whose URL is not known, cannot be indexed. They
+ * are returned by {@link #getUnindexedPages()} and must be checked by calling their
+ * <code>onPage()</code> method.
+ */
+public class PageRoutingIndex {
+
+    protected final Map<String, Class<? extends Page>> exactPaths =
+        new HashMap<String, Class<? extends Page>>();
+    protected final List<UrlPattern> patterns = new ArrayList<UrlPattern>();
+    protected final List<UrlPattern> prefixes = new ArrayList<UrlPattern>();
+    protected final Map<UrlPattern, Class<? extends Page>> patternPages =
+        new HashMap<UrlPattern, Class<? extends Page>>();
+    protected final List<Class<? extends Page>> unindexedPages =
+        new ArrayList<Class<? extends Page>>();
+    // the page configuration from which the URLs were read
+    protected final TestConfiguration configuration;
+
+    /**
+     * Creates an index for the specified page classes from the current page configuration.
+     * Abstract classes are ignored.
+     * 
+     * @param pageClasses
+     *        the page classes of a window
+     */
+    public PageRoutingIndex (Collection<Class<? extends Page>> pageClasses) {
+        this(pageClasses, PageImpl.getPageConfiguration());
+    }
+
+    /**
+     * Creates an index for the specified page classes. Abstract classes are ignored.
+     * 
+     * @param pageClasses
+     *        the page classes of a window
+     * @param configuration
+     *        the configuration that contains the page properties
+     */
+    public PageRoutingIndex (Collection<Class<? extends Page>> pageClasses,
+                             TestConfiguration configuration) {
+        this.configuration = configuration;
+        for (Class<? extends Page> pageClass : pageClasses) {
+            if (Modifier.isAbstract(pageClass.getModifiers())) {
+                continue;
+            }
+            String url = isIndexable(pageClass) ? PageImpl.getUrlProperty(pageClass, configuration)
+                                                 : null;
+            if (url == null) {
+                this.unindexedPages.add(pageClass);
+                continue;
+            }
+            UrlPattern pattern = new UrlPattern(url);
+            switch (pattern.getKind()) {
+                case EXACT:
+                    if (!this.exactPaths.containsKey(url)) {
+                        this.exactPaths.put(url, pageClass);
+                    }
+                    break;
+                case PREFIX:
+                    this.prefixes.add(pattern);
+                    this.patternPages.put(pattern, pageClass);
+                    break;
+                default:
+                    this.patterns.add(pattern);
+                    this.patternPages.put(pattern, pageClass);
+            }
+        }
+        // longest prefix first
+        Collections.sort(this.prefixes, new Comparator<UrlPattern>() {
+
+            public int compare (UrlPattern p1, UrlPattern p2) {
+                return p2.getPrefix().length() - p1.getPrefix().length();
+            }
+        });
+    }
+
+    /**
+     * Returns the page configuration from which the index was built.
+     */
+    public TestConfiguration getConfiguration () {
+        return this.configuration;
+    }
+
+    /**
+     * A page can be indexed if it uses the URL check in {@link PageImpl}.
+     */
+    protected static boolean isIndexable (Class<? extends Page> pageClass) {
+        if (!PageImpl.class.isAssignableFrom(pageClass)) {
+            return false;
+        }
+        try {
+            return pageClass.getMethod("onPage").getDeclaringClass() == PageImpl.class;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the page class for a URL path.
+     * 
+     * @param path
+     *        the path of the current browser URL
+     * @return the page class whose URL matches the path, or null if no indexed page matches
+     */
+    public Class<? extends Page> resolve (String path) {
+        Class<? extends Page> pageClass = this.exactPaths.get(path);
+        if (pageClass != null) {
+            return pageClass;
+        }
+        for (UrlPattern pattern : this.patterns) {
+            if (pattern.matches(path)) {
+                return this.patternPages.get(pattern);
+            }
+        }
+        for (UrlPattern prefix : this.prefixes) {
+            if (prefix.matches(path)) {
+                return this.patternPages.get(prefix);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the page classes that are not in the index.
+     */
+    public List<Class<? extends Page>> getUnindexedPages () {
+        return Collections.unmodifiableList(this.unindexedPages);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.model;
+
+/**
+ * A condition that tells whether a page is ready for testing. A probe is a JavaScript expression
+ * that is evaluated in the browser; probes can be combined with {@link #allOf(ReadinessProbe...)}
+ * so that all conditions are checked with a single script call.
+ * 
+ * The request probes ({@link #noPendingRequests()} and {@link #networkIdle(int)}) instrument
+ * <code>XMLHttpRequest</code> and <code>fetch</code> with their {@link #getSetupScript() setup
+ * script}. Pages run it before an opener is called, so requests that an opener starts without
+ * loading a new document are seen, and again before waiting. WebDriver cannot run a script before
+ * a new document starts loading, so requests that the document starts while it loads are not
+ * seen; after a navigation these probes should be combined with {@link #DOCUMENT_COMPLETE}.
+ */
+public abstract class ReadinessProbe {
+
+    /**
+     * Installs the request monitor in the current window if necessary and evaluates to it. The
+     * monitor counts pending requests and records the time of the last request start or end.
+     */
+    protected static final String REQUEST_MONITOR =
+        "(function () {"
+            + " var m = window.__jwatter_requests;"
+            + " if (m) return m;"
+            + " m = window.__jwatter_requests = { pending: 0, last: new Date().getTime() };"
+            + " var started = function () { m.pending++; m.last = new Date().getTime(); };"
+            + " var finished = function () { m.pending--; m.last = new Date().getTime(); };"
+            + " if (window.XMLHttpRequest && XMLHttpRequest.prototype) {"
+            + "  var send = XMLHttpRequest.prototype.send;"
+            + "  XMLHttpRequest.prototype.send = function () {"
+            + "   var xhr = this, done = false;"
+            + "   var finish = function () { if (!done && xhr.readyState == 4) { done = true; finished(); } };"
+            + "   started();"
+            + "   if (xhr.addEventListener) xhr.addEventListener('readystatechange', finish, false);"
+            + "   try { return send.apply(xhr, arguments); }"
+            + "   catch (e) { if (!done) { done = true; finished(); } throw e; }"
+            + "  };"
+            + " }"
+            + " if (window.fetch) {"
+            + "  var fetch = window.fetch;"
+            + "  window.fetch = function () {"
+            + "   started();"
+            + "   return fetch.apply(this, arguments).then("
+            + "    function (r) { finished(); return r; },"
+            + "    function (e) { finished(); throw e; });"
+            + "  };"
+            + " }"
+            + " return m;"
+            + "})()";
+
+    /**
+     * The body element exists. This is the condition that pages check by default.
+     */
+    public static final ReadinessProbe BODY_PRESENT = condition("document.body != null");
+
+    /**
+     * The document and all its resources have been loaded.
+     */
+    public static final ReadinessProbe DOCUMENT_COMPLETE =
+        condition("document.readyState == 'complete'");
+
+    /**
+     * Returns a probe for an arbitrary JavaScript condition.
+     * 
+     * @param expression
+     *        a JavaScript expression that is true when the page is ready
+     * @return the probe
+     */
+    public static ReadinessProbe condition (String expression) {
+        return condition(expression, null);
+    }
+
+    /**
+     * Returns a probe for a JavaScript condition that needs a setup script.
+     * 
+     * @param expression
+     *        a JavaScript expression that is true when the page is ready
+     * @param setupScript
+     *        JavaScript statements that prepare the page for the condition, or null
+     * @return the probe
+     */
+    protected static ReadinessProbe condition (final String expression, final String setupScript) {
+        return new ReadinessProbe() {
+
+            @Override
+            public String getCondition () {
+                return expression;
+            }
+
+            @Override
+            public String getSetupScript () {
+                return setupScript;
+            }
+        };
+    }
+
+    /**
+     * Returns a probe that checks for a marker element, for example an element that a single page
+     * application adds when it has finished rendering.
+     * 
+     * @param cssSelector
+     *        a CSS selector for the marker element
+     * @return the probe
+     */
+    public static ReadinessProbe markerElement (String cssSelector) {
+        return condition("document.querySelector(" + toJavascriptString(cssSelector) + ") != null");
+    }
+
+    /**
+     * Returns a probe that checks that no XMLHttpRequest or fetch request is pending.
+     */
+    public static ReadinessProbe noPendingRequests () {
+        return condition(REQUEST_MONITOR + ".pending <= 0", REQUEST_MONITOR + ";");
+    }
+
+    /**
+     * Returns a probe that checks that no request is pending and no request has started or ended
+     * within the specified time.
+     * 
+     * @param idleMillis
+     *        the time without network activity, in milliseconds
+     * @return the probe
+     */
+    public static ReadinessProbe networkIdle (int idleMillis) {
+        return condition("(function (m) { return m.pending <= 0 && new Date().getTime() - m.last >= "
+            + idleMillis + "; })(" + REQUEST_MONITOR + ")", REQUEST_MONITOR + ";");
+    }
+
+    /**
+     * Returns a probe that is true when all specified probes are true.
+     * 
+     * @param probes
+     *        the probes to combine
+     * @return the combined probe
+     */
+    public static ReadinessProbe allOf (ReadinessProbe... probes) {
+        StringBuilder expression = new StringBuilder();
+        StringBuilder setupScript = new StringBuilder();
+        for (ReadinessProbe probe : probes) {
+            if (expression.length() > 0) {
+                expression.append(" && ");
+            }
+            expression.append('(').append(probe.getCondition()).append(')');
+            String probeSetupScript = probe.getSetupScript();
+            // the request monitor is installed only once, so repeating it is harmless
+            if (probeSetupScript != null && setupScript.indexOf(probeSetupScript) < 0) {
+                setupScript.append(probeSetupScript);
+            }
+        }
+        return condition(expression.length() > 0 ? expression.toString() : "true",
+            setupScript.length() > 0 ? setupScript.toString() : null);
+    }
+
+    protected static String toJavascriptString (String s) {
+        StringBuilder js = new StringBuilder(s.length() + 2);
+        js.append('\'');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\'' || c == '\\') {
+                js.append('\\').append(c);
+            }
+            else if (c == '\n') {
+                js.append("\\n");
+            }
+            else if (c == '\r') {
+                js.append("\\r");
+            }
+            else {
+                js.append(c);
+            }
+        }
+        return js.append('\'').toString();
+    }
+
+    /**
+     * Returns the JavaScript expression that is true when the page is ready.
+     */
+    public abstract String getCondition ();
+
+    /**
+     * Returns JavaScript statements that prepare the current page for this probe, for example by
+     * installing the request monitor, or null if the probe needs no preparation.
+     */
+    public String getSetupScript () {
+        return null;
+    }
+
+    /**
+     * Returns the script that evaluates this probe and returns a boolean.
+     */
+    public String getScript () {
+        return "return !!(" + this.getCondition() + ");";
+    }
+
+    @Override
+    public String toString () {
+        return this.getCondition();
+    }
+}
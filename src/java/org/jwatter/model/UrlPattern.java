@@ -0,0 +1,136 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.model;
+
+import java.util.regex.Pattern;
+
+/**
+ * The URL path of a page, as given by the <code>url</code> page property. The path can be
+ * <ul>
+ * <li>an exact path, such as <code>/shop/cart.html</code>
+ * <li>a prefix, ending with <code>*</code>, such as <code>/shop/catalog/*</code>, which matches
+ * any path that starts with <code>/shop/catalog/</code>
+ * <li>a pattern with path parameters in braces, such as <code>/shop/item/{id}/reviews</code>,
+ * where each parameter matches one path segment, and possibly a <code>*</code> anywhere, which
+ * matches any characters
+ * </ul>
+ * A <code>url</code> property is read as a prefix or pattern whenever it contains
+ * <code>*</code> or <code>{</code>; these characters cannot be matched literally.
+ */
+public class UrlPattern {
+
+    public static enum Kind {
+        EXACT, PREFIX, PATTERN
+    }
+
+    protected final String url;
+    protected final Kind kind;
+    // the path without the trailing wildcard, if kind is PREFIX
+    protected final String prefix;
+    // the compiled pattern, if kind is PATTERN
+    protected final Pattern pattern;
+
+    public UrlPattern (String url) {
+        this.url = url;
+        int wildcard = url.indexOf('*');
+        boolean hasParameters = url.indexOf('{') >= 0;
+        if (wildcard < 0 && !hasParameters) {
+            this.kind = Kind.EXACT;
+            this.prefix = null;
+            this.pattern = null;
+        }
+        else if (wildcard == url.length() - 1 && !hasParameters) {
+            this.kind = Kind.PREFIX;
+            this.prefix = url.substring(0, wildcard);
+            this.pattern = null;
+        }
+        else {
+            this.kind = Kind.PATTERN;
+            this.prefix = null;
+            this.pattern = Pattern.compile(toRegex(url));
+        }
+    }
+
+    protected static String toRegex (String url) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '*') {
+                appendLiteral(regex, url, literalStart, i);
+                regex.append(".*");
+                literalStart = i + 1;
+            }
+            else if (c == '{') {
+                int end = url.indexOf('}', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("unterminated parameter in URL pattern "
+                        + url);
+                }
+                appendLiteral(regex, url, literalStart, i);
+                regex.append("[^/]+");
+                i = end;
+                literalStart = end + 1;
+            }
+        }
+        appendLiteral(regex, url, literalStart, url.length());
+        return regex.toString();
+    }
+
+    protected static void appendLiteral (StringBuilder regex, String url, int start, int end) {
+        if (start < end) {
+            regex.append(Pattern.quote(url.substring(start, end)));
+        }
+    }
+
+    public String getUrl () {
+        return this.url;
+    }
+
+    public Kind getKind () {
+        return this.kind;
+    }
+
+    /**
+     * Returns the path that paths matching this prefix start with, if this is a prefix.
+     */
+    public String getPrefix () {
+        return this.prefix;
+    }
+
+    /**
+     * Checks if a URL path matches this pattern.
+     * 
+     * @param path
+     *        a URL path
+     * @return true if the path matches, else false
+     */
+    public boolean matches (String path) {
+        switch (this.kind) {
+            case EXACT:
+                return this.url.equals(path);
+            case PREFIX:
+                return path.startsWith(this.prefix);
+            default:
+                return this.pattern.matcher(path).matches();
+        }
+    }
+
+    @Override
+    public String toString () {
+        return this.url;
+    }
+}
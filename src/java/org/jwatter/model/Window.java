@@ -18,6 +18,7 @@ package org.jwatter.model;
 import java.util.Collection;
 import java.util.List;
 
+import org.jwatter.browser.WebAutomationFramework;
 import org.jwatter.util.Callable;
 import org.jwatter.util.Waiting.TimedOut;
 
@@ -61,7 +62,8 @@ public interface Window {
     public boolean containsFrame (Class<? extends Frame> frameClass);
 
     /**
-     * Returns a list of all pages in this window.
+     * Returns a list of all pages in this window. If the window creates its pages on first access,
+     * this creates all pages that have not been requested yet.
      * 
      * @return a list of all pages in this window
      */
@@ -75,7 +77,8 @@ public interface Window {
     public Collection<Class<? extends Page>> getPageClasses ();
 
     /**
-     * Returns the page with the given class in this window.
+     * Returns the page with the given class in this window. If the window creates its pages on
+     * first access, the page is created when it is requested for the first time.
      * 
      * @param pageClass
      *        the class of the page to look for
@@ -128,6 +131,14 @@ public interface Window {
      */
     public String getName ();
 
+    /**
+     * Returns the browser framework that displays this window. Windows with different frameworks
+     * can be driven concurrently (see {@link WindowGroup}).
+     * 
+     * @return the browser framework of this window
+     */
+    public WebAutomationFramework getBrowserFramework ();
+
     /**
      * Sets the browser target to this window.
      * 
@@ -236,6 +247,18 @@ public interface Window {
     /**
      * Finds the page object representing the page that is currently displayed in the browser, if
      * that page object is a field in the calling class or a superclass.
+     * <p>
+     * The page is resolved from the path of the browser URL and the <code>url</code> properties of
+     * the pages, in this order:
+     * <ol>
+     * <li>the page whose <code>url</code> is exactly the path
+     * <li>the first page, in field order, whose <code>url</code> pattern matches the path
+     * <li>the page with the longest <code>url</code> prefix that matches the path
+     * <li>the first page, in field order, that overrides {@link Page#onPage()} and returns true
+     * </ol>
+     * The order of the fields decides only among patterns and among pages that override
+     * <code>onPage()</code>. An overridden <code>onPage()</code> is therefore not consulted if
+     * the URL already matches another page.
      * 
      * @return the page object representing the page that is currently displayed in the browser
      * @throws Exception
@@ -33,8 +33,8 @@ public class WindowFactory {
     public static <T extends Window> T newWindow (Class<T> windowClass,
                                                   WebAutomationFramework browserFramework)
             throws Exception {
-        return windowClass.getConstructor(WebAutomationFramework.class)
-                          .newInstance(browserFramework);
+        return ModelClassMetadata.forClass(windowClass).getConstructor()
+                                 .newInstance(browserFramework);
     }
 
     /**
@@ -54,8 +54,8 @@ public class WindowFactory {
                                                 WebAutomationFramework browserFramework,
                                                 Window parent)
             throws Exception {
-        return frameClass.getConstructor(WebAutomationFramework.class, Window.class)
-                         .newInstance(browserFramework, parent);
+        return ModelClassMetadata.forClass(frameClass).getFrameConstructor()
+                                 .newInstance(browserFramework, parent);
     }
 
 }
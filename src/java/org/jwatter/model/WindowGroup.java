@@ -0,0 +1,233 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import org.jwatter.browser.WebAutomationFramework;
+import org.jwatter.util.Callable;
+
+/**
+ * A group of windows that are displayed by different browser sessions, for example the windows of
+ * an administrator and a customer in a cross-user scenario. Since every window has its own
+ * {@link WebAutomationFramework}, the windows have independent browser targets and can be driven
+ * concurrently. Tasks are run on one thread per window, and the results are returned when all
+ * tasks have finished.
+ * 
+ * A window and its frames share a browser framework, so only one of them can be in a group.
+ */
+public class WindowGroup {
+
+    protected static final Logger logger = Logger.getLogger(WindowGroup.class.getName());
+
+    protected final List<Window> windows = new ArrayList<Window>();
+    protected final Map<WebAutomationFramework, Window> windowsByFramework =
+        new IdentityHashMap<WebAutomationFramework, Window>();
+
+    /**
+     * Creates a new window of the specified class with its own browser framework and adds it to
+     * this group.
+     * 
+     * @param windowClass
+     *        the requested window class
+     * @param browserFramework
+     *        the browser framework of the new window, which must not be used by another window in
+     *        this group
+     * @return the new window
+     * @throws WindowException
+     *         if another window in this group uses the same browser framework
+     * @throws Exception
+     *         if the window cannot be created
+     */
+    public <T extends Window> T newWindow (Class<T> windowClass,
+                                           WebAutomationFramework browserFramework)
+            throws WindowException, Exception {
+        this.checkFramework(browserFramework);
+        T window = WindowFactory.newWindow(windowClass, browserFramework);
+        this.add(window);
+        return window;
+    }
+
+    /**
+     * Adds a window to this group.
+     * 
+     * @param window
+     *        the window, whose browser framework must not be used by another window in this group
+     * @throws WindowException
+     *         if another window in this group uses the same browser framework
+     */
+    public synchronized void add (Window window)
+            throws WindowException {
+        if (this.windows.contains(window)) {
+            return;
+        }
+        this.checkFramework(window.getBrowserFramework());
+        this.windows.add(window);
+        this.windowsByFramework.put(window.getBrowserFramework(), window);
+    }
+
+    protected synchronized void checkFramework (WebAutomationFramework browserFramework)
+            throws WindowException {
+        if (this.windowsByFramework.containsKey(browserFramework)) {
+            String windowClass = this.windowsByFramework.get(browserFramework).getClass()
+                                                        .getSimpleName();
+            logger.severe("browser framework is already used by " + windowClass);
+            throw new WindowException("browser framework is already used by " + windowClass);
+        }
+    }
+
+    /**
+     * Returns the windows in this group, in the order in which they were added.
+     */
+    public synchronized List<Window> getWindows () {
+        return Collections.unmodifiableList(new ArrayList<Window>(this.windows));
+    }
+
+    /**
+     * Runs tasks on several windows of this group concurrently and waits until all tasks have
+     * finished. Before a task is run, its window is set as the target of its browser, if the
+     * window name is known.
+     * 
+     * @param tasks
+     *        the task for each window
+     * @return the result of each task, in the order of the tasks
+     * @throws WindowException
+     *         if a window is not in this group
+     * @throws Exception
+     *         the exception thrown by the first failed task, after all tasks have finished
+     * @throws Error
+     *         the error thrown by the first task that failed with an error, after all tasks have
+     *         finished
+     */
+    public <W extends Window, T> Map<W, T> invokeAll (Map<W, ? extends WindowTask<? super W, ? extends T>> tasks)
+            throws WindowException, Exception {
+        List<Window> members = this.getWindows();
+        for (W window : tasks.keySet()) {
+            if (!members.contains(window)) {
+                logger.severe(window.getClass().getSimpleName() + " is not in this window group");
+                throw new WindowException(window.getClass().getSimpleName()
+                    + " is not in this window group");
+            }
+        }
+        Map<W, T> results = new LinkedHashMap<W, T>();
+        if (tasks.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        Map<W, Future<T>> futures = new LinkedHashMap<W, Future<T>>();
+        try {
+            for (final Entry<W, ? extends WindowTask<? super W, ? extends T>> task : tasks.entrySet()) {
+                futures.put(task.getKey(), executor.submit(new java.util.concurrent.Callable<T>() {
+
+                    public T call ()
+                            throws Exception {
+                        W window = task.getKey();
+                        if (window.getName() != null) {
+                            window.setAsTarget();
+                        }
+                        return task.getValue().call(window);
+                    }
+                }));
+            }
+
+            // join all tasks before reporting the first failure; an error takes precedence over
+            // an exception
+            Throwable failure = null;
+            for (Entry<W, Future<T>> future : futures.entrySet()) {
+                try {
+                    results.put(future.getKey(), future.getValue().get());
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    logger.severe("task on " + future.getKey().getClass().getSimpleName()
+                        + " failed: " + cause);
+                    if (failure == null || (cause instanceof Error && !(failure instanceof Error))) {
+                        failure = cause;
+                    }
+                }
+            }
+            if (failure instanceof Error) {
+                throw (Error)failure;
+            }
+            if (failure != null) {
+                throw (Exception)failure;
+            }
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the same task on all windows of this group concurrently and waits until all tasks have
+     * finished.
+     * 
+     * @param task
+     *        the task
+     * @return the result for each window, in the order in which the windows were added
+     * @throws Exception
+     *         the exception thrown by the first failed task, after all tasks have finished
+     */
+    public <T> Map<Window, T> invokeAll (WindowTask<Window, ? extends T> task)
+            throws Exception {
+        Map<Window, WindowTask<Window, ? extends T>> tasks =
+            new LinkedHashMap<Window, WindowTask<Window, ? extends T>>();
+        for (Window window : this.getWindows()) {
+            tasks.put(window, task);
+        }
+        return this.invokeAll(tasks);
+    }
+
+    /**
+     * Calls several callables concurrently, each with its window as the browser target, and waits
+     * until all have finished.
+     * 
+     * @param calls
+     *        the callable for each window
+     * @throws Exception
+     *         the exception thrown by the first failed callable, after all callables have
+     *         finished
+     */
+    public void runAll (Map<? extends Window, ? extends Callable> calls)
+            throws Exception {
+        Map<Window, WindowTask<Window, Object>> tasks =
+            new LinkedHashMap<Window, WindowTask<Window, Object>>();
+        for (final Entry<? extends Window, ? extends Callable> call : calls.entrySet()) {
+            tasks.put(call.getKey(), new WindowTask<Window, Object>() {
+
+                public Object call (Window window)
+                        throws Exception {
+                    call.getValue().call();
+                    return null;
+                }
+            });
+        }
+        this.invokeAll(tasks);
+    }
+}
@@ -17,18 +17,21 @@ package org.jwatter.model;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import org.jwatter.browser.WebAutomationFramework;
-import org.jwatter.test.WebFunctionalTestCase;
-import org.jwatter.util.AccessibleFieldIterator;
 import org.jwatter.util.Callable;
+import org.jwatter.util.TestConfiguration;
 import org.jwatter.util.Waiting;
 import org.jwatter.util.Waiting.TimedOut;
 
@@ -40,29 +43,42 @@ public abstract class WindowImpl
 
     protected static final int DEFAULT_SYNC_WINDOW_TIMEOUT = 30;
 
+    // initial and maximum time between checks for a new window, in milliseconds
+    protected static final int NEW_WINDOW_MIN_POLL = 50;
+    protected static final int NEW_WINDOW_MAX_POLL = 1000;
+
     protected static final Logger logger = Logger.getLogger(WindowImpl.class.getName());
 
     /**
-     * Default timeout for browser sync operations, in seconds.
+     * Returns the default timeout for browser sync operations, in seconds.
      */
-    protected static int syncWindowTimeout;
-
-    static {
-
-        String syncBrowserTimeoutProperty =
-            WebFunctionalTestCase.getProperty("syncWindowTimeout", Window.class);
-        syncWindowTimeout =
-            syncBrowserTimeoutProperty != null ? Integer.parseInt(syncBrowserTimeoutProperty)
-                                              : DEFAULT_SYNC_WINDOW_TIMEOUT;
+    protected static int getSyncWindowTimeout () {
+        return (int)TestConfiguration.get().getDuration("syncWindowTimeout", Window.class,
+                                                         TimeUnit.SECONDS,
+                                                         DEFAULT_SYNC_WINDOW_TIMEOUT);
+    }
 
+    /**
+     * Returns true if windows create their pages on first access instead of in the constructor.
+     */
+    protected static boolean getDefaultLazyPages () {
+        return TestConfiguration.get().getBoolean("lazyPages", Window.class, false);
     }
+
     protected WebAutomationFramework browserFramework;
     protected String name;
+    // field indexes are shared with all windows of the same class and cannot be modified
     protected Map<Class<? extends Page>, Field> pageFields;
     protected Map<Class<? extends Frame>, Field> frameFields;
     protected Map<Class<? extends Frame>, Frame> frames;
     protected Map<String, Frame> framesByName;
 
+    /**
+     * If true, pages are created by {@link #getPage(Class)} when they are first requested, and page
+     * fields are null until then.
+     */
+    protected boolean lazyPages;
+
     /**
      * Contains the address of a frame embedded in this window if the frame is the current browser
      * target. A frame tells its window when it is set as target. If the window is set as target, it
@@ -72,44 +88,50 @@ public abstract class WindowImpl
 
     /**
      * Creates a new window. Creates pages for all accessible fields whose type implements
-     * {@link Page} and is not abstract and assigns them to the fields.
+     * {@link Page} and is not abstract and assigns them to the fields, unless the
+     * <code>org.jwatter.model.Window.lazyPages</code> property is true, in which case pages are
+     * created on first access.
      * 
      * @param browserFramework
      *        the browser that will display this window
      */
     protected WindowImpl (WebAutomationFramework browserFramework)
             throws Exception {
+        this(browserFramework, getDefaultLazyPages());
+    }
+
+    /**
+     * Creates a new window. If <code>lazyPages</code> is false, creates pages for all accessible
+     * fields whose type implements {@link Page} and is not abstract and assigns them to the
+     * fields. If <code>lazyPages</code> is true, a page is created and assigned to its field when
+     * it is first requested with {@link #getPage(Class)}; until then the field is null.
+     * 
+     * @param browserFramework
+     *        the browser that will display this window
+     * @param lazyPages
+     *        whether pages are created on first access
+     */
+    protected WindowImpl (WebAutomationFramework browserFramework, boolean lazyPages)
+            throws Exception {
         this.browserFramework = browserFramework;
         this.name = null;
+        this.lazyPages = lazyPages;
 
-        // create an index of all accessible Page and Frame fields in this window
-        this.pageFields = new HashMap<Class<? extends Page>, Field>();
-        this.frameFields = new HashMap<Class<? extends Frame>, Field>();
-        this.indexFields(Page.class, this.pageFields);
-        this.indexFields(Frame.class, this.frameFields);
+        // the index of all accessible Page and Frame fields is shared by all instances of a class
+        ModelClassMetadata<? extends Window> metadata = ModelClassMetadata.forClass(this.getClass());
+        this.pageFields = metadata.getPageFields();
+        this.frameFields = metadata.getFrameFields();
 
         // create pages
-        this.createPages();
+        if (!this.lazyPages) {
+            this.createPages();
+        }
 
         this.frames = new HashMap<Class<? extends Frame>, Frame>();
         this.framesByName = new HashMap<String, Frame>();
         this.targetFrameAddress = null;
     }
 
-    @SuppressWarnings("unchecked")
-    protected <T> void indexFields (Class<? extends T> indexClass,
-                                    Map<Class<? extends T>, Field> fieldIndex) {
-        Class<? extends Window> windowClass = this.getClass();
-        AccessibleFieldIterator fields = new AccessibleFieldIterator(windowClass);
-        while (fields.hasNext()) {
-            Field field = fields.next();
-            Class<?> fieldClass = field.getType();
-            if (indexClass.isAssignableFrom(fieldClass)) {
-                fieldIndex.put((Class<? extends T>)fieldClass, field);
-            }
-        }
-    }
-
     /**
      * Creates pages for all fields in this window whose type implements {@link Page} and is not
      * abstract. Assigns the pages to the corresponding fields. Sets the window of all pages to this
@@ -194,6 +216,16 @@ public abstract class WindowImpl
      */
     public List<Page> getPages () {
         List<Page> pages = new ArrayList<Page>();
+        if (this.lazyPages) {
+            // creates the pages that have not been requested yet
+            for (Class<? extends Page> pageClass : this.pageFields.keySet()) {
+                Page page = this.getPage(pageClass);
+                if (page != null) {
+                    pages.add(page);
+                }
+            }
+            return pages;
+        }
         for (Field pageField : pageFields.values()) {
             try {
                 pages.add((Page)pageField.get(this));
@@ -225,10 +257,24 @@ public abstract class WindowImpl
                 + pageClass.getSimpleName() + " page");
             throw new NoSuchPageException(pageClass, this.getClass());
         }
+        Field pageField = this.pageFields.get(pageClass);
         try {
-            return (T)this.pageFields.get(pageClass).get(this);
+            T page = (T)pageField.get(this);
+            if (page == null && this.lazyPages && !Modifier.isAbstract(pageClass.getModifiers())) {
+                synchronized (this) {
+                    page = (T)pageField.get(this);
+                    if (page == null) {
+                        this.createPage(pageClass, pageField);
+                        page = (T)pageField.get(this);
+                    }
+                }
+            }
+            return page;
+        }
+        catch (RuntimeException e) {
+            throw e;
         }
-        catch (IllegalAccessException e) {
+        catch (Exception e) {
             // rethrow as unchecked exception
             throw new RuntimeException(e);
         }
@@ -241,8 +287,20 @@ public abstract class WindowImpl
      */
     public Page getCurrentPage ()
             throws Exception {
-        for (Page page : this.getPages()) {
-            if (page.onPage()) {
+        // resolve the page from the browser URL, which is fetched only once
+        PageRoutingIndex routingIndex = ModelClassMetadata.forClass(this.getClass()).getRoutingIndex();
+        String path = new URL(this.browserFramework.getUrl()).getPath();
+        Class<? extends Page> pageClass = routingIndex.resolve(path);
+        if (pageClass != null) {
+            Page page = this.getPage(pageClass);
+            if (page != null) {
+                return page;
+            }
+        }
+        // pages with their own onPage() check
+        for (Class<? extends Page> unindexedPageClass : routingIndex.getUnindexedPages()) {
+            Page page = this.getPage(unindexedPageClass);
+            if (page != null && page.onPage()) {
                 return page;
             }
         }
@@ -316,6 +374,15 @@ public abstract class WindowImpl
         return this.name;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.jwatter.model.Window#getBrowserFramework()
+     */
+    public WebAutomationFramework getBrowserFramework () {
+        return this.browserFramework;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -436,21 +503,43 @@ public abstract class WindowImpl
             throw new WindowException("current window name is not known");
         }
         ensureIsTarget("trying to open a new window from non target window");
+        final String[] newWindowName = new String[1];
         if (method != null) {
+            // remember the open windows, the new window is the one that is not among them
+            final Set<String> openWindowNames =
+                new HashSet<String>(browserFramework.getWindowNames());
             method.call();
+            new Waiting(timeout * 1000, NEW_WINDOW_MIN_POLL, NEW_WINDOW_MAX_POLL,
+                        "new window not open after " + timeout + " seconds") {
+
+                @Override
+                public boolean until ()
+                        throws Exception {
+                    for (String windowName : browserFramework.getWindowNames()) {
+                        if (!openWindowNames.contains(windowName)) {
+                            newWindowName[0] = windowName;
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            }.waitUntil();
         }
-        final String windowname = this.name;
-        new Waiting(timeout * 1000, "new window not open after " + timeout + " seconds") {
-
-            @Override
-            public boolean until ()
-                    throws Exception {
-                return !browserFramework.getMostRecentWindowName().equals(windowname);
-            }
-        }.waitUntil();
-        String newWindowName = browserFramework.getMostRecentWindowName();
-        logger.info("new window name: " + newWindowName);
-        browserFramework.setTargetToWindow(newWindowName);
+        else {
+            final String windowname = this.name;
+            new Waiting(timeout * 1000, NEW_WINDOW_MIN_POLL, NEW_WINDOW_MAX_POLL,
+                        "new window not open after " + timeout + " seconds") {
+
+                @Override
+                public boolean until ()
+                        throws Exception {
+                    newWindowName[0] = browserFramework.getMostRecentWindowName();
+                    return !newWindowName[0].equals(windowname);
+                }
+            }.waitUntil();
+        }
+        logger.info("new window name: " + newWindowName[0]);
+        browserFramework.setTargetToWindow(newWindowName[0]);
     }
 
     /*
@@ -461,7 +550,7 @@ public abstract class WindowImpl
      */
     public void synchronizeNewWindow (final Callable method)
             throws WindowException, TimedOut, Exception {
-        this.synchronizeNewWindow(method, syncWindowTimeout);
+        this.synchronizeNewWindow(method, getSyncWindowTimeout());
     }
 
     protected void ensureIsTarget (String message)
@@ -0,0 +1,40 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.model;
+
+/**
+ * A task that operates on a window and returns a result. Used by {@link WindowGroup} to drive
+ * several windows concurrently.
+ * 
+ * @param <W>
+ *        the window class
+ * @param <T>
+ *        the result type
+ */
+public interface WindowTask<W extends Window, T> {
+
+    /**
+     * Operates on a window. The window is the browser target when this method is called.
+     * 
+     * @param window
+     *        the window to operate on
+     * @return the result of the task
+     * @throws Exception
+     *         if an error occurs
+     */
+    public T call (W window)
+            throws Exception;
+}
@@ -20,7 +20,6 @@ package org.jwatter.test;
 
 import static org.jwatter.util.Require.requireTrue;
 
-import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.util.MissingResourceException;
 import java.util.logging.Logger;
@@ -29,7 +28,7 @@ import junit.framework.AssertionFailedError;
 import junit.framework.TestCase;
 import junit.framework.TestResult;
 
-import org.jwatter.util.FunctionalTestProperties;
+import org.jwatter.util.TestConfiguration;
 import org.jwatter.util.UnsatisfiedRequirementError;
 import org.jwatter.browser.WebAutomationFramework;
 
@@ -43,53 +42,13 @@ public abstract class WebFunctionalTestCase extends TestCase {
 			.getLogger(WebFunctionalTestCase.class.getName());
 
 	protected static final String PROPERTIES_FILENAME_PROPERTY =
-		"tests.properties";
+		TestConfiguration.PROPERTIES_FILENAME_PROPERTY;
 	protected static final String defaultPropertiesFilename =
-		"functionaltest.web.properties";
-	protected static String propertiesFilename;
-	static {
-		propertiesFilename = System.getProperty(PROPERTIES_FILENAME_PROPERTY);
-		if (propertiesFilename != null) {
-			logger.info(PROPERTIES_FILENAME_PROPERTY + "="
-						+ propertiesFilename);
-		} else {
-			propertiesFilename = defaultPropertiesFilename;
-			logger.info("Property " + PROPERTIES_FILENAME_PROPERTY
-					+ " is not set, using " + defaultPropertiesFilename);
-		}
-	}
-
-	protected static FunctionalTestProperties properties;
-
-	static {
-		logger.info("Loading properties from " + propertiesFilename);
-		try {
-			properties = new FunctionalTestProperties(propertiesFilename);
-		} catch( IOException e ) {
-			throw new RuntimeException(e);
-		}
-	}
-
-	protected static String browserFrameworkClassName;
-	protected static String browserProfileName;
-	protected static Class<? extends WebAutomationFramework> defaultBrowserFramework;
-	protected static String startUrl;
-
-	static {
-		browserFrameworkClassName = getRequiredProperty("browserFrameworkClassName",
-		        WebFunctionalTestCase.class);
-		browserProfileName = properties.getProperty("profileName",
-		        WebFunctionalTestCase.class);
-		try {
-			defaultBrowserFramework = getBrowserFrameworkClass(browserFrameworkClassName);
-		} catch( Exception e ) {
-			logger.severe(e.getMessage());
-			e.printStackTrace();
-		}
-		startUrl = properties.getProperty("startUrl", WebFunctionalTestCase.class);
-	}
+		TestConfiguration.DEFAULT_PROPERTIES_FILENAME;
 
 	protected WebAutomationFramework browserFramework;
+	protected String browserProfileName;
+	protected String startUrl;
 
 	/**
 	 * Creates a new web functional test case using the browser framework
@@ -99,7 +58,7 @@ public abstract class WebFunctionalTestCase extends TestCase {
 	 *             if the browser framework cannot be instantiated
 	 */
 	protected WebFunctionalTestCase () throws Exception {
-		this(defaultBrowserFramework);
+		this(getDefaultBrowserFramework());
 	}
 
 	/**
@@ -112,7 +71,7 @@ public abstract class WebFunctionalTestCase extends TestCase {
 	 *             if the browser framework cannot be instantiated
 	 */
 	protected WebFunctionalTestCase (String name) throws Exception {
-		this(defaultBrowserFramework, name);
+		this(getDefaultBrowserFramework(), name);
 	}
 
 	/**
@@ -163,7 +122,8 @@ public abstract class WebFunctionalTestCase extends TestCase {
 
 	/**
 	 * Creates a new web functional test case using the specified browser
-	 * framework instance.
+	 * framework instance. The browser profile and start URL are taken from
+	 * the configuration of the current thread.
 	 * 
 	 * @param framework
 	 *            the browser framework to use for the tests
@@ -176,6 +136,77 @@ public abstract class WebFunctionalTestCase extends TestCase {
 			String name) throws Exception {
 		super(name);
 		browserFramework = framework;
+		TestConfiguration configuration = getConfiguration();
+		browserProfileName = configuration.getProperty("profileName",
+		        WebFunctionalTestCase.class);
+		startUrl = configuration.getProperty("startUrl", WebFunctionalTestCase.class);
+	}
+
+	/**
+	 * Returns the configuration for the current thread.
+	 * 
+	 * @see TestConfiguration#get()
+	 */
+	protected static TestConfiguration getConfiguration () {
+		return TestConfiguration.get();
+	}
+
+	/**
+	 * Returns the <code>browserFrameworkClassName</code> property of the
+	 * current configuration.
+	 * 
+	 * @deprecated replaces the former static
+	 *             <code>browserFrameworkClassName</code> field; use
+	 *             {@link #getDefaultBrowserFramework()} instead
+	 */
+	@Deprecated
+	protected static String getBrowserFrameworkClassName () {
+		return getRequiredProperty("browserFrameworkClassName",
+		        WebFunctionalTestCase.class);
+	}
+
+	/**
+	 * Returns the <code>profileName</code> property of the current
+	 * configuration.
+	 * 
+	 * @deprecated replaces the former static <code>browserProfileName</code>
+	 *             field; use the {@link #browserProfileName} instance field
+	 *             instead
+	 */
+	@Deprecated
+	protected static String getDefaultBrowserProfileName () {
+		return getProperty("profileName", WebFunctionalTestCase.class);
+	}
+
+	/**
+	 * Returns the <code>startUrl</code> property of the current
+	 * configuration.
+	 * 
+	 * @deprecated replaces the former static <code>startUrl</code> field; use
+	 *             the {@link #startUrl} instance field instead
+	 */
+	@Deprecated
+	protected static String getDefaultStartUrl () {
+		return getProperty("startUrl", WebFunctionalTestCase.class);
+	}
+
+	/**
+	 * Returns the browser framework class specified by the
+	 * <code>browserFrameworkClassName</code> property of the current
+	 * configuration.
+	 * 
+	 * @throws Exception
+	 *             if the class cannot be loaded or is not a browser framework
+	 */
+	protected static Class<? extends WebAutomationFramework> getDefaultBrowserFramework ()
+			throws Exception {
+		try {
+			return getBrowserFrameworkClass(getRequiredProperty(
+			        "browserFrameworkClassName", WebFunctionalTestCase.class));
+		} catch( Exception e ) {
+			logger.severe(e.getMessage());
+			throw e;
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -274,23 +305,23 @@ public abstract class WebFunctionalTestCase extends TestCase {
 	}
 
 	public static String getProperty (String propertyName) {
-		return properties.getProperty(propertyName);
+		return getConfiguration().getProperty(propertyName);
 	}
 
 	public static String getProperty (String propertyName,
 			Class<? extends Object> cls) {
-		return properties.getProperty(propertyName, cls);
+		return getConfiguration().getProperty(propertyName, cls);
 	}
 
 	public static String getRequiredProperty (String propertyName)
 			throws MissingResourceException {
-		return properties.getRequiredProperty(propertyName);
+		return getConfiguration().getRequiredProperty(propertyName);
 	}
 
 	public static String getRequiredProperty (String propertyName,
 			Class<?> cls)
 			throws MissingResourceException {
-		return properties.getRequiredProperty(propertyName, cls);
+		return getConfiguration().getRequiredProperty(propertyName, cls);
 	}
 
 	protected void asserting (String message, boolean condition) {
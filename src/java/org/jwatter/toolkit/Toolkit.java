@@ -31,6 +31,7 @@ import org.jwatter.toolkit.control.request.ExitRequest;
 import org.jwatter.toolkit.control.request.OpenUrlRequest;
 import org.jwatter.toolkit.generate.CodeGenerator;
 import org.jwatter.toolkit.generate.code.PropertiesFile;
+import org.jwatter.toolkit.generate.code.SegmentedPropertiesFile;
 import org.jwatter.toolkit.shell.CommandShell;
 import org.jwatter.toolkit.shell.Shell;
 import org.jwatter.toolkit.shell.commands.BrowserHistoryBackCommand;
@@ -45,6 +46,7 @@ import org.jwatter.toolkit.shell.commands.HelpCommand;
 import org.jwatter.toolkit.shell.commands.InspectElementCommand;
 import org.jwatter.toolkit.shell.commands.ListCommand;
 import org.jwatter.toolkit.shell.commands.OpenUrlCommand;
+import org.jwatter.toolkit.shell.commands.TryPageMethodCommand;
 
 public class Toolkit
 {
@@ -126,11 +128,20 @@ public class Toolkit
 
 		CommandShell commandShell = new CommandShell();
 
+		// segmented actor properties rewrite only the segment of a
+		// generated class
+		PropertiesFile actorPropertiesFile =
+				toolkitProperties.getBoolean("segmentedActorProperties",
+						Toolkit.class, false)
+						? new SegmentedPropertiesFile(actorPropertiesFilename)
+						: new PropertiesFile(actorPropertiesFilename);
+
 		CodeGenerator codeGenerator =
 				new CodeGenerator(browserController, commandShell,
-						new BrowserInfo(), new PropertiesFile(
-								actorPropertiesFilename), outputDir,
+						new BrowserInfo(), actorPropertiesFile, outputDir,
 						basePackageName);
+		codeGenerator.setIncrementalGeneration(toolkitProperties.getBoolean(
+				"incrementalGeneration", Toolkit.class, false));
 
 		commandShell.addCommand(new CreateBrowserCommand(browserController));
 		commandShell.addCommand(new CloseBrowserCommand(browserController));
@@ -144,6 +155,8 @@ public class Toolkit
 		commandShell.addCommand(new ListCommand(browserController));
 		commandShell.addCommand(new InspectElementCommand(browserController));
 		commandShell.addCommand(new GenerateCodeCommand(codeGenerator));
+		commandShell.addCommand(new TryPageMethodCommand(browserController,
+				codeGenerator));
 		commandShell.addCommand(new ExitCommand(commandShell));
 		commandShell.addCommand(new HelpCommand((CommandShell) commandShell));
 
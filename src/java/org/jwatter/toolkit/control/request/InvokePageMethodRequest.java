@@ -0,0 +1,97 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.control.request;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.jwatter.browser.WebAutomationFramework;
+import org.jwatter.util.TestConfiguration;
+
+/**
+ * Creates a page object of a page class for the current browser and invokes
+ * a method of the page object. The page object is created and the method is
+ * invoked with the specified configuration set for the browser controller
+ * thread, which is reset to the global configuration afterwards.
+ */
+public class InvokePageMethodRequest extends AbstractRequest implements
+															BrowserRequest
+{
+	protected Class<?> pageClass;
+	protected Method method;
+	protected Object[] arguments;
+	protected TestConfiguration configuration;
+	protected Object result;
+	protected boolean invoked;
+
+	public InvokePageMethodRequest ( Class<?> pageClass, Method method,
+			Object[] arguments, TestConfiguration configuration )
+	{
+		this.pageClass = pageClass;
+		this.method = method;
+		this.arguments = arguments;
+		this.configuration = configuration;
+		this.result = null;
+		this.invoked = false;
+	}
+
+	public void handle ( WebAutomationFramework browser ) throws Exception
+	{
+		// the handling thread may have a configuration of its own
+		TestConfiguration previousconfiguration =
+				TestConfiguration.getForCurrentThread();
+		TestConfiguration.setForCurrentThread(configuration);
+		try
+		{
+			Object page =
+					pageClass.getConstructor(WebAutomationFramework.class)
+							.newInstance(browser);
+			// actor methods are protected
+			method.setAccessible(true);
+			result = method.invoke(page, arguments);
+			invoked = true;
+		}
+		catch ( InvocationTargetException e )
+		{
+			if ( e.getCause() instanceof Exception )
+			{
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+		finally
+		{
+			TestConfiguration.setForCurrentThread(previousconfiguration);
+		}
+	}
+
+	/**
+	 * Returns true if the method has returned normally.
+	 */
+	public boolean isInvoked ()
+	{
+		return invoked;
+	}
+
+	/**
+	 * Returns the value returned by the method, or null if the method is void
+	 * or has not returned normally.
+	 */
+	public Object getResult ()
+	{
+		return result;
+	}
+}
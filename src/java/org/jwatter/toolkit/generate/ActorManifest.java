@@ -0,0 +1,227 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jwatter.util.OrderedProperties;
+import org.jwatter.util.SegmentedProperties;
+
+/**
+ * Records how an actor class was generated, so that it can be regenerated
+ * incrementally. The manifest is stored next to the actor class and contains
+ * a fingerprint of the actor methods of the page, the name of the actor method
+ * generated for each actor method uid, and the prefix of the property and field
+ * names generated for each element. Uids and elements are identified by their
+ * {@link UidKey}, so the manifest does not contain element text. Reusing these names keeps unchanged
+ * methods and properties unchanged when the page has changed.
+ * 
+ * @author kschneider
+ * 
+ */
+public class ActorManifest
+{
+	public static final String MANIFEST_SUFFIX = ".manifest";
+
+	// manifests in another format are ignored
+	protected static final String FORMAT_KEY = "format";
+	protected static final String FORMAT = "2";
+	protected static final String FINGERPRINT_KEY = "fingerprint";
+	protected static final String METHOD_PREFIX = "method.";
+	protected static final String ELEMENT_PREFIX = "element.";
+
+	protected OrderedProperties entries;
+
+	public ActorManifest ()
+	{
+		entries = new OrderedProperties();
+		entries.setProperty(FORMAT_KEY, FORMAT);
+	}
+
+	/**
+	 * Returns the manifest file of an actor class.
+	 * 
+	 * @param packagedirectory
+	 *            the directory of the actor class file
+	 * @param actorclassname
+	 *            the simple name of the actor class
+	 */
+	public static File getManifestFile ( String packagedirectory,
+			String actorclassname )
+	{
+		return new File(packagedirectory, actorclassname + MANIFEST_SUFFIX);
+	}
+
+	/**
+	 * Reads a manifest.
+	 * 
+	 * @param file
+	 *            the manifest file
+	 * @return the manifest, or an empty manifest if the file does not exist
+	 *         or was written in another format
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static ActorManifest load ( File file ) throws IOException
+	{
+		ActorManifest manifest = new ActorManifest();
+		if ( file.isFile() )
+		{
+			OrderedProperties entries = new OrderedProperties();
+			InputStream in = new FileInputStream(file);
+			try
+			{
+				entries.load(in);
+			}
+			finally
+			{
+				in.close();
+			}
+			if ( FORMAT.equals(entries.getProperty(FORMAT_KEY)) )
+			{
+				manifest.entries = entries;
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes this manifest. Readers never see a partially written manifest.
+	 */
+	public void save ( File file ) throws IOException
+	{
+		SegmentedProperties.storeAtomically(entries, file, "Actor manifest");
+	}
+
+	public String getFingerprint ()
+	{
+		return entries.getProperty(FINGERPRINT_KEY);
+	}
+
+	public void setFingerprint ( String fingerprint )
+	{
+		entries.setProperty(FINGERPRINT_KEY, fingerprint);
+	}
+
+	/**
+	 * Returns the name of the actor method generated for an actor method uid,
+	 * or null if no method was generated for the uid.
+	 */
+	public String getMethodName ( UidKey uid )
+	{
+		return entries.getProperty(getMethodKey(uid));
+	}
+
+	public void putMethodName ( UidKey uid, String methodname )
+	{
+		entries.setProperty(getMethodKey(uid), methodname);
+	}
+
+	/**
+	 * Returns the names of all actor methods in this manifest.
+	 */
+	public Set<String> getMethodNames ()
+	{
+		Set<String> methodnames = new HashSet<String>();
+		for ( String key : entries.stringPropertyNames() )
+		{
+			if ( key.startsWith(METHOD_PREFIX) )
+			{
+				methodnames.add(entries.getProperty(key));
+			}
+		}
+		return methodnames;
+	}
+
+	/**
+	 * Returns the prefix of the property and field names generated for an
+	 * element, or null if the element is not known.
+	 * 
+	 * @param elementkey
+	 *            identifies the element by its name and the uids of its actor
+	 *            methods
+	 */
+	public String getElementPrefix ( UidKey elementkey )
+	{
+		return entries.getProperty(getElementKey(elementkey));
+	}
+
+	public void putElementPrefix ( UidKey elementkey, String prefix )
+	{
+		entries.setProperty(getElementKey(elementkey), prefix);
+	}
+
+	protected String getMethodKey ( UidKey uid )
+	{
+		return METHOD_PREFIX + uid;
+	}
+
+	protected String getElementKey ( UidKey elementkey )
+	{
+		return ELEMENT_PREFIX + elementkey;
+	}
+
+	/**
+	 * Computes a fingerprint of a sequence of strings, such as the uids of the
+	 * actor methods of a page.
+	 * 
+	 * @param parts
+	 *            the strings, in order
+	 * @return the SHA-1 digest of the strings, as a hexadecimal string
+	 */
+	public static String computeFingerprint ( Iterable<String> parts )
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch ( NoSuchAlgorithmException e )
+		{
+			// every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+		for ( String part : parts )
+		{
+			try
+			{
+				digest.update(part.getBytes("UTF-8"));
+			}
+			catch ( UnsupportedEncodingException e )
+			{
+				// every Java platform supports UTF-8
+				throw new IllegalStateException(e);
+			}
+			// separator, so that ("ab", "c") and ("a", "bc") differ
+			digest.update((byte) 0);
+		}
+		StringBuilder hex = new StringBuilder();
+		for ( byte b : digest.digest() )
+		{
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(
+					Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
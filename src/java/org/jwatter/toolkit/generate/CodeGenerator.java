@@ -18,11 +18,15 @@ package org.jwatter.toolkit.generate;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import org.jwatter.browser.WebAutomationFramework;
@@ -34,6 +38,7 @@ import org.jwatter.toolkit.control.BrowserControllerException;
 import org.jwatter.toolkit.control.request.BrowserInfo;
 import org.jwatter.toolkit.control.request.GetBrowserInfoRequest;
 import org.jwatter.toolkit.control.request.GetHtmlElementsRequest;
+import org.jwatter.toolkit.control.request.HarvestHtmlElementsRequest;
 import org.jwatter.toolkit.generate.code.Assignment;
 import org.jwatter.toolkit.generate.code.ClassDefinition;
 import org.jwatter.toolkit.generate.code.CodeFactory;
@@ -44,10 +49,11 @@ import org.jwatter.toolkit.generate.code.ObjectCreation;
 import org.jwatter.toolkit.generate.code.PropertiesFile;
 import org.jwatter.toolkit.generate.code.ReturnStatement;
 import org.jwatter.toolkit.generate.code.SourceFile;
+import org.jwatter.toolkit.generate.code.SourceFileWriter;
 import org.jwatter.toolkit.shell.UserCommunicationManager;
 import org.jwatter.util.OrderedProperties;
-import org.jwatter.util.ReflectUtil;
 import org.jwatter.util.StringUtil;
+import org.jwatter.util.TestConfiguration;
 
 public class CodeGenerator
 {
@@ -80,7 +86,77 @@ public class CodeGenerator
 	protected ClassDefinition pageClassDefinition;
 	protected ClassDefinition pageTestClassDefinition;
 	protected OrderedProperties actorProperties;
-	protected Set<String> actorMethodUids;
+	// number of actor methods found by collectActorElements
+	protected int actorMethodCount;
+	// formats and writes the generated source files
+	protected SourceFileWriter sourceFileWriter;
+	// source files written by generate, by class name
+	protected Map<String, SourceFile> generatedSourceFiles =
+			new HashMap<String, SourceFile>();
+	// created when a page class is first loaded
+	protected InMemoryCompiler compiler;
+	// if true, an existing actor class is only regenerated if the page has
+	// changed, and then keeps the names of unchanged methods and properties
+	protected boolean incrementalGeneration = false;
+	// the manifest of the previous generation of the actor class, and the
+	// manifest of the current one
+	protected ActorManifest previousManifest;
+	protected ActorManifest actorManifest;
+	// method names in the previous manifest, not available to new methods
+	protected Set<String> reservedMethodNames;
+
+	/**
+	 * An element that has actor methods, with the uids of its actor methods.
+	 */
+	protected static class ActorElement
+	{
+		protected Element element;
+		protected int elementIndex;
+		protected List<ElementActorMethod> methods =
+				new ArrayList<ElementActorMethod>();
+		protected List<UidKey> uids = new ArrayList<UidKey>();
+		// computed on first use
+		protected UidKey key;
+		// prefix of the property and field names for the element
+		protected String prefix;
+
+		protected ActorElement ( Element element, int elementindex )
+		{
+			this.element = element;
+			this.elementIndex = elementindex;
+		}
+
+		/**
+		 * Identifies the element across generations by its name and the uids
+		 * of its actor methods, which contain the attribute values and
+		 * content the methods use.
+		 */
+		protected UidKey getKey ()
+		{
+			if ( key == null )
+			{
+				UidKey.Builder builder =
+						new UidKey.Builder().append(element.getName());
+				for ( UidKey uid : uids )
+				{
+					builder.append('\u0000').append(uid.toString());
+				}
+				key = builder.build();
+			}
+			return key;
+		}
+
+		/**
+		 * Checks if the actor method with the specified uid key has the same
+		 * uid as an actor method for another element.
+		 */
+		protected boolean hasSameUid ( UidKey uid, ElementActorMethod method,
+				Element methodElement )
+		{
+			return methods.get(uids.indexOf(uid)).hasSameUniqueId(element,
+					method, methodElement);
+		}
+	}
 
 	public CodeGenerator ( BrowserController browsercontroller,
 			UserCommunicationManager confirmmanager, BrowserInfo browserinfo,
@@ -96,6 +172,21 @@ public class CodeGenerator
 		pagePackageName = basePackageName + "." + pageSubpackageName;
 		actorPackageName = basePackageName + "." + actorSubpackageName;
 		testPackageName = basePackageName + "." + testSubpackageName;
+		sourceFileWriter = new SourceFileWriter();
+	}
+
+	/**
+	 * Sets whether existing actor classes are regenerated incrementally. If
+	 * true, a manifest is stored next to each generated actor class. When the
+	 * actor class is generated again and the actor methods of the page have
+	 * not changed, nothing is regenerated; otherwise the actor class is
+	 * regenerated without asking, with the names of unchanged methods and
+	 * properties kept, and only the properties that were added, removed or
+	 * changed are written.
+	 */
+	public void setIncrementalGeneration ( boolean incrementalgeneration )
+	{
+		this.incrementalGeneration = incrementalgeneration;
 	}
 
 	public void generate ( String pageclassname ) throws CodeGeneratorException
@@ -105,6 +196,10 @@ public class CodeGenerator
 		this.pageTestClassName = pageclassname + "Test";
 		getBrowserInfo();
 
+		// counts of files written by this call, taken before the first file
+		// is submitted, since the writer may finish some files right away
+		int written = sourceFileWriter.getWrittenCount();
+		int skipped = sourceFileWriter.getSkippedCount();
 		try
 		{
 			// create new actor class file
@@ -115,10 +210,19 @@ public class CodeGenerator
 			// check if class file already exists
 			String actorclassfilename =
 					actorClassFile.getFilename(sourceDirectory);
+			File manifestfile =
+					ActorManifest.getManifestFile(actorClassFile
+							.getPackageDir(sourceDirectory), actorClassName);
 			boolean createactorclassfile = true;
+			boolean incremental = false;
+			boolean actorgenerated = false;
 			if ( new File(actorclassfilename).exists() )
 			{
-				if ( !confirmManager.confirm(actorClassName
+				if ( incrementalGeneration && manifestfile.isFile() )
+				{
+					incremental = true;
+				}
+				else if ( !confirmManager.confirm(actorClassName
 						+ " already exists. Do you want to overwrite it?") )
 				{
 					createactorclassfile = false;
@@ -128,17 +232,31 @@ public class CodeGenerator
 			{
 				// create actor class
 				System.out.print("Generating actor class...");
-				generateActorClass();
+				previousManifest =
+						incremental ? ActorManifest.load(manifestfile)
+								: new ActorManifest();
+				List<ActorElement> actorelements = collectActorElements();
+				String fingerprint = computeFingerprint(actorelements);
 				System.out.println();
-				System.out.println("Generated " + actorMethodUids.size()
-						+ " actor methods");
-				System.out.println("Writing properties to "
-						+ actorPropertiesFile.getFilename());
-				actorPropertiesFile.replacePropertiesForClass(actorProperties,
-						actorClassDefinition.getName());
-				System.out.println("Writing actor class to "
-						+ actorclassfilename);
-				actorClassFile.save(sourceDirectory);
+				if ( incremental
+						&& fingerprint.equals(previousManifest.getFingerprint()) )
+				{
+					System.out.println(actorClassName
+							+ " is up to date, page has not changed");
+				}
+				else
+				{
+					generateActorClass(actorelements);
+					actorManifest.setFingerprint(fingerprint);
+					System.out.println("Generated " + actorMethodCount
+							+ " actor methods");
+					System.out.println("Writing actor class to "
+							+ actorclassfilename);
+					sourceFileWriter.submit(actorClassFile, sourceDirectory);
+					generatedSourceFiles.put(actorClassFile.getClassName(),
+							actorClassFile);
+					actorgenerated = true;
+				}
 			}
 
 			// create page class (only if it does not exist already)
@@ -152,7 +270,9 @@ public class CodeGenerator
 				System.out
 						.println("Writing page class to " + pageclassfilename);
 				generatePageClass();
-				pageClassFile.save(sourceDirectory);
+				sourceFileWriter.submit(pageClassFile, sourceDirectory);
+				generatedSourceFiles.put(pageClassFile.getClassName(),
+						pageClassFile);
 			}
 
 			// create page test class (only if it does not exist already)
@@ -166,7 +286,46 @@ public class CodeGenerator
 				System.out.println("Writing test class to "
 						+ pagetestclassfilename);
 				generatePageTestClass();
-				pageTestClassFile.save(sourceDirectory);
+				sourceFileWriter.submit(pageTestClassFile, sourceDirectory);
+				generatedSourceFiles.put(pageTestClassFile.getClassName(),
+						pageTestClassFile);
+			}
+
+			// the class files are formatted and written in the background
+			sourceFileWriter.awaitCompletion();
+			written = sourceFileWriter.getWrittenCount() - written;
+			skipped = sourceFileWriter.getSkippedCount() - skipped;
+			if ( written + skipped > 0 )
+			{
+				System.out.println("Wrote " + written + " source files, "
+						+ skipped + " unchanged");
+			}
+
+			// the properties and the manifest must match the actor class, so
+			// they are updated only after it has been written successfully
+			if ( actorgenerated )
+			{
+				if ( incremental )
+				{
+					int changes =
+							actorPropertiesFile.patchPropertiesForClass(
+									actorProperties, actorClassFile
+											.getClassName());
+					System.out.println("Patched " + changes
+							+ " properties in "
+							+ actorPropertiesFile.getFilename());
+				}
+				else
+				{
+					System.out.println("Writing properties to "
+							+ actorPropertiesFile.getFilename());
+					actorPropertiesFile.replacePropertiesForClass(
+							actorProperties, actorClassFile.getClassName());
+				}
+				if ( incrementalGeneration )
+				{
+					actorManifest.save(manifestfile);
+				}
 			}
 		}
 		catch ( IOException e )
@@ -175,7 +334,219 @@ public class CodeGenerator
 		}
 	}
 
-	protected void generateActorClass () throws CodeGeneratorException
+	/**
+	 * Compiles the actor class and the page class of a page in memory and
+	 * loads them into a new class loader, so that they can be used without a
+	 * build. A class whose source file was written by {@link #generate} is
+	 * compiled from the generated source; otherwise it is compiled from its
+	 * file in the source directory, so changes to the page class are
+	 * included. The classes are not initialized.
+	 * 
+	 * @param pageclassname
+	 *            the simple name of the page class
+	 * @return the page class
+	 * @throws CodeGeneratorException
+	 *             if a class does not exist or does not compile
+	 */
+	public Class<?> loadPageClass ( String pageclassname )
+			throws CodeGeneratorException
+	{
+		List<SourceFile> sourcefiles = new ArrayList<SourceFile>();
+		List<File> files = new ArrayList<File>();
+		SourceFile[] classfiles =
+				{
+						SourceFile.createNewSourceFile(actorPackageName,
+								pageclassname + "Actor"),
+						SourceFile.createNewSourceFile(pagePackageName,
+								pageclassname)
+				};
+		for ( SourceFile classfile : classfiles )
+		{
+			SourceFile generated =
+					generatedSourceFiles.get(classfile.getClassName());
+			File file = new File(classfile.getFilename(sourceDirectory));
+			if ( generated != null )
+			{
+				sourcefiles.add(generated);
+			}
+			else if ( file.isFile() )
+			{
+				files.add(file);
+			}
+			else
+			{
+				throw new CodeGeneratorException(classfile.getClassName()
+						+ " has not been generated");
+			}
+		}
+		if ( compiler == null )
+		{
+			compiler = new InMemoryCompiler();
+		}
+		ClassLoader classloader = compiler.compile(sourcefiles, files);
+		try
+		{
+			return Class.forName(classfiles[1].getClassName(), false,
+					classloader);
+		}
+		catch ( ClassNotFoundException e )
+		{
+			throw new CodeGeneratorException(e);
+		}
+	}
+
+	/**
+	 * Returns a configuration in which pages read their properties from the
+	 * actor properties, as they are now, instead of the properties file
+	 * specified in the test configuration.
+	 */
+	public TestConfiguration getPageConfiguration ()
+	{
+		return TestConfiguration.fromProperties(new Properties())
+				.withReferencedConfiguration(
+						PageImpl.PAGE_PROPERTIESFILE_PROPERTY,
+						TestConfiguration.fromProperties(actorPropertiesFile));
+	}
+
+	/**
+	 * Finds the elements of the current page that have actor methods.
+	 * 
+	 * @return the elements, each with the actor methods that are generated
+	 *         for it
+	 */
+	protected List<ActorElement> collectActorElements ()
+			throws CodeGeneratorException
+	{
+		List<ActorElement> actorelements = new ArrayList<ActorElement>();
+		// keys of the uids of the actor methods in the actor class, with the
+		// element of each actor method, to compare uids when keys collide;
+		// not kept after this method returns, so the elements can be released
+		// once the actor class has been generated
+		Map<UidKey, ActorElement> actormethoduids =
+				new HashMap<UidKey, ActorElement>();
+		UidKey.Builder uidbuilder = new UidKey.Builder();
+		// find all supported elements with their attributes and text at once
+		Map<String, List<Element>> harvested =
+				harvestHtmlElements(ElementActorBroker.getSupportedElements(),
+						ElementActorBroker.getHtmlAttributeNames());
+		for ( String elementname : ElementActorBroker.getSupportedElements() )
+		{
+			List<Element> elements = harvested.get(elementname);
+			if ( elements == null ) continue;
+			for ( int elementindex = 1 ; elementindex <= elements.size() ; elementindex++ )
+			{
+				Element element = elements.get(elementindex - 1);
+				ActorElement actorelement =
+						new ActorElement(element, elementindex);
+				for ( ElementActorMethod method : ElementActorBroker
+						.getElementActorMethods(element) )
+				{
+					// All actor methods in the same actor class must have
+					// unique ids. A new actor method will not be added to the
+					// class definition if another actor method with the same
+					// uid already exists.
+					// However, this does not preclude name clashes between
+					// actor methods with different uids. If another actor
+					// method with the same name (but different uid) already
+					// exists, we append a number to the name of the new method
+					// to make it unique.
+					UidKey actormethoduid =
+							findFreeUidKey(actormethoduids, method
+									.getUniqueKeyForElement(element,
+											uidbuilder), method, element);
+					if ( actormethoduid != null )
+					{
+						actormethoduids.put(actormethoduid, actorelement);
+						actorelement.methods.add(method);
+						actorelement.uids.add(actormethoduid);
+					}
+				}
+				if ( !actorelement.methods.isEmpty() )
+				{
+					actorelements.add(actorelement);
+				}
+			}
+		}
+		actorMethodCount = actormethoduids.size();
+		return actorelements;
+	}
+
+	/**
+	 * Returns the key under which an actor method for an element is added to
+	 * the actor class. Uids are compared by key; only if the keys are equal
+	 * are the uids themselves compared, part by part. A uid whose key collides with the key
+	 * of a different uid gets the next free key.
+	 * 
+	 * @param actormethoduids
+	 *            the keys of the actor methods in the actor class, with the
+	 *            element of each actor method
+	 * @param key
+	 *            the key of the uid of the actor method
+	 * @return the key, or null if an actor method with the same uid is
+	 *         already in the actor class
+	 */
+	protected static UidKey findFreeUidKey (
+			Map<UidKey, ActorElement> actormethoduids, UidKey key,
+			ElementActorMethod method, Element element )
+	{
+		ActorElement existing = actormethoduids.get(key);
+		while ( existing != null
+				&& !existing.hasSameUid(key, method, element) )
+		{
+			key = key.next();
+			existing = actormethoduids.get(key);
+		}
+		return existing == null ? key : null;
+	}
+
+	/**
+	 * Computes a fingerprint of everything on the current page that the actor
+	 * class depends on: the URL path and the actor methods of all elements,
+	 * which include the attribute values and content the methods use.
+	 */
+	protected String computeFingerprint ( List<ActorElement> actorelements )
+	{
+		List<String> parts = new ArrayList<String>();
+		parts.add(browserInfo.getPath());
+		for ( ActorElement actorelement : actorelements )
+		{
+			parts.add(actorelement.getKey().toString());
+		}
+		return ActorManifest.computeFingerprint(parts);
+	}
+
+	/**
+	 * Assigns the prefixes of property and field names to elements. An element
+	 * that is in the previous manifest keeps its prefix; other elements get
+	 * their element name and index, or the next free index.
+	 */
+	protected void assignElementPrefixes ( List<ActorElement> actorelements )
+	{
+		Set<String> used = new HashSet<String>();
+		for ( ActorElement actorelement : actorelements )
+		{
+			String prefix =
+					previousManifest.getElementPrefix(actorelement.getKey());
+			if ( prefix != null && used.add(prefix) )
+			{
+				actorelement.prefix = prefix;
+			}
+		}
+		for ( ActorElement actorelement : actorelements )
+		{
+			if ( actorelement.prefix != null ) continue;
+			String elementname = actorelement.element.getName();
+			int index = actorelement.elementIndex;
+			while ( !used.add(elementname + index) )
+			{
+				index++;
+			}
+			actorelement.prefix = elementname + index;
+		}
+	}
+
+	protected void generateActorClass ( List<ActorElement> actorelements )
+			throws CodeGeneratorException
 	{
 		actorClassDefinition =
 				CodeFactory.createClassDefinition(Modifier.PUBLIC,
@@ -217,75 +588,77 @@ public class CodeGenerator
 		constructorbuilder.addSuperConstructorCall(BROWSER_INSTANCE_NAME,
 				actorClassName + ".class");
 
+		// names of unchanged methods and properties are kept
+		actorManifest = new ActorManifest();
+		reservedMethodNames = previousManifest.getMethodNames();
+		assignElementPrefixes(actorelements);
+
 		// add actor methods for all elements that have actor methods
-		actorMethodUids = new HashSet<String>();
-		for ( String elementname : ElementActorBroker.getSupportedElements() )
+		for ( ActorElement actorelement : actorelements )
 		{
-			ArrayList<Element> elements = getHtmlElements(elementname);
-			for ( int elementindex = 1 ; elementindex <= elements.size() ; elementindex++ )
+			actorManifest.putElementPrefix(actorelement.getKey(),
+					actorelement.prefix);
+			for ( int i = 0 ; i < actorelement.methods.size() ; i++ )
 			{
-				Element element = elements.get(elementindex - 1);
-				for ( ElementActorMethod method : ElementActorBroker
-						.getElementActorMethods(element) )
-				{
-					// All actor methods in the same actor class must have
-					// unique ids. A new actor method will not be added to the
-					// class definition if another actor method with the same
-					// uid already exists.
-					// However, this does not preclude name clashes between
-					// actor methods with different uids. If another actor
-					// method with the same name (but different uid) already
-					// exists, we append a number to the name of the new method
-					// to make it unique.
-					String actormethoduid =
-							method.getUniqueIdForElement(element);
-					if ( !actorMethodUids.contains(actormethoduid) )
-					{
-						actorMethodUids.add(actormethoduid);
-						generateActorMethodDefinitionForElement(method,
-								element, elementindex);
-					}
-				}
+				UidKey uid = actorelement.uids.get(i);
+				MethodDefinition methoddefinition =
+						generateActorMethodDefinitionForElement(
+								actorelement.methods.get(i),
+								actorelement.element, actorelement.prefix,
+								previousManifest.getMethodName(uid));
+				actorManifest.putMethodName(uid, methoddefinition.getName());
 			}
 		}
 	}
 
-	protected void generateActorMethodDefinitionForElement (
-			ElementActorMethod method, Element element, int elementindex )
-			throws CodeGeneratorException
+	/**
+	 * Generates an actor method for an element.
+	 * 
+	 * @param elementprefix
+	 *            the prefix of the property and field names for the element
+	 * @param previousmethodname
+	 *            the name of the method in the previous generation of the
+	 *            actor class, or null if the method is new
+	 * @return the generated method
+	 */
+	protected MethodDefinition generateActorMethodDefinitionForElement (
+			ElementActorMethod method, Element element, String elementprefix,
+			String previousmethodname ) throws CodeGeneratorException
 	{
 		Class<?> returntype = method.getReturnType();
-		String methodname = method.getNameForElement(element);
+		String methodname =
+				previousmethodname != null ? previousmethodname : method
+						.getNameForElement(element);
 		Class<?>[] parametertypes = method.getParameterTypes();
 		String[] parameternames = method.getParameterNames();
 		Class<?>[] exceptiontypes = method.getExceptionTypes();
-		Method interfacemethod = method.getInterfaceMethod();
+		String interfacemethodname = method.getInterfaceMethodName();
 
 		// for Javadoc
 		String elementtext =
 				element.getText(TRUNCATE_ELEMENT_TEXT_IN_JAVADOC, true);
 		String description =
 				"Calls "
-						+ ReflectUtil.getSignature(interfacemethod)
+						+ method.getInterfaceMethodSignature()
 						+ " for "
 						+ element.toString()
 						+ (elementtext.length() > 0 ? " \"" + elementtext
 								+ "\"" : "");
 		String returndoc =
 				returntype != void.class ? "the value of "
-						+ interfacemethod.getName() : null;
+						+ interfacemethodname : null;
 		String[] parameterdoc = new String[parameternames.length];
 		for ( int i = 0 ; i < parameternames.length ; i++ )
 		{
 			parameterdoc[i] =
 					"the " + parameternames[i] + " parameter of "
-							+ interfacemethod.getName();
+							+ interfacemethodname;
 		}
 		String[] exceptiondoc = new String[exceptiontypes.length];
 		for ( int i = 0 ; i < exceptiontypes.length ; i++ )
 		{
 			exceptiondoc[i] =
-					"if " + interfacemethod.getName() + " throws "
+					"if " + interfacemethodname + " throws "
 							+ exceptiontypes[i].getSimpleName();
 		}
 
@@ -293,7 +666,7 @@ public class CodeGenerator
 		// - attribute and element content parameters are passed field names
 		// - other parameters are passed actor method parameters
 		String[] interfacemethodarguments =
-				new String[interfacemethod.getParameterTypes().length];
+				new String[method.getInterfaceParameterCount()];
 		for ( int interfaceparameterindex = 0 ; interfaceparameterindex < interfacemethodarguments.length ; interfaceparameterindex++ )
 		{
 			if ( method.isHtmlAttributeParameter(interfaceparameterindex) )
@@ -303,7 +676,7 @@ public class CodeGenerator
 						method
 								.getHtmlAttributeNameForParameter(interfaceparameterindex);
 				interfacemethodarguments[interfaceparameterindex] =
-						generateAttributePropertyField(element, elementindex,
+						generateAttributePropertyField(element, elementprefix,
 								attributename);
 			}
 			else if ( method
@@ -312,7 +685,7 @@ public class CodeGenerator
 				// create property and field for content
 				interfacemethodarguments[interfaceparameterindex] =
 						generateElementContentPropertyField(element,
-								elementindex);
+								elementprefix);
 			}
 			else
 			{
@@ -332,7 +705,7 @@ public class CodeGenerator
 		if ( returntype == void.class )
 		{
 			actormethodbuilder.addMethodCall(BROWSER_INSTANCE_NAME,
-					interfacemethod, interfacemethodarguments);
+					method.getInterfaceMethod(), interfacemethodarguments);
 		}
 		else
 		{
@@ -349,12 +722,10 @@ public class CodeGenerator
 		MethodDefinition methoddefinition =
 				actormethodbuilder.getMethodDefinition();
 
-		// make sure method does not exist already
-		int count = 1;
-		while ( actorClassDefinition.containsMethod(methoddefinition) )
-		{
-			methoddefinition.setName(methodname + (++count));
-		}
+		// make sure method does not exist already, and that a new method does
+		// not take the name of a method in the previous generation
+		actorClassDefinition.makeMethodNameUnique(methoddefinition,
+				previousmethodname == null ? reservedMethodNames : null);
 
 		// add method to actor class
 		actorClassDefinition.addMethodDefinition(methoddefinition);
@@ -367,18 +738,17 @@ public class CodeGenerator
 				actorClassFile.addImport(exceptionclass);
 			}
 		}
+		return methoddefinition;
 	}
 
 	protected String generateAttributePropertyField ( Element element,
-			int elementindex, String attribute ) throws CodeGeneratorException
+			String elementprefix, String attribute )
+			throws CodeGeneratorException
 	{
-		String fieldname =
-				element.getName() + elementindex
-						+ StringUtil.titleCase(attribute);
+		String fieldname = elementprefix + StringUtil.titleCase(attribute);
 		if ( actorClassDefinition.hasFieldDeclaration(fieldname) ) return fieldname;
 
-		String propertyname =
-				element.getName() + elementindex + "." + attribute;
+		String propertyname = elementprefix + "." + attribute;
 		String propertypath =
 				actorClassFile.getClassName() + "." + propertyname;
 		String propertyvalue = element.getAttributeValue(attribute);
@@ -388,12 +758,12 @@ public class CodeGenerator
 	}
 
 	protected String generateElementContentPropertyField ( Element element,
-			int elementindex ) throws CodeGeneratorException
+			String elementprefix ) throws CodeGeneratorException
 	{
-		String fieldname = element.getName() + elementindex + "Content";
+		String fieldname = elementprefix + "Content";
 		if ( actorClassDefinition.hasFieldDeclaration(fieldname) ) return fieldname;
 
-		String propertyname = element.getName() + elementindex + ".content";
+		String propertyname = elementprefix + ".content";
 		String propertypath =
 				actorClassFile.getClassName() + "." + propertyname;
 		String propertyvalue = element.getText().trim();
@@ -498,6 +868,24 @@ public class CodeGenerator
 		}
 	}
 
+	protected Map<String, List<Element>> harvestHtmlElements (
+			Collection<String> elementnames, Collection<String> attributenames )
+			throws CodeGeneratorException
+	{
+		try
+		{
+			Map<String, List<Element>> elements =
+					new HashMap<String, List<Element>>();
+			browserController.send(new HarvestHtmlElementsRequest(
+					elementnames, attributenames, true, elements));
+			return elements;
+		}
+		catch ( BrowserControllerException e )
+		{
+			throw new CodeGeneratorException(e);
+		}
+	}
+
 	protected static String getBrowserInstanceFieldname ()
 	{
 		for ( Field field : WebFunctionalTestCase.class.getDeclaredFields() )
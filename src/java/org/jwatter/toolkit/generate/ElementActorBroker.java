@@ -20,11 +20,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.jwatter.browser.WebAutomationFramework;
 import org.jwatter.html.Element;
-import org.jwatter.util.ListFilter;
 
 /**
  * Knows which methods the {@link WebAutomationFramework} has, for which HTML
@@ -38,6 +40,12 @@ public class ElementActorBroker
 {
 	protected static final List<ElementActorMethod> actorMethods;
 	protected static final HashMap<String, List<ElementActorMethod>> actorMethodsForElement;
+	// attributes read by the actor methods for an element
+	protected static final HashMap<String, String[]> attributeNamesForElement;
+	// attributes read by the actor methods for any element
+	protected static final Set<String> allAttributeNames;
+	// actor methods for an element compiled into a decision index
+	protected static final HashMap<String, ElementActorIndex> indexForElement;
 
 	static
 	{
@@ -63,6 +71,26 @@ public class ElementActorBroker
 				actorMethodsForElement.get(elementName).add(actorMethod);
 			}
 		}
+
+		attributeNamesForElement = new HashMap<String, String[]>();
+		indexForElement = new HashMap<String, ElementActorIndex>();
+		Set<String> allNames = new LinkedHashSet<String>();
+		for ( Map.Entry<String, List<ElementActorMethod>> methods : actorMethodsForElement
+				.entrySet() )
+		{
+			Set<String> attributeNames = new LinkedHashSet<String>();
+			for ( ElementActorMethod actorMethod : methods.getValue() )
+			{
+				attributeNames.addAll(actorMethod.getHtmlAttributeNames(methods
+						.getKey()));
+			}
+			attributeNamesForElement.put(methods.getKey(), attributeNames
+					.toArray(new String[attributeNames.size()]));
+			allNames.addAll(attributeNames);
+			indexForElement.put(methods.getKey(), new ElementActorIndex(methods
+					.getKey(), methods.getValue()));
+		}
+		allAttributeNames = Collections.unmodifiableSet(allNames);
 	}
 
 	public static Collection<String> getSupportedElements ()
@@ -75,20 +103,36 @@ public class ElementActorBroker
 		return actorMethods;
 	}
 
+	/**
+	 * Returns the names of all attributes that are read from an element when
+	 * actor methods are matched against it and generated for it.
+	 */
+	public static String[] getHtmlAttributeNames ( String elementName )
+	{
+		String[] attributeNames = attributeNamesForElement.get(elementName);
+		return attributeNames != null ? attributeNames : new String[0];
+	}
+
+	/**
+	 * Returns the names of all attributes that are read from any supported
+	 * element when actor methods are matched against it and generated for it.
+	 */
+	public static Set<String> getHtmlAttributeNames ()
+	{
+		return allAttributeNames;
+	}
+
 	public static List<ElementActorMethod> getElementActorMethods (
-			final Element element )
+			Element element )
 	{
-		if ( !actorMethodsForElement.containsKey(element.getName()) ) return Collections
-				.emptyList();
+		String elementName = element.getName();
+		ElementActorIndex index = indexForElement.get(elementName);
+		if ( index == null ) return Collections.emptyList();
 
-		return new ListFilter<ElementActorMethod>()
-		{
-			@Override
-			public boolean eval ( ElementActorMethod method )
-			{
-				return method.isForElement(element);
-			}
-		}.filter(actorMethodsForElement.get(element.getName()));
+		// fetch all attributes the matching methods need in one go
+		element.prefetch(attributeNamesForElement.get(elementName));
+
+		return index.match(element);
 	}
 
 }
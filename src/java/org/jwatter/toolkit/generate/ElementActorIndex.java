@@ -0,0 +1,269 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jwatter.html.Element;
+
+/**
+ * The actor methods for elements with one name, compiled into a decision
+ * index. An attribute restriction with a value in the {@link HtmlElement}
+ * annotation of a method, such as <code>type="submit"</code>, makes the
+ * attribute a key attribute; the values of the key attributes of an element
+ * select the candidate methods. All other conditions, that is, attribute
+ * restrictions without a value, attributes passed as parameters and element
+ * content passed as parameter, are encoded in a bit mask per method. Matching
+ * an element is a probe into the index and a mask check per candidate, and
+ * gives the same result as {@link ElementActorMethod#isForElement(Element)}.
+ * 
+ * @author kschneider
+ * 
+ */
+public class ElementActorIndex
+{
+	// separates key attribute values in an index key
+	protected static final char KEY_SEPARATOR = '\u0000';
+	// stands for a missing key attribute in an index key
+	protected static final char MISSING_VALUE = '\u0001';
+
+	protected String elementName;
+	protected ElementActorMethod[] methods;
+	// attributes checked for presence, bit i of a mask stands for attributes[i]
+	protected String[] attributes;
+	// the bit that stands for non-empty element content
+	protected long contentBit;
+	// the conditions of each method other than key attribute values
+	protected long[] requiredMasks;
+	// attributes whose values select candidate methods
+	protected String[] keyAttributes;
+	// the value of each key attribute required by each method, or null
+	protected String[][] keyValues;
+	// positions of the candidate methods by index key, filled as keys are seen
+	protected ConcurrentMap<String, int[]> candidatesForKey =
+			new ConcurrentHashMap<String, int[]>();
+
+	/**
+	 * Compiles actor methods for elements with the specified name.
+	 * 
+	 * @param elementName
+	 *            the name of the elements
+	 * @param methods
+	 *            the actor methods for elements with that name; the matching
+	 *            methods are returned in this order
+	 * @throws HtmlAnnotationError
+	 *             if the methods check too many attributes for a bit mask
+	 */
+	public ElementActorIndex ( String elementName,
+			List<ElementActorMethod> methods ) throws HtmlAnnotationError
+	{
+		this.elementName = elementName;
+		this.methods = methods.toArray(new ElementActorMethod[methods.size()]);
+
+		Set<String> keyAttributeSet = new LinkedHashSet<String>();
+		Set<String> attributeSet = new LinkedHashSet<String>();
+		for ( ElementActorMethod method : this.methods )
+		{
+			String restricting = method.getRestrictingAttributeName(elementName);
+			if ( restricting != null )
+			{
+				if ( method.getRestrictingAttributeValue(elementName) != null )
+				{
+					keyAttributeSet.add(restricting);
+				}
+				else
+				{
+					attributeSet.add(restricting);
+				}
+			}
+			for ( String attribute : getParameterAttributeNames(method) )
+			{
+				attributeSet.add(attribute);
+			}
+		}
+		if ( attributeSet.size() >= Long.SIZE )
+		{
+			throw new HtmlAnnotationError("actor methods for element "
+					+ elementName + " check more than " + (Long.SIZE - 1)
+					+ " attributes");
+		}
+		attributes = attributeSet.toArray(new String[attributeSet.size()]);
+		keyAttributes =
+				keyAttributeSet.toArray(new String[keyAttributeSet.size()]);
+		contentBit = 1L << attributes.length;
+
+		requiredMasks = new long[this.methods.length];
+		keyValues = new String[this.methods.length][];
+		for ( int m = 0 ; m < this.methods.length ; m++ )
+		{
+			ElementActorMethod method = this.methods[m];
+			String restricting = method.getRestrictingAttributeName(elementName);
+			String value = method.getRestrictingAttributeValue(elementName);
+			long mask = 0;
+			if ( restricting != null && value == null )
+			{
+				mask |= getBit(restricting);
+			}
+			for ( String attribute : getParameterAttributeNames(method) )
+			{
+				mask |= getBit(attribute);
+			}
+			if ( method.hasHtmlElementContentParameter() )
+			{
+				mask |= contentBit;
+			}
+			requiredMasks[m] = mask;
+			keyValues[m] = new String[keyAttributes.length];
+			for ( int k = 0 ; k < keyAttributes.length ; k++ )
+			{
+				if ( value != null && keyAttributes[k].equals(restricting) )
+				{
+					keyValues[m][k] = value;
+				}
+			}
+		}
+	}
+
+	protected static List<String> getParameterAttributeNames (
+			ElementActorMethod method )
+	{
+		List<String> names = new ArrayList<String>();
+		int count = method.getInterfaceParameterCount();
+		for ( int i = 0 ; i < count ; i++ )
+		{
+			if ( method.isHtmlAttributeParameter(i) )
+			{
+				names.add(method.getHtmlAttributeNameForParameter(i));
+			}
+		}
+		return names;
+	}
+
+	protected long getBit ( String attribute )
+	{
+		for ( int i = 0 ; i < attributes.length ; i++ )
+		{
+			if ( attributes[i].equals(attribute) ) return 1L << i;
+		}
+		throw new IllegalArgumentException(attribute);
+	}
+
+	public String getElementName ()
+	{
+		return elementName;
+	}
+
+	/**
+	 * Finds the actor methods that can act upon an element.
+	 * 
+	 * @param element
+	 *            an element with the name of this index
+	 * @return the matching methods, in the order in which they were passed to
+	 *         the constructor
+	 */
+	public List<ElementActorMethod> match ( Element element )
+	{
+		int[] candidates = getCandidates(element);
+		if ( candidates.length == 0 )
+		{
+			return Collections.emptyList();
+		}
+
+		long present = 0;
+		for ( int i = 0 ; i < attributes.length ; i++ )
+		{
+			if ( element.getAttributeValue(attributes[i]) != null )
+			{
+				present |= 1L << i;
+			}
+		}
+		boolean contentChecked = false;
+
+		List<ElementActorMethod> matching =
+				new ArrayList<ElementActorMethod>(candidates.length);
+		for ( int candidate : candidates )
+		{
+			long required = requiredMasks[candidate];
+			if ( (required & contentBit) != 0 && !contentChecked )
+			{
+				String text = element.getText();
+				if ( text != null && text.trim().length() > 0 )
+				{
+					present |= contentBit;
+				}
+				contentChecked = true;
+			}
+			if ( (present & required) == required )
+			{
+				matching.add(methods[candidate]);
+			}
+		}
+		return matching;
+	}
+
+	protected int[] getCandidates ( Element element )
+	{
+		String[] values = new String[keyAttributes.length];
+		StringBuilder key = new StringBuilder();
+		for ( int k = 0 ; k < keyAttributes.length ; k++ )
+		{
+			values[k] = element.getAttributeValue(keyAttributes[k]);
+			if ( k > 0 ) key.append(KEY_SEPARATOR);
+			if ( values[k] != null )
+			{
+				key.append(values[k]);
+			}
+			else
+			{
+				key.append(MISSING_VALUE);
+			}
+		}
+		int[] candidates = candidatesForKey.get(key.toString());
+		if ( candidates == null )
+		{
+			candidates = selectCandidates(values);
+			int[] existing =
+					candidatesForKey.putIfAbsent(key.toString(), candidates);
+			if ( existing != null ) candidates = existing;
+		}
+		return candidates;
+	}
+
+	protected int[] selectCandidates ( String[] values )
+	{
+		int[] candidates = new int[methods.length];
+		int count = 0;
+		for ( int m = 0 ; m < methods.length ; m++ )
+		{
+			boolean selected = true;
+			for ( int k = 0 ; k < keyAttributes.length && selected ; k++ )
+			{
+				selected = keyValues[m][k] == null
+						|| keyValues[m][k].equals(values[k]);
+			}
+			if ( selected ) candidates[count++] = m;
+		}
+		int[] selected = new int[count];
+		System.arraycopy(candidates, 0, selected, 0, count);
+		return selected;
+	}
+}
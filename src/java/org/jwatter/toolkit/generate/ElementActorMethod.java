@@ -17,9 +17,11 @@ package org.jwatter.toolkit.generate;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.jwatter.html.Element;
 import org.jwatter.util.ReflectUtil;
@@ -36,6 +38,10 @@ import org.jwatter.util.StringUtil;
  * retrieve a name and unique identifier for a specific actor method, given the
  * element that the actor method acts upon.
  * 
+ * All reflection metadata of the interface method is read once by the
+ * constructor. The arrays returned by the getters are shared and must not be
+ * modified.
+ * 
  * @author kschneider
  * 
  */
@@ -47,6 +53,12 @@ public class ElementActorMethod
 	}
 
 	protected Method interfaceMethod;
+	// metadata of the interface method, read once
+	protected String interfaceMethodName;
+	protected String interfaceMethodSignature;
+	protected Class<?> returnType;
+	protected Class<?>[] interfaceParameterTypes;
+	protected Class<?>[] exceptionTypes;
 
 	// element names in the method annotation
 	protected String[] elementNames;
@@ -58,20 +70,21 @@ public class ElementActorMethod
 	// name in attribute annotation on parameter, or null if no attribute
 	// annotation present
 	protected String[] parameterAttributeNames;
-	// index of parameter with element content annotation, or null if no element
+	// index of parameter with element content annotation, or -1 if no element
 	// content annotation present
-	protected Integer elementContentParameterIndex;
-	// index of parameter with element index annotation, or null if no element
+	protected int elementContentParameterIndex;
+	// index of parameter with element index annotation, or -1 if no element
 	// index annotation present
-	protected Integer elementIndexParameterIndex;
+	protected int elementIndexParameterIndex;
 
 	// parameter types of this actor method
 	protected Class<?>[] parameterTypes;
 	// parameter names of this actor method
 	protected String[] parameterNames;
 
-	// mapping of interface method parameters to actor method parameters
-	protected Map<Integer, Integer> parameterMap;
+	// index of the actor method parameter for each interface method
+	// parameter, or -1 if the parameter is not an actor method parameter
+	protected int[] parameterMap;
 
 	public ElementActorMethod ( Method interfaceMethod )
 			throws IllegalArgumentException, HtmlAnnotationError
@@ -88,6 +101,12 @@ public class ElementActorMethod
 		}
 
 		this.interfaceMethod = interfaceMethod;
+		this.interfaceMethodName = interfaceMethod.getName();
+		this.interfaceMethodSignature =
+				ReflectUtil.getSignature(interfaceMethod);
+		this.returnType = interfaceMethod.getReturnType();
+		this.interfaceParameterTypes = interfaceMethod.getParameterTypes();
+		this.exceptionTypes = interfaceMethod.getExceptionTypes();
 		this.elementNames = elementAnnotation.name();
 		this.elementAttributeNames = elementAnnotation.attributeName();
 		this.elementAttributeValues = elementAnnotation.attributeValue();
@@ -104,7 +123,7 @@ public class ElementActorMethod
 			throw new HtmlAnnotationError("missing element name in @"
 					+ HtmlElement.class.getSimpleName()
 					+ " annotation on method "
-					+ ReflectUtil.getSignature(interfaceMethod));
+					+ interfaceMethodSignature);
 		}
 		for ( String elementName : elementNames )
 		{
@@ -113,7 +132,7 @@ public class ElementActorMethod
 				throw new HtmlAnnotationError("null or empty name in @"
 						+ HtmlElement.class.getSimpleName()
 						+ " annotation on method "
-						+ ReflectUtil.getSignature(interfaceMethod));
+						+ interfaceMethodSignature);
 			}
 		}
 	}
@@ -124,9 +143,10 @@ public class ElementActorMethod
 		Annotation[][] parameterAnnotations =
 				interfaceMethod.getParameterAnnotations();
 		parameterAttributeNames = new String[parameterAnnotations.length];
-		elementContentParameterIndex = null;
-		elementIndexParameterIndex = null;
-		parameterMap = new LinkedHashMap<Integer, Integer>();
+		elementContentParameterIndex = -1;
+		elementIndexParameterIndex = -1;
+		parameterMap = new int[parameterAnnotations.length];
+		Arrays.fill(parameterMap, -1);
 		int actorMethodParameterCount = 0;
 		for ( int parameterIndex = 0 ; parameterIndex < parameterAnnotations.length ; parameterIndex++ )
 		{
@@ -148,7 +168,7 @@ public class ElementActorMethod
 						throw new HtmlAnnotationError("null or empty name in @"
 								+ HtmlAttribute.class.getSimpleName()
 								+ " annotation on a parameter of method "
-								+ ReflectUtil.getSignature(interfaceMethod));
+								+ interfaceMethodSignature);
 					}
 					parameterAttributeNames[parameterIndex] = attribute;
 				}
@@ -157,15 +177,14 @@ public class ElementActorMethod
 					annotationCount++;
 
 					// only one parameter can have element content annotation
-					if ( elementContentParameterIndex != null )
+					if ( elementContentParameterIndex >= 0 )
 					{
 						throw new HtmlAnnotationError(
 								"@"
 										+ HtmlElementContent.class
 												.getSimpleName()
 										+ " annotation present on more than one parameter of method "
-										+ ReflectUtil
-												.getSignature(interfaceMethod));
+										+ interfaceMethodSignature);
 					}
 					elementContentParameterIndex = parameterIndex;
 				}
@@ -174,29 +193,26 @@ public class ElementActorMethod
 					annotationCount++;
 
 					// only one parameter can have element index annotation
-					if ( elementIndexParameterIndex != null )
+					if ( elementIndexParameterIndex >= 0 )
 					{
 						throw new HtmlAnnotationError(
 								"@"
 										+ HtmlElementIndex.class
 												.getSimpleName()
 										+ " annotation present on more than one parameter of method "
-										+ ReflectUtil
-												.getSignature(interfaceMethod));
+										+ interfaceMethodSignature);
 					}
 					elementIndexParameterIndex = parameterIndex;
 
 					// element index parameter is passed through
-					parameterMap.put(new Integer(parameterIndex), new Integer(
-							actorMethodParameterCount++));
+					parameterMap[parameterIndex] = actorMethodParameterCount++;
 				}
 			}
 
 			if ( annotationCount == 0 )
 			{
 				// parameter without annotation is passed through
-				parameterMap.put(new Integer(parameterIndex), new Integer(
-						actorMethodParameterCount++));
+				parameterMap[parameterIndex] = actorMethodParameterCount++;
 			}
 
 			// more than one annotation present on current parameter?
@@ -204,7 +220,7 @@ public class ElementActorMethod
 			{
 				throw new HtmlAnnotationError(
 						"multiple annotations present on a parameter of method "
-								+ ReflectUtil.getSignature(interfaceMethod));
+								+ interfaceMethodSignature);
 			}
 		}
 
@@ -216,13 +232,15 @@ public class ElementActorMethod
 		// arg1, arg2, ... otherwise
 		parameterNames = new String[actorMethodParameterCount];
 		int argCount = 0;
-		for ( Entry<Integer, Integer> mapping : parameterMap.entrySet() )
+		for ( int parameterIndex = 0 ; parameterIndex < parameterMap.length ; parameterIndex++ )
 		{
-			parameterTypes[mapping.getValue()] =
-					interfaceMethod.getParameterTypes()[mapping.getKey()];
-			parameterNames[mapping.getValue()] =
-					isHtmlElementIndexParameter(mapping.getKey())	? "which"
-																	: ("arg" + (++argCount));
+			int actorParameterIndex = parameterMap[parameterIndex];
+			if ( actorParameterIndex < 0 ) continue;
+			parameterTypes[actorParameterIndex] =
+					interfaceParameterTypes[parameterIndex];
+			parameterNames[actorParameterIndex] =
+					isHtmlElementIndexParameter(parameterIndex)	? "which"
+																: ("arg" + (++argCount));
 		}
 	}
 
@@ -283,14 +301,111 @@ public class ElementActorMethod
 		return elementNames;
 	}
 
+	/**
+	 * Get the names of all attributes that are read from an element with the
+	 * specified name when this method is matched against the element or when
+	 * an actor method is generated for it.
+	 * 
+	 * @param elementName
+	 *            the name of an element
+	 * @return the attribute names, without duplicates
+	 */
+	public Set<String> getHtmlAttributeNames ( String elementName )
+	{
+		Set<String> attributeNames = new LinkedHashSet<String>();
+		for ( int i = 0 ; i < elementNames.length ; i++ )
+		{
+			if ( elementNames[i].equals(elementName)
+					&& i < elementAttributeNames.length
+					&& elementAttributeNames[i] != null
+					&& !elementAttributeNames[i].equals("") )
+			{
+				attributeNames.add(elementAttributeNames[i]);
+			}
+		}
+		for ( String attributeName : parameterAttributeNames )
+		{
+			if ( attributeName != null ) attributeNames.add(attributeName);
+		}
+		return attributeNames;
+	}
+
+	/**
+	 * Get the attribute that the {@link HtmlElement} annotation of the
+	 * interface method restricts for elements with the specified name.
+	 * 
+	 * @param elementName
+	 *            the name of an element
+	 * @return the attribute name, or null if elements with that name are not
+	 *         restricted
+	 */
+	public String getRestrictingAttributeName ( String elementName )
+	{
+		int i = getElementNameIndex(elementName);
+		if ( i < 0 || i >= elementAttributeNames.length
+				|| elementAttributeNames[i] == null
+				|| elementAttributeNames[i].equals("") ) return null;
+		return elementAttributeNames[i];
+	}
+
+	/**
+	 * Get the value that the restricting attribute must have in elements with
+	 * the specified name.
+	 * 
+	 * @param elementName
+	 *            the name of an element
+	 * @return the attribute value, or null if the attribute only needs to be
+	 *         present or elements with that name are not restricted
+	 */
+	public String getRestrictingAttributeValue ( String elementName )
+	{
+		if ( getRestrictingAttributeName(elementName) == null ) return null;
+		int i = getElementNameIndex(elementName);
+		return i < elementAttributeValues.length ? elementAttributeValues[i]
+				: null;
+	}
+
+	// the first position of the element name in the element annotation, as
+	// in matchesElementAnnotation
+	protected int getElementNameIndex ( String elementName )
+	{
+		for ( int i = 0 ; i < elementNames.length ; i++ )
+		{
+			if ( elementNames[i].equals(elementName) ) return i;
+		}
+		return -1;
+	}
+
 	public Method getInterfaceMethod ()
 	{
 		return interfaceMethod;
 	}
 
+	public String getInterfaceMethodName ()
+	{
+		return interfaceMethodName;
+	}
+
+	/**
+	 * Get the signature of the interface method, as returned by
+	 * {@link ReflectUtil#getSignature(Method)}.
+	 */
+	public String getInterfaceMethodSignature ()
+	{
+		return interfaceMethodSignature;
+	}
+
+	/**
+	 * Get the number of parameters of the interface method.
+	 */
+	public int getInterfaceParameterCount ()
+	{
+		return interfaceParameterTypes.length;
+	}
+
 	public Class<?> getReturnType ()
 	{
-		return interfaceMethod.getReturnType();
+		return returnType;
 	}
 
 	/**
@@ -312,7 +427,7 @@ public class ElementActorMethod
 	public String getNameForElement ( Element element )
 	{
 		StringBuilder name = new StringBuilder();
-		name.append(interfaceMethod.getName());
+		name.append(interfaceMethodName);
 		for ( int interfaceParameterIndex = 0 ; interfaceParameterIndex < parameterAttributeNames.length ; interfaceParameterIndex++ )
 		{
 			String attribute = parameterAttributeNames[interfaceParameterIndex];
@@ -366,24 +481,130 @@ public class ElementActorMethod
 	public String getUniqueIdForElement ( Element element )
 	{
 		StringBuilder uid = new StringBuilder();
-		uid.append(interfaceMethod.getName());
+		for ( CharSequence part : getUniqueIdParts(element) )
+		{
+			uid.append(part);
+		}
+		return uid.toString();
+	}
+
+	/**
+	 * Get the parts that make up the unique identifier for an actor method
+	 * represented by this instance that acts upon a specific element. The
+	 * parts are the method name, attribute names, attribute values and
+	 * element content themselves, so no characters are copied.
+	 * 
+	 * @param element
+	 *            the element that the actor method represented by this instance
+	 *            acts upon
+	 * @return the parts of the unique identifier, in order
+	 */
+	protected List<CharSequence> getUniqueIdParts ( Element element )
+	{
+		List<CharSequence> parts = new ArrayList<CharSequence>();
+		parts.add(interfaceMethodName);
 		if ( hasHtmlElementIndexParameter() )
 		{
-			uid.append(".I");
+			parts.add(".I");
 		}
 		for ( String attributeName : parameterAttributeNames )
 		{
 			if ( attributeName != null )
 			{
-				uid.append(".A.").append(attributeName).append(".").append(
-						element.getAttributeValue(attributeName));
+				parts.add(".A.");
+				parts.add(attributeName);
+				parts.add(".");
+				parts.add(String.valueOf(element.getAttributeValue(attributeName)));
 			}
 		}
 		if ( hasHtmlElementContentParameter() )
 		{
-			uid.append(".C.").append(element.getText());
+			parts.add(".C.");
+			parts.add(String.valueOf(element.getText()));
 		}
-		return uid.toString();
+		return parts;
+	}
+
+	/**
+	 * Checks if the unique identifier for an actor method represented by this
+	 * instance that acts upon an element equals the unique identifier for
+	 * another actor method that acts upon another element. The identifiers are
+	 * compared part by part, without building them.
+	 * 
+	 * @param element
+	 *            the element that the actor method represented by this instance
+	 *            acts upon
+	 * @param method
+	 *            the other actor method
+	 * @param methodElement
+	 *            the element that the other actor method acts upon
+	 * @return true if both actor methods have the same unique identifier
+	 */
+	public boolean hasSameUniqueId ( Element element,
+			ElementActorMethod method, Element methodElement )
+	{
+		List<CharSequence> parts = getUniqueIdParts(element);
+		List<CharSequence> otherParts = method.getUniqueIdParts(methodElement);
+		if ( length(parts) != length(otherParts) ) return false;
+		int part = 0, i = 0;
+		int otherPart = 0, otherI = 0;
+		while ( true )
+		{
+			// skip exhausted and empty parts
+			while ( part < parts.size() && i == parts.get(part).length() )
+			{
+				part++;
+				i = 0;
+			}
+			while ( otherPart < otherParts.size()
+					&& otherI == otherParts.get(otherPart).length() )
+			{
+				otherPart++;
+				otherI = 0;
+			}
+			if ( part == parts.size() ) return otherPart == otherParts.size();
+			if ( otherPart == otherParts.size() ) return false;
+			CharSequence chars = parts.get(part);
+			CharSequence otherChars = otherParts.get(otherPart);
+			while ( i < chars.length() && otherI < otherChars.length() )
+			{
+				if ( chars.charAt(i++) != otherChars.charAt(otherI++) ) return false;
+			}
+		}
+	}
+
+	protected static int length ( List<CharSequence> parts )
+	{
+		int length = 0;
+		for ( CharSequence part : parts )
+		{
+			length += part.length();
+		}
+		return length;
+	}
+
+	/**
+	 * Get the key of the unique identifier for an actor method represented by
+	 * this instance that acts upon a specific element. The key is equal to
+	 * <code>UidKey.of(getUniqueIdForElement(element))</code>, but is computed
+	 * without building the unique identifier, which contains the full text of
+	 * the element if the interface method has an element content parameter.
+	 * 
+	 * @param element
+	 *            the element that the actor method represented by this instance
+	 *            acts upon
+	 * @param builder
+	 *            the builder used to compute the key
+	 * @return the key of the unique identifier for the actor method
+	 */
+	public UidKey getUniqueKeyForElement ( Element element,
+			UidKey.Builder builder )
+	{
+		for ( CharSequence part : getUniqueIdParts(element) )
+		{
+			builder.append(part);
+		}
+		return builder.build();
 	}
 
 	// parameterIndex is for interface method parameter
@@ -402,25 +623,25 @@ public class ElementActorMethod
 	public boolean isHtmlElementContentParameter ( int parameterIndex )
 			throws IndexOutOfBoundsException
 	{
-		return elementContentParameterIndex != null
-				&& elementContentParameterIndex.intValue() == parameterIndex;
+		return elementContentParameterIndex >= 0
+				&& elementContentParameterIndex == parameterIndex;
 	}
 
 	public boolean isHtmlElementIndexParameter ( int parameterIndex )
 			throws IndexOutOfBoundsException
 	{
-		return elementIndexParameterIndex != null
-				&& elementIndexParameterIndex.intValue() == parameterIndex;
+		return elementIndexParameterIndex >= 0
+				&& elementIndexParameterIndex == parameterIndex;
 	}
 
 	public boolean hasHtmlElementContentParameter ()
 	{
-		return elementContentParameterIndex != null;
+		return elementContentParameterIndex >= 0;
 	}
 
 	public boolean hasHtmlElementIndexParameter ()
 	{
-		return elementIndexParameterIndex != null;
+		return elementIndexParameterIndex >= 0;
 	}
 
 	public int getParameterIndex ( int interfaceParameterIndex )
@@ -431,16 +652,15 @@ public class ElementActorMethod
 		{
 			throw new IndexOutOfBoundsException();
 		}
-		Integer actorParameterIndex =
-				parameterMap.get(new Integer(interfaceParameterIndex));
-		if ( actorParameterIndex == null )
+		int actorParameterIndex = parameterMap[interfaceParameterIndex];
+		if ( actorParameterIndex < 0 )
 		{
 			throw new IllegalArgumentException("parameter "
 					+ (interfaceParameterIndex + 1) + " of method "
-					+ ReflectUtil.getSignature(interfaceMethod)
+					+ interfaceMethodSignature
 					+ " is not a parameter of the corresponding actor method");
 		}
-		return actorParameterIndex.intValue();
+		return actorParameterIndex;
 	}
 
 	public Class<?>[] getParameterTypes ()
@@ -455,6 +675,6 @@ public class ElementActorMethod
 
 	public Class<?>[] getExceptionTypes ()
 	{
-		return interfaceMethod.getExceptionTypes();
+		return exceptionTypes;
 	}
 }
@@ -0,0 +1,350 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.jwatter.toolkit.generate.code.SourceFile;
+import org.jwatter.util.FileUtil;
+
+/**
+ * Compiles generated source files in memory with the system Java compiler
+ * and loads the compiled classes into a new class loader. Nothing is written
+ * to disk, and each compilation gets its own class loader, so a class that
+ * has been regenerated can be loaded again without restarting the toolkit.
+ * Classes that are compiled are loaded by their class loader even if the
+ * parent class loader can load a class with the same name.
+ * 
+ * @author kschneider
+ * 
+ */
+public class InMemoryCompiler
+{
+	protected JavaCompiler compiler;
+	protected ClassLoader parentClassLoader;
+	protected List<String> options;
+
+	/**
+	 * Creates a compiler that compiles against the class path of the toolkit
+	 * and loads classes into a child of the class loader of the toolkit.
+	 */
+	public InMemoryCompiler () throws CodeGeneratorException
+	{
+		this(InMemoryCompiler.class.getClassLoader(), System
+				.getProperty("java.class.path"));
+	}
+
+	/**
+	 * @param parentclassloader
+	 *            the parent of the class loaders of compiled classes
+	 * @param classpath
+	 *            the class path against which the sources are compiled
+	 * @throws CodeGeneratorException
+	 *             if no Java compiler is available
+	 */
+	public InMemoryCompiler ( ClassLoader parentclassloader, String classpath )
+			throws CodeGeneratorException
+	{
+		compiler = ToolProvider.getSystemJavaCompiler();
+		if ( compiler == null )
+		{
+			throw new CodeGeneratorException(
+					"No Java compiler available, the toolkit must be run with a JDK");
+		}
+		this.parentClassLoader = parentclassloader;
+		this.options = Arrays.asList("-classpath", classpath, "-g");
+	}
+
+	/**
+	 * Compiles source files and loads the compiled classes.
+	 * 
+	 * @param sourcefiles
+	 *            generated source files
+	 * @param files
+	 *            source files on disk that are compiled with the generated
+	 *            source files
+	 * @return a class loader that loads the compiled classes
+	 * @throws CodeGeneratorException
+	 *             if a source file cannot be read or does not compile
+	 */
+	public ClassLoader compile ( Collection<SourceFile> sourcefiles,
+			Collection<File> files ) throws CodeGeneratorException
+	{
+		List<JavaFileObject> sources = new ArrayList<JavaFileObject>();
+		try
+		{
+			for ( SourceFile sourcefile : sourcefiles )
+			{
+				StringBuilder content = new StringBuilder();
+				sourcefile.formatTo(content);
+				sources.add(new MemorySourceObject(sourcefile.getClassName(),
+						content));
+			}
+			for ( File file : files )
+			{
+				sources.add(new MemorySourceObject(file, decode(FileUtil
+						.readBytes(file))));
+			}
+		}
+		catch ( IOException e )
+		{
+			throw new CodeGeneratorException(e);
+		}
+
+		DiagnosticCollector<JavaFileObject> diagnostics =
+				new DiagnosticCollector<JavaFileObject>();
+		MemoryFileManager filemanager =
+				new MemoryFileManager(compiler.getStandardFileManager(
+						diagnostics, null, null));
+		boolean success;
+		try
+		{
+			success =
+					compiler.getTask(null, filemanager, diagnostics, options,
+							null, sources).call().booleanValue();
+		}
+		finally
+		{
+			try
+			{
+				filemanager.close();
+			}
+			catch ( IOException e )
+			{
+			}
+		}
+		if ( !success )
+		{
+			throw new CodeGeneratorException(formatErrors(diagnostics
+					.getDiagnostics()));
+		}
+		return new MemoryClassLoader(parentClassLoader, filemanager
+				.getClassFiles());
+	}
+
+	protected static String formatErrors (
+			List<Diagnostic<? extends JavaFileObject>> diagnostics )
+	{
+		StringBuilder message = new StringBuilder("Compilation failed");
+		for ( Diagnostic<? extends JavaFileObject> diagnostic : diagnostics )
+		{
+			if ( diagnostic.getKind() != Diagnostic.Kind.ERROR )
+			{
+				continue;
+			}
+			message.append('\n');
+			if ( diagnostic.getSource() != null )
+			{
+				message.append(diagnostic.getSource().getName()).append(':')
+						.append(diagnostic.getLineNumber()).append(": ");
+			}
+			message.append(diagnostic.getMessage(Locale.getDefault()));
+		}
+		return message.toString();
+	}
+
+	/**
+	 * Decodes a source file the way it was encoded by {@link SourceFile}:
+	 * as UTF-8 if it is valid UTF-8, otherwise as ISO-8859-1.
+	 */
+	protected static String decode ( byte[] content )
+	{
+		try
+		{
+			return Charset.forName("UTF-8").newDecoder().onMalformedInput(
+					CodingErrorAction.REPORT).onUnmappableCharacter(
+					CodingErrorAction.REPORT).decode(ByteBuffer.wrap(content))
+					.toString();
+		}
+		catch ( CharacterCodingException e )
+		{
+			return new String(content, Charset.forName("ISO-8859-1"));
+		}
+	}
+
+	protected static URI createUri ( String classname, JavaFileObject.Kind kind )
+	{
+		return URI.create("string:///" + classname.replace('.', '/')
+				+ kind.extension);
+	}
+
+	/**
+	 * A source file whose content is in memory.
+	 */
+	protected static class MemorySourceObject extends SimpleJavaFileObject
+	{
+		protected CharSequence content;
+
+		public MemorySourceObject ( String classname, CharSequence content )
+		{
+			super(createUri(classname, Kind.SOURCE), Kind.SOURCE);
+			this.content = content;
+		}
+
+		public MemorySourceObject ( File file, CharSequence content )
+		{
+			super(file.toURI(), Kind.SOURCE);
+			this.content = content;
+		}
+
+		@Override
+		public CharSequence getCharContent ( boolean ignoreEncodingErrors )
+		{
+			return content;
+		}
+	}
+
+	/**
+	 * A class file that is written to memory.
+	 */
+	protected static class MemoryClassObject extends SimpleJavaFileObject
+	{
+		protected ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		public MemoryClassObject ( String classname )
+		{
+			super(createUri(classname, Kind.CLASS), Kind.CLASS);
+		}
+
+		@Override
+		public OutputStream openOutputStream ()
+		{
+			return content;
+		}
+
+		public byte[] getBytes ()
+		{
+			return content.toByteArray();
+		}
+	}
+
+	/**
+	 * A file manager that writes class files to memory and reads everything
+	 * else from the standard file manager.
+	 */
+	protected static class MemoryFileManager extends
+			ForwardingJavaFileManager<StandardJavaFileManager>
+	{
+		protected Map<String, MemoryClassObject> classFiles =
+				new HashMap<String, MemoryClassObject>();
+
+		public MemoryFileManager ( StandardJavaFileManager filemanager )
+		{
+			super(filemanager);
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput (
+				JavaFileManager.Location location, String classname,
+				JavaFileObject.Kind kind, FileObject sibling )
+				throws IOException
+		{
+			if ( kind != JavaFileObject.Kind.CLASS )
+			{
+				return super.getJavaFileForOutput(location, classname, kind,
+						sibling);
+			}
+			MemoryClassObject classfile = new MemoryClassObject(classname);
+			classFiles.put(classname, classfile);
+			return classfile;
+		}
+
+		public Map<String, byte[]> getClassFiles ()
+		{
+			Map<String, byte[]> classes = new HashMap<String, byte[]>();
+			for ( Map.Entry<String, MemoryClassObject> entry : classFiles
+					.entrySet() )
+			{
+				classes.put(entry.getKey(), entry.getValue().getBytes());
+			}
+			return classes;
+		}
+	}
+
+	/**
+	 * Loads compiled classes before asking the parent class loader, so that
+	 * a compiled class replaces a class of the same name on the class path.
+	 */
+	protected static class MemoryClassLoader extends ClassLoader
+	{
+		protected Map<String, byte[]> classes;
+
+		public MemoryClassLoader ( ClassLoader parent,
+				Map<String, byte[]> classes )
+		{
+			super(parent);
+			this.classes = classes;
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass ( String name,
+				boolean resolve ) throws ClassNotFoundException
+		{
+			if ( !classes.containsKey(name) )
+			{
+				return super.loadClass(name, resolve);
+			}
+			Class<?> cls = findLoadedClass(name);
+			if ( cls == null )
+			{
+				cls = findClass(name);
+			}
+			if ( resolve )
+			{
+				resolveClass(cls);
+			}
+			return cls;
+		}
+
+		@Override
+		protected Class<?> findClass ( String name )
+				throws ClassNotFoundException
+		{
+			byte[] bytes = classes.get(name);
+			if ( bytes == null )
+			{
+				throw new ClassNotFoundException(name);
+			}
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A fixed-size key for an actor method uid: the 128-bit MD5 digest of the
+ * UTF-16 characters of the uid. Keys are computed with a {@link Builder}
+ * from the parts of a uid as they are produced, so the uid string itself is
+ * never built or kept. Distinct uids can have the same key; users that must
+ * tell them apart compare the uids when two keys are equal.
+ * 
+ * @author kschneider
+ * 
+ */
+public final class UidKey
+{
+	protected final long high;
+	protected final long low;
+
+	public UidKey ( long high, long low )
+	{
+		this.high = high;
+		this.low = low;
+	}
+
+	/**
+	 * Computes the key of a uid string.
+	 */
+	public static UidKey of ( CharSequence uid )
+	{
+		return new Builder().append(uid).build();
+	}
+
+	/**
+	 * Returns the key that follows this key, for a uid whose key collides
+	 * with the key of a different uid.
+	 */
+	public UidKey next ()
+	{
+		return low != -1L ? new UidKey(high, low + 1) : new UidKey(high + 1, 0L);
+	}
+
+	@Override
+	public boolean equals ( Object obj )
+	{
+		if ( !(obj instanceof UidKey) ) return false;
+		UidKey key = (UidKey) obj;
+		return high == key.high && low == key.low;
+	}
+
+	@Override
+	public int hashCode ()
+	{
+		return (int) (low ^ (low >>> 32));
+	}
+
+	/**
+	 * Returns the key as 32 hexadecimal digits.
+	 */
+	@Override
+	public String toString ()
+	{
+		StringBuilder hex = new StringBuilder(32);
+		appendHex(hex, high);
+		appendHex(hex, low);
+		return hex.toString();
+	}
+
+	protected static void appendHex ( StringBuilder hex, long value )
+	{
+		for ( int shift = 60 ; shift >= 0 ; shift -= 4 )
+		{
+			hex.append(Character.forDigit((int) (value >>> shift) & 0xf, 16));
+		}
+	}
+
+	/**
+	 * Computes a key from the parts of a uid. A builder can be reused after
+	 * {@link #build()}, but must not be shared between threads.
+	 */
+	public static class Builder
+	{
+		protected MessageDigest digest;
+		protected byte[] buffer = new byte[256];
+		protected int length = 0;
+
+		public Builder ()
+		{
+			try
+			{
+				digest = MessageDigest.getInstance("MD5");
+			}
+			catch ( NoSuchAlgorithmException e )
+			{
+				// every Java platform supports MD5
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Appends characters to the uid. Like {@link StringBuilder}, appends
+		 * "null" if the characters are null.
+		 */
+		public Builder append ( CharSequence chars )
+		{
+			if ( chars == null )
+			{
+				chars = "null";
+			}
+			for ( int i = 0 ; i < chars.length() ; i++ )
+			{
+				append(chars.charAt(i));
+			}
+			return this;
+		}
+
+		public Builder append ( char c )
+		{
+			if ( length == buffer.length )
+			{
+				digest.update(buffer, 0, length);
+				length = 0;
+			}
+			buffer[length++] = (byte) (c >>> 8);
+			buffer[length++] = (byte) c;
+			return this;
+		}
+
+		/**
+		 * Returns the key of the appended characters and resets this
+		 * builder.
+		 */
+		public UidKey build ()
+		{
+			digest.update(buffer, 0, length);
+			length = 0;
+			byte[] hash = digest.digest();
+			return new UidKey(toLong(hash, 0), toLong(hash, 8));
+		}
+
+		protected static long toLong ( byte[] bytes, int offset )
+		{
+			long value = 0;
+			for ( int i = offset ; i < offset + 8 ; i++ )
+			{
+				value = (value << 8) | (bytes[i] & 0xff);
+			}
+			return value;
+		}
+	}
+}
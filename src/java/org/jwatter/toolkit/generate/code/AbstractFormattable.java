@@ -0,0 +1,48 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate.code;
+
+import java.io.IOException;
+
+/**
+ * Base class for code that implements only {@link #formatTo(Appendable)}.
+ * Formatting to a string formats the code into a StringBuilder.
+ * 
+ * @author kschneider
+ * 
+ */
+public abstract class AbstractFormattable implements Formattable
+{
+	public String format ()
+	{
+		return format(this);
+	}
+
+	public static String format ( Formattable code )
+	{
+		StringBuilder formatted = new StringBuilder();
+		try
+		{
+			code.formatTo(formatted);
+		}
+		catch ( IOException e )
+		{
+			// a StringBuilder does not throw IOException
+			throw new IllegalStateException(e);
+		}
+		return formatted.toString();
+	}
+}
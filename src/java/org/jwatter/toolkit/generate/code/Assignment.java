@@ -15,10 +15,24 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
+
 public class Assignment extends Statement implements Formattable
 {
+	protected String variable;
+	protected Expression assigned;
+
 	public Assignment ( String variable, Expression assigned )
 	{
-		super(variable + " = " + assigned.format());
+		this.variable = variable;
+		this.assigned = assigned;
+	}
+
+	@Override
+	public void formatTo ( Appendable out ) throws IOException
+	{
+		out.append(variable).append(" = ");
+		assigned.formatTo(out);
+		out.append(";");
 	}
 }
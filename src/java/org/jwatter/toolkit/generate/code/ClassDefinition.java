@@ -15,15 +15,17 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import org.jwatter.util.StringUtil;
-
-public class ClassDefinition implements Formattable
+public class ClassDefinition extends AbstractFormattable implements
+															Formattable
 {
 	protected int modifiers;
 	protected String className;
@@ -31,7 +33,44 @@ public class ClassDefinition implements Formattable
 	protected List<FieldDeclaration> fieldDeclarations;
 	protected Set<String> fieldNames;
 	protected List<MethodDefinition> methodDefinitions;
-	protected Set<String> methodSignatures;
+	protected Set<MethodSignature> methodSignatures;
+	// interned parameter signatures, so that methods with the same parameter
+	// types share one string and signatures compare by identity
+	protected Map<String, String> parameterSignatures;
+	// the last suffix given to a method name by makeMethodNameUnique, by
+	// base name and parameter signature
+	protected Map<MethodSignature, Integer> nameSuffixes;
+
+	/**
+	 * The name and the interned parameter signature of a method.
+	 */
+	protected static class MethodSignature
+	{
+		protected final String name;
+		protected final String parameterSignature;
+
+		protected MethodSignature ( String name, String parametersignature )
+		{
+			this.name = name;
+			this.parameterSignature = parametersignature;
+		}
+
+		@Override
+		public boolean equals ( Object obj )
+		{
+			if ( !(obj instanceof MethodSignature) ) return false;
+			MethodSignature signature = (MethodSignature) obj;
+			return parameterSignature == signature.parameterSignature
+					&& name.equals(signature.name);
+		}
+
+		@Override
+		public int hashCode ()
+		{
+			return name.hashCode() * 31
+					+ System.identityHashCode(parameterSignature);
+		}
+	}
 
 	ClassDefinition ( int modifiers, String classname )
 	{
@@ -46,7 +85,9 @@ public class ClassDefinition implements Formattable
 		fieldDeclarations = new ArrayList<FieldDeclaration>();
 		fieldNames = new HashSet<String>();
 		methodDefinitions = new ArrayList<MethodDefinition>();
-		methodSignatures = new HashSet<String>();
+		methodSignatures = new HashSet<MethodSignature>();
+		parameterSignatures = new HashMap<String, String>();
+		nameSuffixes = new HashMap<MethodSignature, Integer>();
 	}
 
 	ClassDefinition ( int modifiers, String classname, Class<?> baseclass )
@@ -85,44 +126,97 @@ public class ClassDefinition implements Formattable
 	public void addMethodDefinition ( MethodDefinition method )
 			throws MalformedCodeError
 	{
-		String methodSignature = method.getSignature(true);
-		if ( !methodSignatures.add(methodSignature) )
+		if ( !methodSignatures
+				.add(getMethodSignature(method.getName(), method)) )
 		{
-			throw new MalformedCodeError("duplicate method: " + methodSignature);
+			throw new MalformedCodeError("duplicate method: "
+					+ method.getSignature(true));
 		}
 		methodDefinitions.add(method);
 	}
 
 	public boolean containsMethod ( MethodDefinition method )
 	{
-		return methodSignatures.contains(method.getSignature(true));
+		return methodSignatures.contains(getMethodSignature(method.getName(),
+				method));
+	}
+
+	/**
+	 * Renames a method, if necessary, so that it can be added to this class.
+	 * If a method with the same name and parameter types has been added, or
+	 * the name is excluded, the suffix 2, 3, ... is appended to the name. The
+	 * last suffix given to a name is remembered, so the method is expected to
+	 * be added with its new name, and a class with many methods of the same
+	 * name does not test all of their names again.
+	 * 
+	 * @param method
+	 *            the method
+	 * @param excludednames
+	 *            names that the method must not have, or null
+	 */
+	public void makeMethodNameUnique ( MethodDefinition method,
+			Set<String> excludednames )
+	{
+		String basename = method.getName();
+		if ( isAvailable(basename, method, excludednames) ) return;
+		MethodSignature base = getMethodSignature(basename, method);
+		Integer last = nameSuffixes.get(base);
+		int suffix = last != null ? last.intValue() : 1;
+		String name;
+		do
+		{
+			name = basename + (++suffix);
+		}
+		while ( !isAvailable(name, method, excludednames) );
+		nameSuffixes.put(base, Integer.valueOf(suffix));
+		method.setName(name);
+	}
+
+	protected boolean isAvailable ( String name, MethodDefinition method,
+			Set<String> excludednames )
+	{
+		return !methodSignatures.contains(getMethodSignature(name, method))
+				&& (excludednames == null || !excludednames.contains(name));
 	}
 
-	public String format ()
+	protected MethodSignature getMethodSignature ( String name,
+			MethodDefinition method )
+	{
+		String parametersignature = method.getParameterSignature();
+		String interned = parameterSignatures.get(parametersignature);
+		if ( interned == null )
+		{
+			interned = parametersignature;
+			parameterSignatures.put(interned, interned);
+		}
+		return new MethodSignature(name, interned);
+	}
+
+	public void formatTo ( Appendable out ) throws IOException
 	{
-		StringBuilder formatted = new StringBuilder();
 		if ( modifiers != 0 )
 		{
-			formatted.append(Modifier.toString(modifiers)).append(" ");
+			out.append(Modifier.toString(modifiers)).append(" ");
 		}
-		formatted.append("class ").append(className);
+		out.append("class ").append(className);
 		if ( baseClassName != null )
 		{
-			formatted.append(" extends ").append(baseClassName);
+			out.append(" extends ").append(baseClassName);
 		}
-		formatted.append("\n{\n");
+		out.append("\n{\n");
 		for ( Formattable code : fieldDeclarations )
 		{
-			formatted.append("\t").append(code.format()).append("\n");
+			out.append("\t");
+			code.formatTo(out);
+			out.append("\n");
 		}
-		formatted.append("\n");
+		out.append("\n");
 		for ( Formattable code : methodDefinitions )
 		{
-			formatted.append(code.format());
-			formatted.append("\n");
+			code.formatTo(out);
+			out.append("\n");
 		}
-		formatted.append("}\n");
-		return formatted.toString();
+		out.append("}\n");
 	}
 
 	public String getName ()
@@ -130,23 +224,4 @@ public class ClassDefinition implements Formattable
 		return className;
 	}
 
-	public String getEncoding ()
-	{
-		String enc = "UTF-8";
-		if ( StringUtil.containsNonLatin1Characters(className) ) return enc;
-		if ( baseClassName != null
-				&& StringUtil.containsNonLatin1Characters(baseClassName) ) return enc;
-		for ( Formattable code : fieldDeclarations )
-		{
-			enc = code.getEncoding();
-			if ( enc.equals("UTF-8") ) return enc;
-		}
-		for ( Formattable code : methodDefinitions )
-		{
-			enc = code.getEncoding();
-			if ( enc.equals("UTF-8") ) return enc;
-		}
-		return "ISO-8859-1";
-	}
-
 }
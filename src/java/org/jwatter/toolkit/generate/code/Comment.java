@@ -15,9 +15,9 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
-import org.jwatter.util.StringUtil;
+import java.io.IOException;
 
-public class Comment implements Formattable
+public class Comment extends AbstractFormattable implements Formattable
 {
 	protected String comment;
 
@@ -26,13 +26,8 @@ public class Comment implements Formattable
 		this.comment = comment;
 	}
 
-	public String format ()
+	public void formatTo ( Appendable out ) throws IOException
 	{
-		return "// " + comment;
-	}
-
-	public String getEncoding ()
-	{
-		return StringUtil.getEncoding(comment);
+		out.append("// ").append(comment);
 	}
 }
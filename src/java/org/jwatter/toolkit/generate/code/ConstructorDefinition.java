@@ -15,6 +15,7 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
 import java.lang.reflect.Modifier;
 
 public class ConstructorDefinition extends MethodDefinition
@@ -71,19 +72,20 @@ public class ConstructorDefinition extends MethodDefinition
 	}
 
 	@Override
-	protected void formatName ( StringBuilder formatted )
+	protected void formatName ( Appendable formatted ) throws IOException
 	{
 		formatted.append(Modifier.toString(modifiers)).append(" ");
 		formatted.append(methodname);
 	}
 
 	@Override
-	protected void formatBody ( StringBuilder formatted )
+	protected void formatBody ( Appendable formatted ) throws IOException
 	{
 		if ( alternateConstructorCall != null )
 		{
-			formatted.append("\t\t").append(alternateConstructorCall.format())
-					.append("\n");
+			formatted.append("\t\t");
+			alternateConstructorCall.formatTo(formatted);
+			formatted.append("\n");
 		}
 		super.formatBody(formatted);
 	}
@@ -15,9 +15,9 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
-import org.jwatter.util.StringUtil;
+import java.io.IOException;
 
-public class Expression implements Formattable
+public class Expression extends AbstractFormattable implements Formattable
 {
 	protected String expression;
 
@@ -31,18 +31,13 @@ public class Expression implements Formattable
 		this.expression = expression;
 	}
 
-	public String format ()
+	public void formatTo ( Appendable out ) throws IOException
 	{
-		return expression;
+		out.append(expression);
 	}
 
 	public Class<?> getType ()
 	{
 		return null;
 	}
-
-	public String getEncoding ()
-	{
-		return StringUtil.getEncoding(expression);
-	}
 }
@@ -15,7 +15,9 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
-public class ExpressionList implements Formattable
+import java.io.IOException;
+
+public class ExpressionList extends AbstractFormattable implements Formattable
 {
 	protected Expression[] expressions;
 
@@ -38,32 +40,21 @@ public class ExpressionList implements Formattable
 		}
 	}
 
-	public String format ()
+	public void formatTo ( Appendable out ) throws IOException
 	{
-		StringBuilder formatted = new StringBuilder();
 		if ( expressions.length > 0 )
 		{
-			formatted.append(expressions[0].format());
+			expressions[0].formatTo(out);
 			for ( int i = 1 ; i < expressions.length ; i++ )
 			{
-				formatted.append(", ").append(expressions[i].format());
+				out.append(", ");
+				expressions[i].formatTo(out);
 			}
 		}
-		return formatted.toString();
 	}
 
 	public int length ()
 	{
 		return expressions.length;
 	}
-
-	public String getEncoding ()
-	{
-		for ( Expression expression : expressions )
-		{
-			String enc = expression.getEncoding();
-			if ( enc.equals("UTF-8") ) return enc;
-		}
-		return "ISO-8859-1";
-	}
 }
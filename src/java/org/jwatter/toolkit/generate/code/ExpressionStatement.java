@@ -15,10 +15,21 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
+
 public class ExpressionStatement extends Statement implements Formattable
 {
+	protected Expression expression;
+
 	public ExpressionStatement ( Expression expression )
 	{
-		super(expression.format());
+		this.expression = expression;
+	}
+
+	@Override
+	public void formatTo ( Appendable out ) throws IOException
+	{
+		expression.formatTo(out);
+		out.append(";");
 	}
 }
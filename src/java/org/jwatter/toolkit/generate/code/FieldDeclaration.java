@@ -15,11 +15,11 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
 import java.lang.reflect.Modifier;
 
-import org.jwatter.util.StringUtil;
-
-public class FieldDeclaration implements Formattable
+public class FieldDeclaration extends AbstractFormattable implements
+															Formattable
 {
 	protected int modifiers;
 	protected String classname;
@@ -68,28 +68,20 @@ public class FieldDeclaration implements Formattable
 		return fieldname;
 	}
 
-	public String format ()
+	public void formatTo ( Appendable out ) throws IOException
 	{
-		StringBuilder formatted = new StringBuilder();
 		if ( modifiers != 0 )
 		{
-			formatted.append(Modifier.toString(modifiers)).append(" ");
+			out.append(Modifier.toString(modifiers)).append(" ");
 		}
-		formatted.append(classname).append(" ");
-		formatted.append(fieldname);
+		out.append(classname).append(" ");
+		out.append(fieldname);
 		if ( initializer != null )
 		{
-			formatted.append(" = ").append(initializer.format());
+			out.append(" = ");
+			initializer.formatTo(out);
 		}
-		formatted.append(";");
-		return formatted.toString();
-	}
-
-	public String getEncoding ()
-	{
-		if ( StringUtil.containsNonLatin1Characters(classname) ) return "UTF-8";
-		if ( StringUtil.containsNonLatin1Characters(fieldname) ) return "UTF-8";
-		return initializer.getEncoding();
+		out.append(";");
 	}
 
 }
@@ -15,9 +15,20 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
+
 public interface Formattable
 {
-	public String format ();
+	/**
+	 * Formats this code directly to an output. Nested code is formatted to
+	 * the same output, so no intermediate strings are built.
+	 * 
+	 * @param out
+	 *            the output
+	 * @throws IOException
+	 *             if the output cannot be written
+	 */
+	public void formatTo ( Appendable out ) throws IOException;
 
-	public String getEncoding ();
+	public String format ();
 }
@@ -15,11 +15,10 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
-import org.jwatter.util.StringUtil;
-
 public class Javadoc extends PrintWriter implements Formattable
 {
 	public Javadoc ()
@@ -48,16 +47,36 @@ public class Javadoc extends PrintWriter implements Formattable
 		}
 	}
 
-	public String format ()
+	public void formatTo ( Appendable formatted ) throws IOException
 	{
-		return "\t/**\n\t * "
-				+ ((StringWriter) out).toString().trim().replaceAll("\n",
-						"\n\t * ") + "\n\t */\n";
+		StringBuffer buffer = ((StringWriter) out).getBuffer();
+		// the text without leading and trailing whitespace, as String.trim
+		int start = 0;
+		int end = buffer.length();
+		while ( start < end && buffer.charAt(start) <= ' ' )
+		{
+			start++;
+		}
+		while ( end > start && buffer.charAt(end - 1) <= ' ' )
+		{
+			end--;
+		}
+		formatted.append("\t/**\n\t * ");
+		int line = start;
+		for ( int i = start ; i < end ; i++ )
+		{
+			if ( buffer.charAt(i) == '\n' )
+			{
+				formatted.append(buffer, line, i).append("\n\t * ");
+				line = i + 1;
+			}
+		}
+		formatted.append(buffer, line, end).append("\n\t */\n");
 	}
 
-	public String getEncoding ()
+	public String format ()
 	{
-		return StringUtil.getEncoding(((StringWriter) out).toString());
+		return AbstractFormattable.format(this);
 	}
 
 }
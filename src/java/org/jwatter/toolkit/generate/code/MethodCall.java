@@ -15,6 +15,7 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 
 public class MethodCall extends Expression implements Formattable
@@ -65,9 +66,6 @@ public class MethodCall extends Expression implements Formattable
 	public MethodCall ( Expression instance, String methodname,
 			ExpressionList arguments )
 	{
-		super((instance != null ? instance.format() + "." : "") + methodname
-				+ "(" + arguments.format() + ")");
-
 		this.instance = instance;
 		this.methodname = methodname;
 		this.arguments = arguments;
@@ -136,6 +134,19 @@ public class MethodCall extends Expression implements Formattable
 				new ExpressionList(arguments));
 	}
 
+	@Override
+	public void formatTo ( Appendable out ) throws IOException
+	{
+		if ( instance != null )
+		{
+			instance.formatTo(out);
+			out.append(".");
+		}
+		out.append(methodname).append("(");
+		arguments.formatTo(out);
+		out.append(")");
+	}
+
 	@Override
 	public Class<?> getType ()
 	{
@@ -15,13 +15,13 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.jwatter.util.StringUtil;
-
-public class MethodDefinition implements Formattable
+public class MethodDefinition extends AbstractFormattable implements
+															Formattable
 {
 	protected int modifiers;
 	protected Class<?> returntype;
@@ -32,6 +32,8 @@ public class MethodDefinition implements Formattable
 	protected List<Statement> body;
 	protected List<Comment> comments;
 	protected MethodJavadoc javadoc;
+	// computed on first use; the parameter types never change
+	protected String parameterSignature;
 
 	MethodDefinition ( int modifiers, Class<?> returntype, String methodname,
 			Class<?>[] parametertypes, String[] parameternames,
@@ -118,6 +120,25 @@ public class MethodDefinition implements Formattable
 		methodname = name;
 	}
 
+	/**
+	 * Returns the parameter types of this method in parentheses, with fully
+	 * qualified type names, as in <code>(java.lang.String,int)</code>.
+	 */
+	public String getParameterSignature ()
+	{
+		if ( parameterSignature == null )
+		{
+			StringBuilder sig = new StringBuilder("(");
+			for ( int i = 0 ; i < parametertypes.length ; i++ )
+			{
+				if ( i > 0 ) sig.append(",");
+				sig.append(parametertypes[i].getName());
+			}
+			parameterSignature = sig.append(")").toString();
+		}
+		return parameterSignature;
+	}
+
 	public String getSignature ( boolean longTypeNames )
 	{
 		StringBuilder sig = new StringBuilder();
@@ -137,14 +158,7 @@ public class MethodDefinition implements Formattable
 		return sig.toString();
 	}
 
-	public String format ()
-	{
-		StringBuilder formatted = new StringBuilder();
-		format(formatted);
-		return formatted.toString();
-	}
-
-	protected void format ( StringBuilder formatted )
+	public void formatTo ( Appendable formatted ) throws IOException
 	{
 		if ( javadoc != null )
 		{
@@ -160,20 +174,21 @@ public class MethodDefinition implements Formattable
 		formatted.append("\t}\n");
 	}
 
-	protected void formatJavadoc ( StringBuilder formatted )
+	protected void formatJavadoc ( Appendable formatted ) throws IOException
 	{
-		formatted.append(javadoc.format());
+		javadoc.formatTo(formatted);
 	}
 
-	protected void formatComments ( StringBuilder formatted )
+	protected void formatComments ( Appendable formatted ) throws IOException
 	{
 		for ( Comment comment : comments )
 		{
-			formatted.append(comment.format()).append("\n");
+			comment.formatTo(formatted);
+			formatted.append("\n");
 		}
 	}
 
-	protected void formatName ( StringBuilder formatted )
+	protected void formatName ( Appendable formatted ) throws IOException
 	{
 		if ( modifiers != 0 )
 		{
@@ -183,7 +198,8 @@ public class MethodDefinition implements Formattable
 		formatted.append(methodname);
 	}
 
-	protected void formatParameterList ( StringBuilder formatted )
+	protected void formatParameterList ( Appendable formatted )
+			throws IOException
 	{
 		formatted.append("(");
 		if ( parametertypes.length > 0 )
@@ -200,7 +216,8 @@ public class MethodDefinition implements Formattable
 		formatted.append(")");
 	}
 
-	protected void formatThrowsClause ( StringBuilder formatted )
+	protected void formatThrowsClause ( Appendable formatted )
+			throws IOException
 	{
 		if ( exceptiontypes.length == 0 ) return;
 		formatted.append(" throws ").append(exceptiontypes[0].getSimpleName());
@@ -210,34 +227,13 @@ public class MethodDefinition implements Formattable
 		}
 	}
 
-	protected void formatBody ( StringBuilder formatted )
+	protected void formatBody ( Appendable formatted ) throws IOException
 	{
 		for ( Statement statement : body )
 		{
-			formatted.append("\t\t").append(statement.format()).append("\n");
-		}
-	}
-
-	public String getEncoding ()
-	{
-		String enc = "UTF-8";
-		if ( StringUtil.containsNonLatin1Characters(methodname) ) return enc;
-		for ( String name : parameternames )
-		{
-			if ( StringUtil.containsNonLatin1Characters(name) ) return enc;
-		}
-		for ( Comment comment : comments )
-		{
-			enc = comment.getEncoding();
-			if ( enc.equals("UTF-8") ) return enc;
-		}
-		enc = javadoc.getEncoding();
-		if ( enc.equals("UTF-8") ) return enc;
-		for ( Statement statement : body )
-		{
-			enc = statement.getEncoding();
-			if ( enc.equals("UTF-8") ) return enc;
+			formatted.append("\t\t");
+			statement.formatTo(formatted);
+			formatted.append("\n");
 		}
-		return "ISO-8859-1";
 	}
 }
@@ -15,6 +15,8 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
+
 public class ObjectCreation extends MethodCall implements Formattable
 {
 	public ObjectCreation ( String classname )
@@ -58,8 +60,9 @@ public class ObjectCreation extends MethodCall implements Formattable
 	}
 
 	@Override
-	public String format ()
+	public void formatTo ( Appendable out ) throws IOException
 	{
-		return "new " + super.format();
+		out.append("new ");
+		super.formatTo(out);
 	}
 }
@@ -74,6 +74,74 @@ public class PropertiesFile extends OrderedProperties
 		save(propertiesFilename);
 	}
 
+	/**
+	 * Makes the properties of a class equal to the specified properties by
+	 * adding, removing and changing only the properties that differ.
+	 * Unchanged properties keep their position, and the file is only written
+	 * if a property differs.
+	 * 
+	 * @param properties
+	 *            the new properties of the class
+	 * @param className
+	 *            the fully qualified class name
+	 * @return the number of properties added, removed or changed
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public int patchPropertiesForClass ( OrderedProperties properties,
+			String className ) throws IOException
+	{
+		int changes = patchClassProperties(properties, className);
+		if ( changes > 0 )
+		{
+			save(propertiesFilename);
+		}
+		return changes;
+	}
+
+	protected int patchClassProperties ( OrderedProperties properties,
+			String className )
+	{
+		int changes = 0;
+		for ( Iterator<Object> propertyIterator = this.keySet().iterator() ; propertyIterator
+				.hasNext() ; )
+		{
+			String key = (String) propertyIterator.next();
+			if ( key.startsWith(className + ".")
+					&& properties.getProperty(key) == null )
+			{
+				propertyIterator.remove();
+				changes++;
+			}
+		}
+		for ( String key : properties.stringPropertyNames() )
+		{
+			String value = properties.getProperty(key);
+			if ( !value.equals(getProperty(key)) )
+			{
+				setProperty(key, value);
+				changes++;
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Returns the properties of a class, in file order.
+	 */
+	protected OrderedProperties getClassProperties ( String className )
+	{
+		OrderedProperties properties = new OrderedProperties();
+		for ( String key : stringPropertyNames() )
+		{
+			if ( key.startsWith(className + ".") )
+			{
+				properties.setProperty(key, getProperty(key));
+			}
+		}
+		return properties;
+	}
+
 	protected void deleteClassProperties ( String className )
 	{
 		for ( Iterator<Object> propertyIterator = this.keySet().iterator() ; propertyIterator
@@ -15,15 +15,27 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
+import java.io.IOException;
+
 public class ReturnStatement extends Statement implements Formattable
 {
+	protected Expression expression;
+
 	public ReturnStatement ( Expression expression ) throws MalformedCodeError
 	{
-		super("return " + expression.format());
 		if ( expression.getType() == void.class )
 		{
 			throw new MalformedCodeError("cannot return void value");
 		}
+		this.expression = expression;
+	}
+
+	@Override
+	public void formatTo ( Appendable out ) throws IOException
+	{
+		out.append("return ");
+		expression.formatTo(out);
+		out.append(";");
 	}
 
 }
@@ -0,0 +1,85 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate.code;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import org.jwatter.util.OrderedProperties;
+import org.jwatter.util.SegmentedProperties;
+
+/**
+ * A properties file that stores the properties of each class in a separate segment. Replacing
+ * or removing the properties of a class rewrites only the segment of that class, and the
+ * properties file itself is never written. Properties of a class that are still in the
+ * properties file are hidden by its segment.
+ *
+ * @see SegmentedProperties
+ */
+public class SegmentedPropertiesFile extends PropertiesFile
+{
+	private static final long serialVersionUID = 1L;
+
+	public SegmentedPropertiesFile ( String filename ) throws IOException
+	{
+		super(filename);
+	}
+
+	@Override
+	public void tryLoad ( String filename ) throws IOException
+	{
+		try
+		{
+			SegmentedProperties.load(filename, this);
+		}
+		catch ( FileNotFoundException e )
+		{
+		}
+	}
+
+	@Override
+	public void replacePropertiesForClass ( OrderedProperties properties,
+			String className ) throws IOException
+	{
+		deleteClassProperties(className);
+		putAll(properties);
+		SegmentedProperties.storeSegment(propertiesFilename, className,
+				properties);
+	}
+
+	@Override
+	public int patchPropertiesForClass ( OrderedProperties properties,
+			String className ) throws IOException
+	{
+		int changes = patchClassProperties(properties, className);
+		if ( changes > 0 )
+		{
+			SegmentedProperties.storeSegment(propertiesFilename, className,
+					getClassProperties(className));
+		}
+		return changes;
+	}
+
+	@Override
+	public void removePropertiesForClass ( String className )
+			throws IOException
+	{
+		deleteClassProperties(className);
+		// an empty segment hides properties of the class in the properties file
+		SegmentedProperties.storeSegment(propertiesFilename, className,
+				new OrderedProperties());
+	}
+}
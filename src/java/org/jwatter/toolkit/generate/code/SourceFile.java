@@ -15,11 +15,15 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -27,10 +31,17 @@ import java.util.List;
 import java.util.Set;
 
 import org.jwatter.util.FileUtil;
-import org.jwatter.util.StringUtil;
 
 public class SourceFile
 {
+	protected static final String LINE_SEPARATOR =
+			System.getProperty("line.separator");
+	protected static final int BUFFER_SIZE = 64 * 1024;
+	protected static final byte[] PACKAGE_KEYWORD =
+	{
+			'p', 'a', 'c', 'k', 'a', 'g', 'e', ' '
+	};
+
 	protected String packageName;
 	protected String className;
 	protected List<Comment> comments;
@@ -144,60 +155,160 @@ public class SourceFile
 	}
 
 	public void write ( PrintWriter writer ) throws IOException
+	{
+		formatTo(writer);
+		writer.flush();
+
+		if ( writer.checkError() )
+		{
+			throw new IOException(
+					"unknown I/O error while writing the source file for "
+							+ getClassName());
+		}
+	}
+
+	/**
+	 * Formats this source file directly to an output.
+	 * 
+	 * @param out
+	 *            the output
+	 * @throws IOException
+	 *             if the output cannot be written
+	 */
+	public void formatTo ( Appendable out ) throws IOException
+	{
+		formatHeaderTo(out);
+		formatBodyTo(out);
+	}
+
+	/**
+	 * Formats the comments at the top of this source file.
+	 */
+	protected void formatHeaderTo ( Appendable out ) throws IOException
 	{
 		for ( Comment comment : comments )
 		{
-			writer.println(comment.format());
+			comment.formatTo(out);
+			out.append(LINE_SEPARATOR);
 		}
+	}
 
-		writer.println("package " + packageName + ";");
-		writer.println();
+	/**
+	 * Formats this source file from the package declaration on.
+	 */
+	protected void formatBodyTo ( Appendable out ) throws IOException
+	{
+		out.append("package ").append(packageName).append(";").append(
+				LINE_SEPARATOR);
+		out.append(LINE_SEPARATOR);
 
 		List<String> importList = new ArrayList<String>();
 		importList.addAll(imports);
 		Collections.sort(importList);
 		for ( String importClass : importList )
 		{
-			writer.println("import " + importClass + ";");
+			out.append("import ").append(importClass).append(";").append(
+					LINE_SEPARATOR);
 		}
 
-		writer.println();
+		out.append(LINE_SEPARATOR);
 		if ( classDefinition != null )
 		{
-			writer.print(classDefinition.format());
+			classDefinition.formatTo(out);
 		}
+	}
 
-		if ( writer.checkError() )
+	/**
+	 * Saves this source file in its package directory, unless the file exists
+	 * and has the same content from the package declaration on. The header
+	 * comments, which contain the generation date, are not compared, so that
+	 * regenerating an unchanged class does not touch its file. A changed file
+	 * is replaced atomically.
+	 * 
+	 * @param sourcedirectory
+	 *            the directory in which the package directories are
+	 * @return true if the file was written, false if it was unchanged
+	 * @throws IOException
+	 *             if the file cannot be read or written
+	 */
+	public boolean save ( String sourcedirectory ) throws IOException
+	{
+		FileUtil.ensureDirectoryExists(getPackageDir(sourcedirectory));
+		File file = new File(getFilename(sourcedirectory));
+
+		ContentBuffer buffer = new ContentBuffer();
+		Writer writer = new OutputStreamWriter(buffer, "UTF-8");
+		formatHeaderTo(writer);
+		writer.flush();
+		int bodyoffset = buffer.size();
+		formatBodyTo(writer);
+		writer.flush();
+
+		if ( file.isFile() )
 		{
-			throw new IOException(
-					"unknown I/O error while writing the source file for "
-							+ getClassName());
+			byte[] existing = FileUtil.readBytes(file);
+			if ( MessageDigest.isEqual(digest(buffer.getContent(), bodyoffset,
+					buffer.size()), digest(existing, findBody(existing),
+					existing.length)) ) return false;
 		}
+		FileUtil.writeAtomically(file, buffer.getContent(), buffer.size());
+		return true;
 	}
 
-	public void save ( String sourcedirectory ) throws IOException
+	/**
+	 * Returns the offset of the package declaration in the content of a
+	 * source file, or 0 if there is no package declaration.
+	 */
+	protected static int findBody ( byte[] content )
 	{
-		FileUtil.ensureDirectoryExists(getPackageDir(sourcedirectory));
-		OutputStream classFile =
-				new FileOutputStream(getFilename(sourcedirectory));
-		write(classFile);
-		classFile.close();
+		byte[] keyword = PACKAGE_KEYWORD;
+		for ( int line = 0 ; line < content.length ; )
+		{
+			int i = 0;
+			while ( i < keyword.length && line + i < content.length
+					&& content[line + i] == keyword[i] )
+			{
+				i++;
+			}
+			if ( i == keyword.length ) return line;
+			while ( line < content.length && content[line] != '\n' )
+			{
+				line++;
+			}
+			line++;
+		}
+		return 0;
 	}
 
-	protected String getEncoding ()
+	protected static byte[] digest ( byte[] content, int start, int end )
 	{
-		if ( StringUtil.containsNonLatin1Characters(packageName) ) return "UTF-8";
-		if ( StringUtil.containsNonLatin1Characters(className) ) return "UTF-8";
-		for ( String importclass : imports )
+		try
 		{
-			if ( StringUtil.containsNonLatin1Characters(importclass) ) return "UTF-8";
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(content, start, end - start);
+			return digest.digest();
 		}
-		for ( Comment comment : comments )
+		catch ( NoSuchAlgorithmException e )
+		{
+			// every Java platform supports SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A byte buffer whose content can be written without copying it.
+	 */
+	protected static class ContentBuffer extends ByteArrayOutputStream
+	{
+		public ContentBuffer ()
+		{
+			super(BUFFER_SIZE);
+		}
+
+		public byte[] getContent ()
 		{
-			String enc = comment.getEncoding();
-			if ( enc.equals("UTF-8") ) return enc;
+			return buf;
 		}
-		return classDefinition.getEncoding();
 	}
 
 }
@@ -0,0 +1,169 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate.code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Formats and saves source files on a pool of worker threads. Files are
+ * submitted with {@link #submit(SourceFile, String)}, and
+ * {@link #awaitCompletion()} waits until all submitted files are written. A
+ * source file must not be changed after it has been submitted.
+ * 
+ * @author kschneider
+ * 
+ */
+public class SourceFileWriter
+{
+	protected ExecutorService executor;
+	protected List<Future<File>> pending;
+	// files written and files skipped because they were unchanged
+	protected AtomicInteger writtenCount = new AtomicInteger();
+	protected AtomicInteger skippedCount = new AtomicInteger();
+
+	/**
+	 * Creates a writer with one worker thread per available processor.
+	 */
+	public SourceFileWriter ()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public SourceFileWriter ( int threads )
+	{
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			public Thread newThread ( Runnable runnable )
+			{
+				Thread thread = new Thread(runnable, "SourceFileWriter");
+				// callers wait for their files, so pool threads need not keep
+				// the toolkit alive
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		pending = new ArrayList<Future<File>>();
+	}
+
+	/**
+	 * Saves a source file in the background.
+	 * 
+	 * @param sourcefile
+	 *            the source file
+	 * @param sourcedirectory
+	 *            the directory in which the package directories are
+	 * @return the written file, when it is complete
+	 */
+	public synchronized Future<File> submit ( final SourceFile sourcefile,
+			final String sourcedirectory )
+	{
+		Future<File> future = executor.submit(new Callable<File>()
+		{
+			public File call () throws IOException
+			{
+				if ( sourcefile.save(sourcedirectory) )
+				{
+					writtenCount.incrementAndGet();
+				}
+				else
+				{
+					skippedCount.incrementAndGet();
+				}
+				return new File(sourcefile.getFilename(sourcedirectory));
+			}
+		});
+		pending.add(future);
+		return future;
+	}
+
+	/**
+	 * Waits until all submitted files are written.
+	 * 
+	 * @return the written files, in the order in which they were submitted
+	 * @throws IOException
+	 *             the exception thrown while writing the first failed file,
+	 *             after all files have been written
+	 */
+	public List<File> awaitCompletion () throws IOException
+	{
+		List<Future<File>> futures;
+		synchronized ( this )
+		{
+			futures = pending;
+			pending = new ArrayList<Future<File>>();
+		}
+		List<File> files = new ArrayList<File>();
+		IOException failure = null;
+		for ( Future<File> future : futures )
+		{
+			try
+			{
+				files.add(future.get());
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"interrupted while writing source files");
+			}
+			catch ( ExecutionException e )
+			{
+				Throwable cause = e.getCause();
+				if ( cause instanceof Error ) throw (Error) cause;
+				if ( cause instanceof RuntimeException ) throw (RuntimeException) cause;
+				if ( failure == null ) failure = (IOException) cause;
+			}
+		}
+		if ( failure != null ) throw failure;
+		return files;
+	}
+
+	/**
+	 * Returns the number of files written since this writer was created.
+	 */
+	public int getWrittenCount ()
+	{
+		return writtenCount.get();
+	}
+
+	/**
+	 * Returns the number of files that were not written since this writer was
+	 * created, because their content had not changed.
+	 */
+	public int getSkippedCount ()
+	{
+		return skippedCount.get();
+	}
+
+	/**
+	 * Stops the worker threads after the submitted files are written.
+	 */
+	public void shutdown ()
+	{
+		executor.shutdown();
+	}
+}
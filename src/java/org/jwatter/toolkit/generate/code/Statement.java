@@ -15,9 +15,9 @@ limitations under the License.
 */
 package org.jwatter.toolkit.generate.code;
 
-import org.jwatter.util.StringUtil;
+import java.io.IOException;
 
-public class Statement implements Formattable
+public class Statement extends AbstractFormattable implements Formattable
 {
 	protected String statement;
 
@@ -31,13 +31,8 @@ public class Statement implements Formattable
 		this.statement = statement;
 	}
 
-	public String format ()
+	public void formatTo ( Appendable out ) throws IOException
 	{
-		return statement + ";";
-	}
-
-	public String getEncoding ()
-	{
-		return StringUtil.getEncoding(statement);
+		out.append(statement).append(";");
 	}
 }
@@ -0,0 +1,170 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.shell.commands;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jwatter.model.PageImpl;
+import org.jwatter.toolkit.control.BrowserController;
+import org.jwatter.toolkit.control.BrowserControllerException;
+import org.jwatter.toolkit.control.request.InvokePageMethodRequest;
+import org.jwatter.toolkit.generate.CodeGenerator;
+import org.jwatter.toolkit.generate.CodeGeneratorException;
+import org.jwatter.toolkit.shell.CommandExecutionException;
+import org.jwatter.util.ReflectUtil;
+import org.jwatter.util.StringUtil;
+
+/**
+ * Compiles the actor class and the page class of a page in memory and
+ * invokes a method of the page class on the current browser, so that
+ * generated code can be tried without building it.
+ */
+public class TryPageMethodCommand extends AbstractCommand implements Command
+{
+	protected BrowserController browserController;
+	protected CodeGenerator codeGenerator;
+
+	public TryPageMethodCommand ( BrowserController browserController,
+			CodeGenerator codeGenerator )
+	{
+		super(new String[]
+		{
+			"try"
+		}, new String[]
+		{
+				"classname", "method"
+		}, new String[]
+		{
+				"arg1", "arg2", "arg3", "arg4"
+		}, "compile the page class CLASSNAME and its actor class and invoke "
+				+ "METHOD with the specified arguments on the current page");
+		this.browserController = browserController;
+		this.codeGenerator = codeGenerator;
+	}
+
+	public void execute ( String... args ) throws CommandExecutionException
+	{
+		String classname = args[0];
+		String methodname = args[1];
+		if ( !StringUtil.isValidClassName(classname) )
+		{
+			throw new CommandExecutionException(classname
+					+ " is not a valid class name");
+		}
+		String[] values = new String[args.length - 2];
+		System.arraycopy(args, 2, values, 0, values.length);
+
+		Class<?> pageclass;
+		try
+		{
+			pageclass = codeGenerator.loadPageClass(classname);
+		}
+		catch ( CodeGeneratorException e )
+		{
+			throw new CommandExecutionException(e);
+		}
+
+		// the first method with this name whose parameters accept the
+		// arguments
+		List<Method> candidates = findMethods(pageclass, methodname,
+				values.length);
+		if ( candidates.isEmpty() )
+		{
+			throw new CommandExecutionException(classname + " has no method "
+					+ methodname + " with " + values.length + " parameters");
+		}
+		Method method = null;
+		Object[] arguments = null;
+		IllegalArgumentException parsefailure = null;
+		for ( Method candidate : candidates )
+		{
+			try
+			{
+				arguments = parseArguments(candidate, values);
+				method = candidate;
+				break;
+			}
+			catch ( IllegalArgumentException e )
+			{
+				parsefailure = e;
+			}
+		}
+		if ( method == null )
+		{
+			throw new CommandExecutionException("Invalid arguments for "
+					+ methodname + ": " + parsefailure.getMessage());
+		}
+
+		InvokePageMethodRequest request =
+				new InvokePageMethodRequest(pageclass, method, arguments,
+						codeGenerator.getPageConfiguration());
+		try
+		{
+			browserController.send(request);
+		}
+		catch ( BrowserControllerException e )
+		{
+			throw new CommandExecutionException(e);
+		}
+		if ( !request.isInvoked() )
+		{
+			throw new CommandExecutionException(ReflectUtil
+					.getSignature(method)
+					+ " failed");
+		}
+		if ( method.getReturnType() != void.class )
+		{
+			System.out.println(request.getResult());
+		}
+	}
+
+	/**
+	 * Finds the methods of a page class and its superclasses, up to the
+	 * page implementation, that have the specified name and number of
+	 * parameters. Methods of a subclass come first.
+	 */
+	protected static List<Method> findMethods ( Class<?> pageclass,
+			String methodname, int parametercount )
+	{
+		List<Method> methods = new ArrayList<Method>();
+		for ( Class<?> cls = pageclass ; cls != null
+				&& cls != PageImpl.class ; cls = cls.getSuperclass() )
+		{
+			for ( Method method : cls.getDeclaredMethods() )
+			{
+				if ( method.getName().equals(methodname)
+						&& method.getParameterTypes().length == parametercount )
+				{
+					methods.add(method);
+				}
+			}
+		}
+		return methods;
+	}
+
+	protected static Object[] parseArguments ( Method method, String[] values )
+	{
+		Class<?>[] parametertypes = method.getParameterTypes();
+		Object[] arguments = new Object[values.length];
+		for ( int i = 0 ; i < values.length ; i++ )
+		{
+			arguments[i] = ReflectUtil.parseValue(values[i], parametertypes[i]);
+		}
+		return arguments;
+	}
+}
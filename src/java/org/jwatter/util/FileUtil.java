@@ -16,7 +16,11 @@ limitations under the License.
 package org.jwatter.util;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 public class FileUtil
 {
@@ -30,4 +34,92 @@ public class FileUtil
 			throw new IOException("could not create directory: " + dirname);
 		}
 	}
+
+	/**
+	 * Reads the complete content of a file.
+	 */
+	public static byte[] readBytes ( File file ) throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			long length = file.length();
+			if ( length > Integer.MAX_VALUE )
+			{
+				throw new IOException("file too large: " + file);
+			}
+			byte[] content = new byte[(int) length];
+			int offset = 0;
+			while ( offset < content.length )
+			{
+				int count = in.read(content, offset, content.length - offset);
+				if ( count < 0 )
+				{
+					throw new IOException("file truncated while reading: "
+							+ file);
+				}
+				offset += count;
+			}
+			return content;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes content to a temporary file in the same directory and renames it
+	 * to the target file, so that readers never see a partially written file.
+	 * 
+	 * @param file
+	 *            the target file
+	 * @param content
+	 *            a buffer with the content
+	 * @param length
+	 *            the number of bytes of the buffer to write
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void writeAtomically ( File file, byte[] content, int length )
+			throws IOException
+	{
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName(), ".tmp", directory);
+		try
+		{
+			OutputStream out = new FileOutputStream(temp);
+			try
+			{
+				out.write(content, 0, length);
+			}
+			finally
+			{
+				out.close();
+			}
+			renameOver(temp, file);
+		}
+		finally
+		{
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Renames a file to a target file, replacing the target file if it
+	 * exists.
+	 */
+	public static void renameOver ( File source, File target )
+			throws IOException
+	{
+		if ( !source.renameTo(target) )
+		{
+			// some platforms do not rename over an existing file
+			if ( !target.delete() || !source.renameTo(target) )
+			{
+				throw new IOException("could not rename " + source + " to "
+						+ target);
+			}
+		}
+	}
 }
@@ -14,72 +14,388 @@ See the License for the specific language governing permissions and
 limitations under the License.
 */
 /**
- * 
+ *
  */
 package org.jwatter.util;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
+ * An immutable snapshot of a properties file. The properties are copied when the object is
+ * created and cannot be changed, so any number of threads can read them without locking.
+ * <p>
+ * Properties of a class are named <code><i>classname</i>.<i>property</i></code>. The properties
+ * of each class are collected into a {@link ClassProperties} map the first time they are
+ * requested, by a binary search in the sorted property names, so later lookups do not build the
+ * qualified name. Typed values are parsed once and cached.
+ *
  * @author kschneider
  *
  */
-public class FunctionalTestProperties extends Properties {
-	
-	static final long serialVersionUID = 0L;
-	
+public class FunctionalTestProperties {
+
 	protected static final Logger logger = Logger.getLogger(FunctionalTestProperties.class.getPackage().getName());
-	
+
+	// all properties, never modified after the constructor returns
+	protected final Map<String, String> values;
+	// the property names in sorted order, so that the properties of a class are found by binary
+	// search, never modified after the constructor returns
+	protected final String[] sortedNames;
+	// the properties that are not qualified by a class, that is all properties
+	protected final ClassProperties allProperties;
+	// the properties of each class, created on first use
+	protected final ConcurrentMap<Class<?>, ClassProperties> classProperties =
+		new ConcurrentHashMap<Class<?>, ClassProperties>();
+
 	public FunctionalTestProperties (String propertiesFilename) throws IOException {
-		super();
-		
-		InputStream propStream = null;
+		this(load(propertiesFilename));
+	}
+
+	/**
+	 * Creates properties with a copy of the specified properties, including their defaults.
+	 *
+	 * @param properties
+	 *            the properties to copy
+	 */
+	public FunctionalTestProperties (Properties properties) {
+		Map<String, String> values = new HashMap<String, String>();
+		for( String propertyName : properties.stringPropertyNames() ) {
+			values.put(propertyName, properties.getProperty(propertyName));
+		}
+		this.values = Collections.unmodifiableMap(values);
+		this.sortedNames = values.keySet().toArray(new String[values.size()]);
+		Arrays.sort(this.sortedNames);
+		this.allProperties = new ClassProperties(null, this.values);
+	}
+
+	protected static Properties load (String propertiesFilename) throws IOException {
+		Properties properties = new Properties();
 		try {
-			propStream = new FileInputStream(propertiesFilename);
-			load(propStream);
+			// a file with segments is read as its merged view
+			SegmentedProperties.load(propertiesFilename, properties);
 		} catch (IOException e) {
 			logger.severe("unable to load properties file: " + e.getMessage());
 			throw new IOException("unable to load properties file: " + e.getMessage());
-		} finally {
-			if( propStream != null ) {
-				propStream.close();
+		}
+		return properties;
+	}
+
+	/**
+	 * Returns the properties of a class, indexed by the property name without the class name.
+	 *
+	 * @param cls
+	 *            a class
+	 * @return the properties of the class
+	 */
+	public ClassProperties getClassProperties (Class<? extends Object> cls) {
+		ClassProperties properties = this.classProperties.get(cls);
+		if( properties == null ) {
+			// collecting the properties twice in a race is harmless
+			String prefix = cls.getName() + ".";
+			Map<String, String> values = new HashMap<String, String>();
+			int i = Arrays.binarySearch(this.sortedNames, prefix);
+			for( i = i >= 0 ? i : -i - 1; i < this.sortedNames.length
+					&& this.sortedNames[i].startsWith(prefix); i++ ) {
+				String propertyName = this.sortedNames[i];
+				values.put(propertyName.substring(prefix.length()), this.values.get(propertyName));
+			}
+			properties = new ClassProperties(cls, Collections.unmodifiableMap(values));
+			ClassProperties existing = this.classProperties.putIfAbsent(cls, properties);
+			if( existing != null ) {
+				properties = existing;
 			}
 		}
+		return properties;
+	}
+
+	/**
+	 * Returns the names of all properties. The returned set cannot be modified.
+	 */
+	public Set<String> getPropertyNames () {
+		return this.values.keySet();
+	}
 
+	/**
+	 * Returns a modifiable copy of the properties.
+	 */
+	public Properties toProperties () {
+		Properties properties = new Properties();
+		properties.putAll(this.values);
+		return properties;
 	}
-	
+
+	public String getProperty (String propertyName) {
+		return this.values.get(propertyName);
+	}
+
+	public String getProperty (String propertyName, String defaultValue) {
+		String propertyValue = this.values.get(propertyName);
+		return propertyValue != null ? propertyValue : defaultValue;
+	}
+
 	public String getProperty (String propertyName, Class<? extends Object> cls) {
-		return getProperty(propertyName, cls, null);
+		return getClassProperties(cls).getProperty(propertyName);
 	}
-	
+
 	public String getProperty (String propertyName, Class<? extends Object> cls, String defaultValue) {
-		return getProperty(cls.getName() + "." + propertyName, defaultValue);
+		return getClassProperties(cls).getProperty(propertyName, defaultValue);
 	}
-	
+
 	public String getRequiredProperty (String propertyName)
 			throws MissingResourceException {
-		String propertyValue = getProperty(propertyName);
-		if( null == propertyValue ) {
-			logger.severe("unable to get required property " + propertyName);
-			throw new MissingResourceException("unable to get required property " + propertyName, null, propertyName);
-		}
-		return propertyValue;
+		return this.allProperties.getRequiredProperty(propertyName);
 	}
-	
+
 	public String getRequiredProperty (String propertyName, Class<? extends Object> cls)
 			throws MissingResourceException {
-		String propertyValue = getProperty(propertyName, cls);
-		if( null == propertyValue ) {
-			logger.severe("unable to get required property " + cls.getName() + "." + propertyName);
-			throw new MissingResourceException("unable to get required property " + cls.getName() + "." + propertyName,
-					cls.getName(), propertyName);
+		return getClassProperties(cls).getRequiredProperty(propertyName);
+	}
+
+	public int getInt (String propertyName, int defaultValue) {
+		return this.allProperties.getInt(propertyName, defaultValue);
+	}
+
+	public int getInt (String propertyName, Class<? extends Object> cls, int defaultValue) {
+		return getClassProperties(cls).getInt(propertyName, defaultValue);
+	}
+
+	public long getLong (String propertyName, long defaultValue) {
+		return this.allProperties.getLong(propertyName, defaultValue);
+	}
+
+	public long getLong (String propertyName, Class<? extends Object> cls, long defaultValue) {
+		return getClassProperties(cls).getLong(propertyName, defaultValue);
+	}
+
+	public boolean getBoolean (String propertyName, boolean defaultValue) {
+		return this.allProperties.getBoolean(propertyName, defaultValue);
+	}
+
+	public boolean getBoolean (String propertyName, Class<? extends Object> cls, boolean defaultValue) {
+		return getClassProperties(cls).getBoolean(propertyName, defaultValue);
+	}
+
+	public long getDuration (String propertyName, TimeUnit unit, long defaultValue) {
+		return this.allProperties.getDuration(propertyName, unit, defaultValue);
+	}
+
+	public long getDuration (String propertyName, Class<? extends Object> cls, TimeUnit unit,
+			long defaultValue) {
+		return getClassProperties(cls).getDuration(propertyName, unit, defaultValue);
+	}
+
+	/**
+	 * Parses a duration such as <code>500ms</code>, <code>30s</code>, <code>2m</code> or
+	 * <code>1h</code>. A number without a unit is in the specified default unit.
+	 *
+	 * @param value
+	 *            the duration
+	 * @param defaultUnit
+	 *            the unit of a number without a unit
+	 * @return the duration in the default unit
+	 * @throws NumberFormatException
+	 *             if the value is not a duration
+	 */
+	public static long parseDuration (String value, TimeUnit defaultUnit)
+			throws NumberFormatException {
+		Duration duration = Duration.parse(value);
+		return defaultUnit.convert(duration.amount,
+				duration.unit != null ? duration.unit : defaultUnit);
+	}
+
+	/**
+	 * The properties of a class, indexed by the property name without the class name. Typed
+	 * values are parsed on first use and cached.
+	 */
+	public static class ClassProperties {
+
+		// the class, or null if the property names are not qualified
+		protected final Class<?> cls;
+		protected final Map<String, String> values;
+
+		protected final ConcurrentMap<String, Integer> intValues =
+			new ConcurrentHashMap<String, Integer>();
+		protected final ConcurrentMap<String, Long> longValues =
+			new ConcurrentHashMap<String, Long>();
+		protected final ConcurrentMap<String, Boolean> booleanValues =
+			new ConcurrentHashMap<String, Boolean>();
+		protected final ConcurrentMap<String, Duration> durationValues =
+			new ConcurrentHashMap<String, Duration>();
+
+		protected ClassProperties (Class<?> cls, Map<String, String> values) {
+			this.cls = cls;
+			this.values = values;
+		}
+
+		/**
+		 * Returns the property values, indexed by name. The returned map cannot be modified.
+		 */
+		public Map<String, String> getValues () {
+			return this.values;
+		}
+
+		public boolean containsProperty (String propertyName) {
+			return this.values.containsKey(propertyName);
+		}
+
+		public String getProperty (String propertyName) {
+			return this.values.get(propertyName);
+		}
+
+		public String getProperty (String propertyName, String defaultValue) {
+			String propertyValue = this.values.get(propertyName);
+			return propertyValue != null ? propertyValue : defaultValue;
+		}
+
+		public String getRequiredProperty (String propertyName)
+				throws MissingResourceException {
+			String propertyValue = this.values.get(propertyName);
+			if( null == propertyValue ) {
+				String qualifiedName = getQualifiedName(propertyName);
+				logger.severe("unable to get required property " + qualifiedName);
+				throw new MissingResourceException("unable to get required property " + qualifiedName,
+						this.cls != null ? this.cls.getName() : null, propertyName);
+			}
+			return propertyValue;
+		}
+
+		public int getInt (String propertyName, int defaultValue) throws NumberFormatException {
+			Integer value = this.intValues.get(propertyName);
+			if( value == null ) {
+				String propertyValue = this.values.get(propertyName);
+				if( propertyValue == null ) {
+					return defaultValue;
+				}
+				try {
+					value = Integer.valueOf(propertyValue.trim());
+				} catch( NumberFormatException e ) {
+					throw invalidValue(propertyName, propertyValue, e);
+				}
+				this.intValues.put(propertyName, value);
+			}
+			return value.intValue();
+		}
+
+		public long getLong (String propertyName, long defaultValue) throws NumberFormatException {
+			Long value = this.longValues.get(propertyName);
+			if( value == null ) {
+				String propertyValue = this.values.get(propertyName);
+				if( propertyValue == null ) {
+					return defaultValue;
+				}
+				try {
+					value = Long.valueOf(propertyValue.trim());
+				} catch( NumberFormatException e ) {
+					throw invalidValue(propertyName, propertyValue, e);
+				}
+				this.longValues.put(propertyName, value);
+			}
+			return value.longValue();
+		}
+
+		/**
+		 * Returns true if the property value is <code>true</code>, ignoring case, like
+		 * {@link Boolean#parseBoolean(String)}.
+		 */
+		public boolean getBoolean (String propertyName, boolean defaultValue) {
+			Boolean value = this.booleanValues.get(propertyName);
+			if( value == null ) {
+				String propertyValue = this.values.get(propertyName);
+				if( propertyValue == null ) {
+					return defaultValue;
+				}
+				value = Boolean.valueOf(propertyValue.trim());
+				this.booleanValues.put(propertyName, value);
+			}
+			return value.booleanValue();
+		}
+
+		/**
+		 * Returns a duration property in the specified unit.
+		 *
+		 * @see FunctionalTestProperties#parseDuration(String, TimeUnit)
+		 */
+		public long getDuration (String propertyName, TimeUnit unit, long defaultValue)
+				throws NumberFormatException {
+			Duration value = this.durationValues.get(propertyName);
+			if( value == null ) {
+				String propertyValue = this.values.get(propertyName);
+				if( propertyValue == null ) {
+					return defaultValue;
+				}
+				try {
+					value = Duration.parse(propertyValue);
+				} catch( NumberFormatException e ) {
+					throw invalidValue(propertyName, propertyValue, e);
+				}
+				this.durationValues.put(propertyName, value);
+			}
+			return unit.convert(value.amount, value.unit != null ? value.unit : unit);
+		}
+
+		protected String getQualifiedName (String propertyName) {
+			return this.cls != null ? this.cls.getName() + "." + propertyName : propertyName;
+		}
+
+		protected NumberFormatException invalidValue (String propertyName, String propertyValue,
+				NumberFormatException e) {
+			String message = "invalid value for property " + getQualifiedName(propertyName)
+				+ ": " + propertyValue;
+			logger.severe(message);
+			NumberFormatException exception = new NumberFormatException(message);
+			exception.initCause(e);
+			return exception;
+		}
+	}
+
+	/**
+	 * A parsed duration value.
+	 */
+	protected static class Duration {
+
+		protected final long amount;
+		// null if the value has no unit
+		protected final TimeUnit unit;
+
+		protected Duration (long amount, TimeUnit unit) {
+			this.amount = amount;
+			this.unit = unit;
+		}
+
+		protected static Duration parse (String value) throws NumberFormatException {
+			String duration = value.trim();
+			int end = duration.length();
+			while( end > 0 && Character.isLetter(duration.charAt(end - 1)) ) {
+				end--;
+			}
+			String suffix = duration.substring(end).toLowerCase();
+			TimeUnit unit;
+			if( suffix.length() == 0 ) {
+				unit = null;
+			} else if( suffix.equals("ms") ) {
+				unit = TimeUnit.MILLISECONDS;
+			} else if( suffix.equals("s") ) {
+				unit = TimeUnit.SECONDS;
+			} else if( suffix.equals("m") ) {
+				unit = TimeUnit.MINUTES;
+			} else if( suffix.equals("h") ) {
+				unit = TimeUnit.HOURS;
+			} else {
+				throw new NumberFormatException("unknown time unit in duration " + value);
+			}
+			return new Duration(Long.parseLong(duration.substring(0, end).trim()), unit);
 		}
-		return propertyValue;
 	}
 
 }
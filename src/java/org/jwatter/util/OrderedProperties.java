@@ -15,34 +15,60 @@ limitations under the License.
 */
 package org.jwatter.util;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * A set of properties with stable iteration order. In particular, iterating over properties loaded
  * from a file returns the properties in the same order as they are in the file, and saving
  * properties to a file writes them in the same order as in the file they were loaded from, or
  * added. New properties are always added at the end of the properties list.
- * 
+ * <p>
+ * Each property is stored once, as an entry in an array in insertion order. Entries are found
+ * through an open addressing hash index that holds array positions. Removing a property clears
+ * its array slot and its index slot in constant time; the array is compacted when more than half
+ * of it is unused. The properties are not stored in the {@link java.util.Hashtable} base class, so
+ * all methods that read or write properties are overridden, including the Map methods that take
+ * functional arguments, such as <code>forEach</code> or <code>compute</code>.
  */
 public class OrderedProperties
         extends Properties {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
-    protected RemoveTiedLinkedHashSet<Object> keys;
-    protected RemoveTiedArrayList<Object> values;
-    protected RemoveTiedLinkedHashSet<Map.Entry<Object, Object>> entrySet;
-    protected ArrayList<Map.Entry<Object, Object>> entryOrder;
-    protected HashMap<Object, Integer> keyPos;
+    protected static final int INITIAL_CAPACITY = 16;
+
+    // the entries in insertion order; removed entries leave a null slot until compaction
+    protected transient PropertyEntry[] entries;
+    // number of used slots in entries, including removed ones
+    protected transient int entryCount;
+    // number of properties
+    protected transient int size;
+    // hash index: position in entries plus one, or 0 for an empty slot; length is a power of two
+    protected transient int[] index;
+    // number of structural modifications, used by iterators to detect concurrent modifications
+    protected transient int modCount;
+
+    protected transient Set<Object> keySet;
+    protected transient Collection<Object> values;
+    protected transient Set<Map.Entry<Object, Object>> entrySet;
 
     /**
      * Creates an empty property list with no default values.
@@ -54,7 +80,7 @@ public class OrderedProperties
 
     /**
      * Creates an empty property list with the specified defaults.
-     * 
+     *
      * @param defaults
      *        the defaults
      */
@@ -64,272 +90,756 @@ public class OrderedProperties
     }
 
     protected void _init () {
-        keys = new RemoveTiedLinkedHashSet<Object>(this);
-        values = new RemoveTiedArrayList<Object>(this);
-        entrySet = new RemoveTiedLinkedHashSet<Map.Entry<Object, Object>>(this);
-        entryOrder = new ArrayList<Map.Entry<Object, Object>>();
-        keyPos = new HashMap<Object, Integer>();
+        this.entries = new PropertyEntry[INITIAL_CAPACITY];
+        this.index = new int[INITIAL_CAPACITY * 2];
+        this.entryCount = 0;
+        this.size = 0;
+        this.keySet = null;
+        this.values = null;
+        this.entrySet = null;
+    }
+
+    protected static int hash (Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the index slot that holds the entry for a key, or the empty slot where it would be
+     * inserted.
+     */
+    protected int findSlot (Object key, int hash) {
+        int mask = this.index.length - 1;
+        int slot = hash & mask;
+        int position;
+        while ((position = this.index[slot]) != 0) {
+            PropertyEntry entry = this.entries[position - 1];
+            if (entry.keyHash == hash && entry.key.equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    protected PropertyEntry getEntry (Object key) {
+        if (key == null) {
+            return null;
+        }
+        int position = this.index[this.findSlot(key, hash(key))];
+        return position != 0 ? this.entries[position - 1] : null;
+    }
+
+    /**
+     * Removes an entry from the entry array and the index. Does not compact the entry array, so
+     * that iterators can continue.
+     */
+    protected void removeEntry (PropertyEntry entry) {
+        int mask = this.index.length - 1;
+        int slot = this.findSlot(entry.key, entry.keyHash);
+        // shift back the entries that follow in the same probe sequence
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int position = this.index[next];
+            if (position == 0) {
+                break;
+            }
+            int home = this.entries[position - 1].keyHash & mask;
+            if (slot <= next ? (home <= slot || home > next) : (home <= slot && home > next)) {
+                this.index[slot] = position;
+                slot = next;
+            }
+        }
+        this.index[slot] = 0;
+        this.entries[entry.position] = null;
+        entry.position = -1;
+        this.size--;
+        this.modCount++;
+    }
+
+    /**
+     * Moves the entries to the front of the entry array, resizing it if necessary, and rebuilds
+     * the index.
+     */
+    protected void compact (int capacity) {
+        PropertyEntry[] compacted = new PropertyEntry[capacity];
+        int count = 0;
+        for (int i = 0; i < this.entryCount; i++) {
+            PropertyEntry entry = this.entries[i];
+            if (entry != null) {
+                entry.position = count;
+                compacted[count++] = entry;
+            }
+        }
+        this.entries = compacted;
+        this.entryCount = count;
+        int indexLength = this.index.length;
+        while (indexLength < capacity * 2) {
+            indexLength <<= 1;
+        }
+        this.index = new int[indexLength];
+        int mask = indexLength - 1;
+        for (int i = 0; i < count; i++) {
+            int slot = compacted[i].keyHash & mask;
+            while (this.index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.index[slot] = i + 1;
+        }
+        this.modCount++;
+    }
+
+    protected void compactIfSparse () {
+        if (this.entryCount > INITIAL_CAPACITY && this.size < this.entryCount / 2) {
+            this.compact(this.entries.length);
+        }
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.util.Hashtable#put(java.lang.Object, java.lang.Object)
      */
     @Override
     public synchronized Object put (Object key, Object value) {
-        Object previous = this._put(key, value);
-        if (previous == null) {
-            Map.Entry<Object, Object> entry = new RemoveTiedEntry<Object, Object>(key, value, this);
-            entryOrder.add(entry);
-            keyPos.put(key, keys.size());
-            keys.add(key);
-            values.add(value);
-            entrySet.add(entry);
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int hash = hash(key);
+        int slot = this.findSlot(key, hash);
+        int position = this.index[slot];
+        if (position != 0) {
+            PropertyEntry entry = this.entries[position - 1];
+            Object previous = entry.value;
+            entry.value = value;
+            entry.hash();
+            return previous;
+        }
+        if (this.entryCount == this.entries.length) {
+            // reclaim removed slots if that frees at least half of the array, otherwise grow
+            this.compact(this.size <= this.entries.length / 2 ? this.entries.length
+                                                              : this.entries.length * 2);
+            slot = this.findSlot(key, hash);
+        }
+        PropertyEntry entry = new PropertyEntry(key, value, hash, this.entryCount);
+        this.entries[this.entryCount++] = entry;
+        this.index[slot] = this.entryCount;
+        this.size++;
+        this.modCount++;
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#putAll(java.util.Map)
+     */
+    @Override
+    public synchronized void putAll (Map<? extends Object, ? extends Object> t) {
+        for (Map.Entry<? extends Object, ? extends Object> entry : t.entrySet()) {
+            this.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#get(java.lang.Object)
+     */
+    @Override
+    public synchronized Object get (Object key) {
+        PropertyEntry entry = this.getEntry(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Properties#getProperty(java.lang.String)
+     */
+    @Override
+    public String getProperty (String key) {
+        Object value = this.get(key);
+        String property = value instanceof String ? (String)value : null;
+        return property == null && this.defaults != null ? this.defaults.getProperty(key)
+                                                         : property;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Properties#getProperty(java.lang.String, java.lang.String)
+     */
+    @Override
+    public String getProperty (String key, String defaultValue) {
+        String property = this.getProperty(key);
+        return property != null ? property : defaultValue;
+    }
+
+    /**
+     * Returns the value for a key, or the default value if there is no property with that key.
+     */
+    public synchronized Object getOrDefault (Object key, Object defaultValue) {
+        PropertyEntry entry = this.getEntry(key);
+        return entry != null ? entry.value : defaultValue;
+    }
+
+    /**
+     * Sets the value for a key if there is no property with that key.
+     *
+     * @return the current value, or null if the value was set
+     */
+    public synchronized Object putIfAbsent (Object key, Object value) {
+        PropertyEntry entry = this.getEntry(key);
+        if (entry != null) {
+            return entry.value;
+        }
+        return this.put(key, value);
+    }
+
+    /**
+     * Replaces the value for a key if there is a property with that key.
+     *
+     * @return the previous value, or null if there was no property with that key
+     */
+    public synchronized Object replace (Object key, Object value) {
+        return this.getEntry(key) != null ? this.put(key, value) : null;
+    }
+
+    /**
+     * Replaces the value for a key if the current value equals <code>oldValue</code>.
+     *
+     * @return true if the value was replaced
+     */
+    public synchronized boolean replace (Object key, Object oldValue, Object newValue) {
+        PropertyEntry entry = this.getEntry(key);
+        if (entry == null || !entry.value.equals(oldValue)) {
+            return false;
         }
-        else {
-            int pos = keyPos.get(key);
-            entryOrder.get(pos).setValue(value);
-            values.set(pos, value);
+        this.put(key, newValue);
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#containsKey(java.lang.Object)
+     */
+    @Override
+    public synchronized boolean containsKey (Object key) {
+        return this.getEntry(key) != null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#contains(java.lang.Object)
+     */
+    @Override
+    public synchronized boolean contains (Object value) {
+        if (value == null) {
+            throw new NullPointerException();
         }
-        return previous;
+        return this.findValue(value) != null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#containsValue(java.lang.Object)
+     */
+    @Override
+    public boolean containsValue (Object value) {
+        return this.contains(value);
     }
 
-    protected Object _put (Object key, Object value) {
-        return super.put(key, value);
+    protected PropertyEntry findValue (Object value) {
+        for (int i = 0; i < this.entryCount; i++) {
+            PropertyEntry entry = this.entries[i];
+            if (entry != null && entry.value.equals(value)) {
+                return entry;
+            }
+        }
+        return null;
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.util.Hashtable#remove(java.lang.Object)
      */
     @Override
     public synchronized Object remove (Object key) {
-        if (!this.containsKey(key))
+        PropertyEntry entry = this.getEntry(key);
+        if (entry == null) {
             return null;
-        Object value = this.getProperty((String)key);
-        this.remove(key, null);
-        return value;
+        }
+        this.removeEntry(entry);
+        this.compactIfSparse();
+        return entry.value;
     }
 
-    protected int getValueIndex (Object value) {
-        int index = 0;
-        for (Map.Entry<Object, Object> entry : entryOrder) {
-            if (entry.getValue().equals(value))
-                return index;
-            index++;
+    /**
+     * Removes the property with the specified key if its value equals the specified value.
+     *
+     * @return true if the property was removed
+     */
+    public synchronized boolean remove (Object key, Object value) {
+        PropertyEntry entry = this.getEntry(key);
+        if (entry == null || !entry.value.equals(value)) {
+            return false;
         }
-        return -1;
+        this.removeEntry(entry);
+        this.compactIfSparse();
+        return true;
     }
 
-    protected void remove (Object arg, Object notifier) {
-        Map.Entry<?, ?> entry;
-        int index;
-        if (notifier == null || notifier == keys) {
-            index = keyPos.get(arg);
-            entry = entryOrder.get(index);
+    /**
+     * Calls the specified action for each property, in order.
+     */
+    @Override
+    public synchronized void forEach (BiConsumer<? super Object, ? super Object> action) {
+        if (action == null) {
+            throw new NullPointerException();
         }
-        else if (notifier == values) {
-            // cannot use values to get index because arg is no longer in values
-            index = this.getValueIndex(arg);
-            entry = entryOrder.get(index);
+        int expectedModCount = this.modCount;
+        for (int i = 0; i < this.entryCount; i++) {
+            PropertyEntry entry = this.entries[i];
+            if (entry != null) {
+                action.accept(entry.key, entry.value);
+                if (this.modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
         }
-        else if (notifier == entrySet) {
-            // arg no longer in entrySet
-            index = keyPos.get(((Map.Entry<?, ?>)arg).getKey());
-            entry = (Map.Entry<?, ?>)arg;
+    }
+
+    /**
+     * Replaces the value of each property with the result of the specified function, in order.
+     */
+    @Override
+    public synchronized void replaceAll (
+            BiFunction<? super Object, ? super Object, ? extends Object> function) {
+        if (function == null) {
+            throw new NullPointerException();
         }
-        else {
-            throw new IllegalArgumentException("unknown notifier");
+        int expectedModCount = this.modCount;
+        for (int i = 0; i < this.entryCount; i++) {
+            PropertyEntry entry = this.entries[i];
+            if (entry != null) {
+                Object value = function.apply(entry.key, entry.value);
+                if (this.modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (value == null) {
+                    throw new NullPointerException();
+                }
+                entry.value = value;
+                entry.hash();
+            }
         }
-        this.remove(entry, index, notifier);
     }
 
-    protected void remove (int index, Object notifier) {
-        if (index < 0) {
-            throw new IllegalArgumentException("invalid index " + index);
+    /**
+     * Sets the value for a key to the result of the specified function if there is no property
+     * with that key. No property is added if the function returns null.
+     *
+     * @return the current or new value, or null if there is none
+     */
+    @Override
+    public synchronized Object computeIfAbsent (Object key,
+            Function<? super Object, ? extends Object> mappingFunction) {
+        if (mappingFunction == null) {
+            throw new NullPointerException();
+        }
+        PropertyEntry entry = this.getEntry(key);
+        if (entry != null) {
+            return entry.value;
         }
-        this.remove(entryOrder.get(index), index, notifier);
+        int expectedModCount = this.modCount;
+        Object value = mappingFunction.apply(key);
+        if (this.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (value != null) {
+            this.put(key, value);
+        }
+        return value;
     }
 
-    protected void remove (Map.Entry<?, ?> entry, int index, Object notifier) {
-        this._remove(entry.getKey());
-        if (notifier != keys) {
-            keys._remove(entry.getKey());
+    /**
+     * Sets the value for a key to the result of the specified function if there is a property
+     * with that key. The property is removed if the function returns null.
+     *
+     * @return the new value, or null if there is none
+     */
+    @Override
+    public synchronized Object computeIfPresent (Object key,
+            BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+        if (remappingFunction == null) {
+            throw new NullPointerException();
         }
-        if (notifier != values) {
-            values._remove(index);
+        PropertyEntry entry = this.getEntry(key);
+        if (entry == null) {
+            return null;
         }
-        if (notifier != entrySet) {
-            entrySet._remove(entry);
+        return this.remap(entry, remappingFunction.apply(key, entry.value));
+    }
+
+    /**
+     * Sets the value for a key to the result of the specified function, which receives the
+     * current value or null. The property is removed if the function returns null.
+     *
+     * @return the new value, or null if there is none
+     */
+    @Override
+    public synchronized Object compute (Object key,
+            BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+        if (remappingFunction == null) {
+            throw new NullPointerException();
         }
-        entryOrder.remove(index);
-        keyPos.remove(entry.getKey());
+        PropertyEntry entry = this.getEntry(key);
+        if (entry == null) {
+            int expectedModCount = this.modCount;
+            Object value = remappingFunction.apply(key, null);
+            if (this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (value != null) {
+                this.put(key, value);
+            }
+            return value;
+        }
+        return this.remap(entry, remappingFunction.apply(key, entry.value));
     }
 
-    protected Object _remove (Object key) {
-        return super.remove(key);
+    /**
+     * Sets the value for a key to the specified value if there is no property with that key, or
+     * else to the result of the specified function applied to the current and the specified
+     * value. The property is removed if the function returns null.
+     *
+     * @return the new value, or null if there is none
+     */
+    @Override
+    public synchronized Object merge (Object key, Object value,
+            BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+        if (value == null || remappingFunction == null) {
+            throw new NullPointerException();
+        }
+        PropertyEntry entry = this.getEntry(key);
+        if (entry == null) {
+            this.put(key, value);
+            return value;
+        }
+        return this.remap(entry, remappingFunction.apply(entry.value, value));
+    }
+
+    /**
+     * Stores the result of a remapping function in an existing entry, or removes the entry if the
+     * result is null.
+     */
+    protected Object remap (PropertyEntry entry, Object value) {
+        if (entry.position < 0) {
+            // the function removed the entry
+            throw new ConcurrentModificationException();
+        }
+        if (value == null) {
+            this.removeEntry(entry);
+            this.compactIfSparse();
+        } else {
+            entry.value = value;
+            entry.hash();
+        }
+        return value;
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.util.Hashtable#clear()
      */
     @Override
     public synchronized void clear () {
-        this.clear(null);
+        for (int i = 0; i < this.entryCount; i++) {
+            if (this.entries[i] != null) {
+                this.entries[i].position = -1;
+            }
+        }
+        this.entries = new PropertyEntry[INITIAL_CAPACITY];
+        this.index = new int[INITIAL_CAPACITY * 2];
+        this.entryCount = 0;
+        this.size = 0;
+        this.modCount++;
     }
 
-    protected void clear (Object notifier) {
-        this._clear();
-        if (notifier != keys) {
-            keys._clear();
-        }
-        if (notifier != values) {
-            values._clear();
-        }
-        if (notifier != entrySet) {
-            entrySet._clear();
-        }
-        entryOrder.clear();
-        keyPos.clear();
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#size()
+     */
+    @Override
+    public synchronized int size () {
+        return this.size;
     }
 
-    protected void _clear () {
-        super.clear();
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#isEmpty()
+     */
+    @Override
+    public synchronized boolean isEmpty () {
+        return this.size == 0;
     }
 
-    /**
-     * Called by an embedded data structure when a property has been removed from that data
-     * structure. Removes the property from the other embedded data structures and from the
-     * properties set.
-     * 
-     * @param notifier
-     *        the embedded data structure from which a property was removed
-     * @param arg
-     *        the element being removed (a key, value or entry)
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#rehash()
      */
-    protected void removed (Object notifier, Object arg) {
-        if (!(notifier == keys || notifier == values || notifier == entrySet)) {
-            throw new IllegalArgumentException("unknown observed object: "
-                + (notifier == null ? null : notifier.getClass().getName()));
-        }
-        this.remove(arg, notifier);
+    @Override
+    protected void rehash () {
+        // the hash index is resized by put
     }
 
-    /**
-     * Called by an embedded data structure when a property has been removed from that data
-     * structure. Removes the property from the other embedded data structures and from the
-     * properties set.
-     * 
-     * @param notifier
-     *        the embedded data structure from which a property was removed
-     * @param index
-     *        the index of the property in the properties list
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Properties#propertyNames()
+     */
+    @Override
+    public Enumeration<?> propertyNames () {
+        return new IteratorBackedEnumeration<Object>(this.allKeys().iterator());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Properties#stringPropertyNames()
      */
-    protected void removed (Object notifier, int index) {
-        if (!(notifier == keys || notifier == values || notifier == entrySet)) {
-            throw new IllegalArgumentException("unknown observed object: "
-                + (notifier == null ? null : notifier.getClass().getName()));
+    @Override
+    public synchronized Set<String> stringPropertyNames () {
+        Set<String> names = new LinkedHashSet<String>();
+        for (Object key : this.allKeys()) {
+            if (key instanceof String && this.getProperty((String)key) != null) {
+                names.add((String)key);
+            }
         }
-        this.remove(index, notifier);
+        return names;
     }
 
     /**
-     * Called by an embedded data structure that has been cleared. Clears the other embedded data
-     * structures and the properties set.
-     * 
-     * @param notifier
-     *        the embedded data structure that was cleared
+     * Returns the keys of this property list in order, followed by the keys of the defaults
+     * that are not in this property list.
      */
-    protected void cleared (Object notifier) {
-        if (!(notifier == keys || notifier == values || notifier == entrySet)) {
-            throw new IllegalArgumentException("unknown observed object: "
-                + (notifier == null ? null : notifier.getClass().getName()));
+    protected synchronized Set<Object> allKeys () {
+        Set<Object> keys = new LinkedHashSet<Object>(this.keySet());
+        if (this.defaults != null) {
+            for (Enumeration<?> names = this.defaults.propertyNames(); names.hasMoreElements();) {
+                keys.add(names.nextElement());
+            }
         }
-        this.clear(notifier);
+        return keys;
     }
 
-    /**
-     * Called by {@link RemoveTiedEntry#setValue(Object)} to indicate that the value of an entry in
-     * {@link OrderedProperties#entrySet} has changed. Updates the value in
-     * {@link OrderedProperties#values} and in the properties set.
-     * 
-     * @param entry
-     *        the entry that has changed.
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Properties#list(java.io.PrintStream)
      */
-    protected void changed (Map.Entry<?, ?> entry) {
-        int index = this.keyPos.get(entry.getKey());
-        this.values.set(index, entry.getValue());
-        this._put(entry.getKey(), entry.getValue());
+    @Override
+    public void list (PrintStream out) {
+        PrintWriter writer = new PrintWriter(out);
+        this.list(writer);
+        writer.flush();
     }
 
     /*
      * (non-Javadoc)
-     * 
-     * @see java.util.Properties#propertyNames()
+     *
+     * @see java.util.Properties#list(java.io.PrintWriter)
      */
     @Override
-    public Enumeration<?> propertyNames () {
-        return new IteratorBackedEnumeration<Object>(keys.iterator());
+    public void list (PrintWriter out) {
+        out.println("-- listing properties --");
+        for (String name : this.stringPropertyNames()) {
+            String value = this.getProperty(name);
+            if (value.length() > 40) {
+                value = value.substring(0, 37) + "...";
+            }
+            out.println(name + "=" + value);
+        }
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.util.Hashtable#keys()
      */
     @Override
     public synchronized Enumeration<Object> keys () {
-        return new IteratorBackedEnumeration<Object>(keys.iterator());
+        return new IteratorBackedEnumeration<Object>(this.keySet().iterator());
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
+     * @see java.util.Hashtable#elements()
+     */
+    @Override
+    public synchronized Enumeration<Object> elements () {
+        return new IteratorBackedEnumeration<Object>(this.values().iterator());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
      * @see java.util.Hashtable#keySet()
      */
     @Override
     public Set<Object> keySet () {
-        return Collections.synchronizedSet(keys);
+        if (this.keySet == null) {
+            this.keySet = new KeySet();
+        }
+        return this.keySet;
     }
 
     /*
      * (non-Javadoc)
-     * 
+     *
      * @see java.util.Hashtable#values()
      */
     @Override
     public Collection<Object> values () {
-        return Collections.synchronizedCollection(values);
+        if (this.values == null) {
+            this.values = new Values();
+        }
+        return this.values;
     }
 
     /*
      * (non-Javadoc)
-     * 
-     * @see java.util.Hashtable#elements()
+     *
+     * @see java.util.Hashtable#entrySet()
      */
     @Override
-    public Enumeration<Object> elements () {
-        return new IteratorBackedEnumeration<Object>(values.iterator());
+    public Set<Map.Entry<Object, Object>> entrySet () {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+        return this.entrySet;
     }
 
     /*
      * (non-Javadoc)
-     * 
-     * @see java.util.Hashtable#entrySet()
+     *
+     * @see java.util.Hashtable#equals(java.lang.Object)
      */
     @Override
-    public Set<Map.Entry<Object, Object>> entrySet () {
-        return Collections.synchronizedSet(entrySet);
+    public synchronized boolean equals (Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Map<?, ?>)) {
+            return false;
+        }
+        Map<?, ?> map = (Map<?, ?>)o;
+        if (map.size() != this.size) {
+            return false;
+        }
+        for (int i = 0; i < this.entryCount; i++) {
+            PropertyEntry entry = this.entries[i];
+            if (entry != null && !entry.value.equals(map.get(entry.key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#hashCode()
+     */
+    @Override
+    public synchronized int hashCode () {
+        int h = 0;
+        for (int i = 0; i < this.entryCount; i++) {
+            if (this.entries[i] != null) {
+                h += this.entries[i].hashCode();
+            }
+        }
+        return h;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#toString()
+     */
+    @Override
+    public synchronized String toString () {
+        StringBuilder s = new StringBuilder("{");
+        for (int i = 0; i < this.entryCount; i++) {
+            PropertyEntry entry = this.entries[i];
+            if (entry != null) {
+                if (s.length() > 1) {
+                    s.append(", ");
+                }
+                s.append(entry.key == this ? "(this Map)" : entry.key).append('=')
+                 .append(entry.value == this ? "(this Map)" : entry.value);
+            }
+        }
+        return s.append('}').toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.Hashtable#clone()
+     */
+    @Override
+    public synchronized Object clone () {
+        OrderedProperties clone = (OrderedProperties)super.clone();
+        clone._init();
+        for (int i = 0; i < this.entryCount; i++) {
+            PropertyEntry entry = this.entries[i];
+            if (entry != null) {
+                clone.put(entry.key, entry.value);
+            }
+        }
+        return clone;
+    }
+
+    private synchronized void writeObject (ObjectOutputStream out)
+            throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(this.size);
+        for (int i = 0; i < this.entryCount; i++) {
+            PropertyEntry entry = this.entries[i];
+            if (entry != null) {
+                out.writeObject(entry.key);
+                out.writeObject(entry.value);
+            }
+        }
+    }
+
+    private void readObject (ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this._init();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Object key = in.readObject();
+            this.put(key, in.readObject());
+        }
     }
 
     /**
      * Implementation of the {@link Map.Entry} interface for (key, value) pairs in
      * {@link OrderedProperties}.
-     * 
+     *
      * @param <K>
      *        the key type (for {@link OrderedProperties} entries this is {@link Object})
      * @param <V>
@@ -344,7 +854,7 @@ public class OrderedProperties
 
         /**
          * Creates a new (key, value) pair.
-         * 
+         *
          * @param key
          *        the key of the entry
          * @param value
@@ -358,7 +868,7 @@ public class OrderedProperties
 
         /*
          * (non-Javadoc)
-         * 
+         *
          * @see java.util.Map.Entry#getKey()
          */
         public K getKey () {
@@ -367,7 +877,7 @@ public class OrderedProperties
 
         /*
          * (non-Javadoc)
-         * 
+         *
          * @see java.util.Map.Entry#getValue()
          */
         public V getValue () {
@@ -376,7 +886,7 @@ public class OrderedProperties
 
         /*
          * (non-Javadoc)
-         * 
+         *
          * @see java.util.Map.Entry#setValue(java.lang.Object)
          */
         public synchronized V setValue (V value) {
@@ -388,22 +898,22 @@ public class OrderedProperties
 
         /*
          * (non-Javadoc)
-         * 
+         *
          * @see java.lang.Object#equals(java.lang.Object)
          */
         @Override
         public boolean equals (Object o) {
             return o != null
-                && (o instanceof Entry<?, ?>)
-                && (key == null ? (((Entry<?, ?>)o).getKey() == null)
-                               : (key.equals(((Entry<?, ?>)o).getKey())))
-                && (value == null ? (((Entry<?, ?>)o).getValue() == null)
-                                 : (value.equals(((Entry<?, ?>)o).getValue())));
+                && (o instanceof Map.Entry<?, ?>)
+                && (key == null ? (((Map.Entry<?, ?>)o).getKey() == null)
+                               : (key.equals(((Map.Entry<?, ?>)o).getKey())))
+                && (value == null ? (((Map.Entry<?, ?>)o).getValue() == null)
+                                 : (value.equals(((Map.Entry<?, ?>)o).getValue())));
         }
 
         /*
          * (non-Javadoc)
-         * 
+         *
          * @see java.lang.Object#hashCode()
          */
         @Override
@@ -414,142 +924,207 @@ public class OrderedProperties
         protected void hash () {
             hash = (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
         }
+
+        @Override
+        public String toString () {
+            return key + "=" + value;
+        }
     }
 
-    protected class RemoveTiedEntry<K, V>
-            extends Entry<K, V> {
+    /**
+     * The entry that stores a property. Setting its value changes the property.
+     */
+    protected class PropertyEntry
+            extends Entry<Object, Object> {
 
-        protected OrderedProperties orderedProperties;
+        protected final int keyHash;
+        // index in the entries array, or -1 if the entry has been removed
+        protected int position;
 
-        protected RemoveTiedEntry (K key, V value, OrderedProperties orderedProperties) {
+        protected PropertyEntry (Object key, Object value, int keyHash, int position) {
             super(key, value);
-            this.orderedProperties = orderedProperties;
+            this.keyHash = keyHash;
+            this.position = position;
         }
 
         @Override
-        public synchronized V setValue (V value) {
-            V old = super.setValue(value);
-            this.orderedProperties.changed(this);
-            return old;
+        public Object setValue (Object value) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            synchronized (OrderedProperties.this) {
+                return super.setValue(value);
+            }
         }
     }
 
-    protected class RemoveTiedArrayList<E>
-            extends ArrayList<E> {
+    /**
+     * Iterates over the entries in insertion order.
+     */
+    protected abstract class EntryIterator<E>
+            implements Iterator<E> {
 
-        private static final long serialVersionUID = 1L;
+        protected int next = 0;
+        protected PropertyEntry current = null;
+        protected int expectedModCount = modCount;
 
-        protected OrderedProperties orderedProperties;
+        public boolean hasNext () {
+            synchronized (OrderedProperties.this) {
+                while (this.next < entryCount && entries[this.next] == null) {
+                    this.next++;
+                }
+                return this.next < entryCount;
+            }
+        }
 
-        protected RemoveTiedArrayList (OrderedProperties orderedProperties) {
-            super();
-            this.orderedProperties = orderedProperties;
+        protected PropertyEntry nextEntry () {
+            synchronized (OrderedProperties.this) {
+                if (modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.current = entries[this.next++];
+                return this.current;
+            }
         }
 
-        @Override
-        public boolean remove (Object o) {
-            boolean removed = _remove(o);
-            if (!removed)
-                return removed;
-            this.orderedProperties.removed(this, o);
-            return removed;
+        public void remove () {
+            synchronized (OrderedProperties.this) {
+                if (this.current == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeEntry(this.current);
+                this.current = null;
+                this.expectedModCount = modCount;
+            }
         }
+    }
+
+    protected class KeySet
+            extends AbstractSet<Object> {
 
         @Override
-        public void clear () {
-            this._clear();
-            this.orderedProperties.cleared(this);
+        public Iterator<Object> iterator () {
+            return new EntryIterator<Object>() {
+
+                public Object next () {
+                    return this.nextEntry().key;
+                }
+            };
         }
 
         @Override
-        public Iterator<E> iterator () {
-            RemoveTiedIterator<E> observedIterator =
-                new RemoveTiedIterator<E>(super.iterator(), this.orderedProperties, this);
-            return observedIterator;
+        public int size () {
+            return OrderedProperties.this.size();
         }
 
-        protected void _clear () {
-            super.clear();
+        @Override
+        public boolean contains (Object o) {
+            return containsKey(o);
         }
 
-        protected E _remove (int index) {
-            return super.remove(index);
+        @Override
+        public boolean remove (Object o) {
+            synchronized (OrderedProperties.this) {
+                return OrderedProperties.this.remove(o) != null;
+            }
         }
 
-        protected boolean _remove (Object o) {
-            return super.remove(o);
+        @Override
+        public void clear () {
+            OrderedProperties.this.clear();
         }
     }
 
-    protected class RemoveTiedLinkedHashSet<E>
-            extends LinkedHashSet<E> {
-
-        private static final long serialVersionUID = 1L;
+    protected class Values
+            extends AbstractCollection<Object> {
 
-        protected OrderedProperties orderedProperties;
+        @Override
+        public Iterator<Object> iterator () {
+            return new EntryIterator<Object>() {
 
-        protected RemoveTiedLinkedHashSet (OrderedProperties orderedProperties) {
-            super();
-            this.orderedProperties = orderedProperties;
+                public Object next () {
+                    return this.nextEntry().value;
+                }
+            };
         }
 
         @Override
-        public boolean remove (Object o) {
-            boolean removed = _remove(o);
-            if (!removed)
-                return removed;
-            this.orderedProperties.removed(this, o);
-            return removed;
+        public int size () {
+            return OrderedProperties.this.size();
         }
 
         @Override
-        public void clear () {
-            this._clear();
-            this.orderedProperties.cleared(this);
+        public boolean contains (Object o) {
+            return o != null && OrderedProperties.this.contains(o);
         }
 
         @Override
-        public Iterator<E> iterator () {
-            return new RemoveTiedIterator<E>(super.iterator(), orderedProperties, this);
-        }
-
-        protected void _clear () {
-            super.clear();
+        public boolean remove (Object o) {
+            synchronized (OrderedProperties.this) {
+                PropertyEntry entry = o != null ? findValue(o) : null;
+                if (entry == null) {
+                    return false;
+                }
+                removeEntry(entry);
+                compactIfSparse();
+                return true;
+            }
         }
 
-        protected boolean _remove (Object o) {
-            return super.remove(o);
+        @Override
+        public void clear () {
+            OrderedProperties.this.clear();
         }
     }
 
-    protected class RemoveTiedIterator<E>
-            implements Iterator<E> {
+    protected class EntrySet
+            extends AbstractSet<Map.Entry<Object, Object>> {
 
-        protected Iterator<E> iterator;
-        protected int index;
-        protected OrderedProperties orderedProperties;
-        protected Object iteratorParent;
+        @Override
+        public Iterator<Map.Entry<Object, Object>> iterator () {
+            return new EntryIterator<Map.Entry<Object, Object>>() {
 
-        protected RemoveTiedIterator (Iterator<E> iterator, OrderedProperties orderedProperties,
-                                      Object iteratorParent) {
-            this.iterator = iterator;
-            this.orderedProperties = orderedProperties;
-            this.iteratorParent = iteratorParent;
-            this.index = -1;
+                public Map.Entry<Object, Object> next () {
+                    return this.nextEntry();
+                }
+            };
         }
 
-        public boolean hasNext () {
-            return this.iterator.hasNext();
+        @Override
+        public int size () {
+            return OrderedProperties.this.size();
         }
 
-        public E next () {
-            this.index++;
-            return this.iterator.next();
+        @Override
+        public boolean contains (Object o) {
+            if (!(o instanceof Map.Entry<?, ?>)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>)o;
+            synchronized (OrderedProperties.this) {
+                PropertyEntry property = getEntry(entry.getKey());
+                return property != null && property.value.equals(entry.getValue());
+            }
         }
 
-        public void remove () {
-            this.iterator.remove();
-            this.orderedProperties.removed(this.iteratorParent, this.index);
+        @Override
+        public boolean remove (Object o) {
+            if (!(o instanceof Map.Entry<?, ?>)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>)o;
+            return OrderedProperties.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear () {
+            OrderedProperties.this.clear();
         }
     }
 }
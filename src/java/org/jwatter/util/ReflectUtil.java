@@ -51,4 +51,75 @@ public class ReflectUtil
 		return method.getName() + "("
 				+ parametersAsString(method, longTypeNames) + ")";
 	}
+
+	/**
+	 * Converts a string to a value of a parameter type. Strings, primitive
+	 * types, their wrapper classes and enum types are supported.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the type is not supported or the string is not a valid
+	 *             value of the type
+	 */
+	public static Object parseValue ( String value, Class<?> type )
+	{
+		if ( type == String.class || type == Object.class )
+		{
+			return value;
+		}
+		if ( type == int.class || type == Integer.class )
+		{
+			return Integer.valueOf(value);
+		}
+		if ( type == long.class || type == Long.class )
+		{
+			return Long.valueOf(value);
+		}
+		if ( type == boolean.class || type == Boolean.class )
+		{
+			if ( !value.equalsIgnoreCase("true")
+					&& !value.equalsIgnoreCase("false") )
+			{
+				throw new IllegalArgumentException("Not a boolean: " + value);
+			}
+			return Boolean.valueOf(value);
+		}
+		if ( type == double.class || type == Double.class )
+		{
+			return Double.valueOf(value);
+		}
+		if ( type == float.class || type == Float.class )
+		{
+			return Float.valueOf(value);
+		}
+		if ( type == short.class || type == Short.class )
+		{
+			return Short.valueOf(value);
+		}
+		if ( type == byte.class || type == Byte.class )
+		{
+			return Byte.valueOf(value);
+		}
+		if ( type == char.class || type == Character.class )
+		{
+			if ( value.length() != 1 )
+			{
+				throw new IllegalArgumentException("Not a character: " + value);
+			}
+			return Character.valueOf(value.charAt(0));
+		}
+		if ( type.isEnum() )
+		{
+			for ( Object constant : type.getEnumConstants() )
+			{
+				if ( ((Enum<?>) constant).name().equals(value) )
+				{
+					return constant;
+				}
+			}
+			throw new IllegalArgumentException("No enum constant "
+					+ type.getName() + "." + value);
+		}
+		throw new IllegalArgumentException("Unsupported parameter type: "
+				+ type.getName());
+	}
 }
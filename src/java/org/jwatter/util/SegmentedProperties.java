@@ -0,0 +1,228 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Reads and writes properties files whose class properties are split into segments. The
+ * properties of a class <code><i>classname</i></code> in the file <code><i>file</i></code> are
+ * stored in <code><i>file</i>.d/<i>classname</i>.properties</code>, and the classes that have a
+ * segment are listed in the index <code><i>file</i>.d/index.properties</code>. The merged view
+ * consists of the properties in <code><i>file</i></code>, except the properties of indexed
+ * classes, followed by the properties in the segments in index order.
+ */
+public class SegmentedProperties
+{
+	public static final String SEGMENT_DIRECTORY_SUFFIX = ".d";
+	public static final String INDEX_FILENAME = "index.properties";
+	public static final String SEGMENT_SUFFIX = ".properties";
+
+	public static File getSegmentDirectory ( String filename )
+	{
+		return new File(filename + SEGMENT_DIRECTORY_SUFFIX);
+	}
+
+	public static File getIndexFile ( String filename )
+	{
+		return new File(getSegmentDirectory(filename), INDEX_FILENAME);
+	}
+
+	public static File getSegmentFile ( String filename, String className )
+	{
+		return new File(getSegmentDirectory(filename), className + SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * Returns true if the properties file has segments.
+	 */
+	public static boolean isSegmented ( String filename )
+	{
+		return getIndexFile(filename).isFile();
+	}
+
+	/**
+	 * Reads the segment index of a properties file.
+	 *
+	 * @param filename
+	 *            the name of the properties file
+	 * @return the segment file names, indexed by class name, in the order in which the segments
+	 *         were created; empty if the file has no segments
+	 * @throws IOException
+	 *             if the index cannot be read
+	 */
+	public static OrderedProperties readIndex ( String filename ) throws IOException
+	{
+		OrderedProperties index = new OrderedProperties();
+		File indexFile = getIndexFile(filename);
+		if ( indexFile.isFile() )
+		{
+			read(indexFile, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Loads the merged view of a segmented properties file. The file itself need not exist if it
+	 * has segments.
+	 *
+	 * @param filename
+	 *            the name of the properties file
+	 * @param properties
+	 *            the properties to which the merged properties are added
+	 * @throws FileNotFoundException
+	 *             if neither the file nor a segment index exists
+	 * @throws IOException
+	 *             if a file cannot be read
+	 */
+	public static void load ( String filename, Properties properties )
+			throws IOException
+	{
+		OrderedProperties index = readIndex(filename);
+		File file = new File(filename);
+		if ( file.isFile() || index.isEmpty() )
+		{
+			read(file, properties);
+		}
+		if ( index.isEmpty() )
+		{
+			return;
+		}
+		removeClassProperties(properties, index.stringPropertyNames());
+		File directory = getSegmentDirectory(filename);
+		for ( String className : index.stringPropertyNames() )
+		{
+			File segment = new File(directory, index.getProperty(className));
+			if ( segment.isFile() )
+			{
+				read(segment, properties);
+			}
+		}
+	}
+
+	/**
+	 * Removes the properties of the specified classes. Checks each key only against its own
+	 * prefixes, so the cost does not depend on the number of classes.
+	 */
+	protected static void removeClassProperties ( Properties properties,
+			Set<String> classNames )
+	{
+		List<Object> remove = new ArrayList<Object>();
+		for ( Object key : properties.keySet() )
+		{
+			String name = key.toString();
+			for ( int dot = name.indexOf('.') ; dot > 0 ; dot = name.indexOf('.', dot + 1) )
+			{
+				if ( classNames.contains(name.substring(0, dot)) )
+				{
+					remove.add(key);
+					break;
+				}
+			}
+		}
+		for ( Object key : remove )
+		{
+			properties.remove(key);
+		}
+	}
+
+	/**
+	 * Writes the properties of a class to its segment and adds the class to the index if
+	 * necessary. Other segments and the properties file are not changed.
+	 *
+	 * @param filename
+	 *            the name of the properties file
+	 * @param className
+	 *            the class name
+	 * @param properties
+	 *            the properties of the class
+	 * @throws IOException
+	 *             if the segment or the index cannot be written
+	 */
+	public static void storeSegment ( String filename, String className,
+			Properties properties ) throws IOException
+	{
+		FileUtil.ensureDirectoryExists(getSegmentDirectory(filename).getPath());
+		storeAtomically(properties, getSegmentFile(filename, className), className);
+		OrderedProperties index = readIndex(filename);
+		if ( index.getProperty(className) == null )
+		{
+			index.setProperty(className, className + SEGMENT_SUFFIX);
+			storeAtomically(index, getIndexFile(filename), "Segment index");
+		}
+	}
+
+	/**
+	 * Writes properties to a temporary file in the same directory and renames it to the target
+	 * file, so that readers never see a partially written file.
+	 *
+	 * @param properties
+	 *            the properties to write
+	 * @param file
+	 *            the target file
+	 * @param comment
+	 *            a comment for the file header
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void storeAtomically ( Properties properties, File file,
+			String comment ) throws IOException
+	{
+		File directory = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName(), ".tmp", directory);
+		try
+		{
+			OutputStream out = new FileOutputStream(temp);
+			try
+			{
+				properties.store(out, comment);
+			}
+			finally
+			{
+				out.close();
+			}
+			FileUtil.renameOver(temp, file);
+		}
+		finally
+		{
+			temp.delete();
+		}
+	}
+
+	protected static void read ( File file, Properties properties )
+			throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			properties.load(in);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
@@ -136,6 +136,116 @@ public class StringUtil
 		}
 	}
 
+	/**
+	 * Collapses every run of whitespace in a string into a single space and
+	 * removes leading and trailing whitespace. This gives the same result as
+	 * <code>s.replaceAll("\\s+", " ").trim()</code> for whitespace, but
+	 * makes a single pass over the string and does not use a regular
+	 * expression.
+	 * 
+	 * @param s
+	 *            a string
+	 * @return s with normalized whitespace
+	 */
+	public static String normalizeWhitespace ( String s )
+	{
+		return normalizeWhitespace(s, 0);
+	}
+
+	/**
+	 * Normalizes whitespace like {@link #normalizeWhitespace(String)} but
+	 * stops as soon as the normalized string is longer than
+	 * <code>maxlen</code> characters. The result then has exactly
+	 * <code>maxlen + 1</code> characters, so callers can tell that the string
+	 * was cut off.
+	 * 
+	 * @param s
+	 *            a string
+	 * @param maxlen
+	 *            the maximum length of the normalized string, or 0 for no
+	 *            limit
+	 * @return s with normalized whitespace, cut off after
+	 *         <code>maxlen + 1</code> characters
+	 */
+	public static String normalizeWhitespace ( String s, int maxlen )
+	{
+		int length = s.length();
+		int limit = maxlen > 0 ? maxlen + 1 : Integer.MAX_VALUE;
+		StringBuilder normalized =
+				new StringBuilder(Math.min(length, limit));
+		boolean pendingSpace = false;
+		for ( int i = 0 ; i < length && normalized.length() < limit ; i++ )
+		{
+			char c = s.charAt(i);
+			if ( isWhitespace(c) )
+			{
+				// leading whitespace is dropped, inner runs become one space
+				pendingSpace = normalized.length() > 0;
+			}
+			else
+			{
+				if ( pendingSpace )
+				{
+					normalized.append(' ');
+					pendingSpace = false;
+					if ( normalized.length() == limit ) break;
+				}
+				normalized.append(c);
+			}
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Truncates a string to a maximum length. If the string is cut off and the
+	 * maximum length is greater than 3, the last three characters are
+	 * replaced by "...".
+	 * 
+	 * @param s
+	 *            a string
+	 * @param maxlen
+	 *            the maximum length of the result, or 0 for no limit
+	 * @return s truncated to at most maxlen characters
+	 */
+	public static String truncate ( String s, int maxlen )
+	{
+		if ( maxlen == 0 || s.length() <= maxlen ) return s;
+		if ( maxlen <= 3 ) return s.substring(0, maxlen);
+		return s.substring(0, maxlen - 3) + "...";
+	}
+
+	/**
+	 * Joins strings with a separator.
+	 * 
+	 * @param strings
+	 *            the strings to join
+	 * @param separator
+	 *            the string inserted between two strings
+	 * @return the joined string, or the empty string if there are no strings
+	 */
+	public static String join ( Iterable<String> strings, String separator )
+	{
+		StringBuilder sb = new StringBuilder();
+		boolean first = true;
+		for ( String s : strings )
+		{
+			if ( !first ) sb.append(separator);
+			sb.append(s);
+			first = false;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns true if c is a whitespace character as defined by the
+	 * <code>\s</code> character class of {@link Pattern}.
+	 */
+	protected static boolean isWhitespace ( char c )
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+				|| c == '\f' || c == '\r';
+	}
+
 	public static boolean isValidClassName ( String s )
 	{
 		return CLASSNAME_PATTERN.matcher(s).matches();
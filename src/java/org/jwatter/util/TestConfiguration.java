@@ -0,0 +1,414 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.jwatter.util.FunctionalTestProperties.ClassProperties;
+
+/**
+ * An immutable set of configuration properties for functional tests. Properties files are parsed
+ * once into a {@link FunctionalTestProperties} snapshot that is shared by all threads, so a
+ * configuration can be read concurrently without locking.
+ * <p>
+ * The configuration that is used by pages, windows and test cases is returned by {@link #get()}.
+ * It is the configuration set for the current thread with {@link #setForCurrentThread}, if any,
+ * otherwise the global configuration. The global configuration is loaded on first use from the
+ * file specified by the system property <code>tests.properties</code>, or from
+ * <code>functionaltest.web.properties</code> if the system property is not set, unless it has
+ * been set with {@link #setGlobal}. A thread configuration is inherited by threads created by
+ * the thread that set it, so a test run can use a different configuration than other runs in
+ * the same JVM.
+ *
+ * @author kschneider
+ */
+public class TestConfiguration {
+
+	/**
+	 * System property that specifies the properties file for the global configuration.
+	 */
+	public static final String PROPERTIES_FILENAME_PROPERTY = "tests.properties";
+	public static final String DEFAULT_PROPERTIES_FILENAME = "functionaltest.web.properties";
+
+	protected static final Logger logger = Logger.getLogger(TestConfiguration.class.getPackage().getName());
+
+	// configurations loaded from files, by absolute path
+	protected static final ConcurrentMap<String, FileLoader> loaders =
+		new ConcurrentHashMap<String, FileLoader>();
+
+	protected static volatile TestConfiguration global;
+
+	protected static final InheritableThreadLocal<TestConfiguration> threadConfiguration =
+		new InheritableThreadLocal<TestConfiguration>();
+
+	// the properties are never modified after the constructor returns
+	protected final FunctionalTestProperties properties;
+	// properties that are not found here are looked up in the parent, if not null
+	protected final TestConfiguration parent;
+	protected final String filename;
+	// configurations returned by getReferencedConfiguration instead of loading a file, if not null
+	protected final Map<String, TestConfiguration> referencedConfigurations;
+	// results of getReferencedConfiguration, by file name property, so that reads take no lock
+	protected final ConcurrentMap<String, TestConfiguration> resolvedReferencedConfigurations =
+		new ConcurrentHashMap<String, TestConfiguration>();
+	// class properties merged with the parent's, if there is a parent
+	protected final ConcurrentMap<Class<?>, ClassProperties> mergedClassProperties =
+		new ConcurrentHashMap<Class<?>, ClassProperties>();
+
+	protected TestConfiguration (FunctionalTestProperties properties, TestConfiguration parent,
+			String filename) {
+		this(properties, parent, filename, null);
+	}
+
+	protected TestConfiguration (FunctionalTestProperties properties, TestConfiguration parent,
+			String filename, Map<String, TestConfiguration> referencedConfigurations) {
+		this.properties = properties;
+		this.parent = parent;
+		this.filename = filename;
+		this.referencedConfigurations = referencedConfigurations;
+	}
+
+	/**
+	 * Returns the configuration for the current thread, or the global configuration if no
+	 * configuration was set for the current thread.
+	 *
+	 * @return the current configuration
+	 * @throws RuntimeException
+	 *             if the global configuration cannot be loaded
+	 */
+	public static TestConfiguration get () {
+		TestConfiguration configuration = threadConfiguration.get();
+		return configuration != null ? configuration : getGlobal();
+	}
+
+	/**
+	 * Returns the global configuration, loading it if necessary.
+	 *
+	 * @return the global configuration
+	 * @throws RuntimeException
+	 *             if the global configuration cannot be loaded
+	 */
+	public static TestConfiguration getGlobal () {
+		TestConfiguration configuration = global;
+		if( configuration == null ) {
+			synchronized( TestConfiguration.class ) {
+				if( global == null ) {
+					try {
+						global = load(getDefaultFilename());
+					} catch( IOException e ) {
+						throw new RuntimeException(e);
+					}
+				}
+				configuration = global;
+			}
+		}
+		return configuration;
+	}
+
+	/**
+	 * Sets the global configuration.
+	 *
+	 * @param configuration
+	 *            the new global configuration, or null to load it again from the default file on
+	 *            next use
+	 */
+	public static void setGlobal (TestConfiguration configuration) {
+		global = configuration;
+	}
+
+	/**
+	 * Returns the configuration that was set for the current thread, or inherited from the thread
+	 * that created it.
+	 *
+	 * @return the configuration, or null if the current thread uses the global configuration
+	 */
+	public static TestConfiguration getForCurrentThread () {
+		return threadConfiguration.get();
+	}
+
+	/**
+	 * Sets the configuration for the current thread and threads subsequently created by it.
+	 *
+	 * @param configuration
+	 *            the configuration, or null to use the global configuration
+	 */
+	public static void setForCurrentThread (TestConfiguration configuration) {
+		if( configuration != null ) {
+			threadConfiguration.set(configuration);
+		} else {
+			threadConfiguration.remove();
+		}
+	}
+
+	/**
+	 * Returns the configuration loaded from a properties file. Each file is read only once.
+	 *
+	 * @param propertiesFilename
+	 *            the name of a properties file
+	 * @return the configuration
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static TestConfiguration load (String propertiesFilename) throws IOException {
+		String path = new File(propertiesFilename).getAbsolutePath();
+		FileLoader loader = loaders.get(path);
+		if( loader == null ) {
+			FileLoader newLoader = new FileLoader(propertiesFilename);
+			loader = loaders.putIfAbsent(path, newLoader);
+			if( loader == null ) {
+				loader = newLoader;
+			}
+		}
+		return loader.get();
+	}
+
+	/**
+	 * Returns a configuration with a copy of the specified properties.
+	 *
+	 * @param properties
+	 *            the configuration properties
+	 * @return the configuration
+	 */
+	public static TestConfiguration fromProperties (Properties properties) {
+		return new TestConfiguration(new FunctionalTestProperties(properties), null, null);
+	}
+
+	protected static String getDefaultFilename () {
+		String propertiesFilename = System.getProperty(PROPERTIES_FILENAME_PROPERTY);
+		if( propertiesFilename != null ) {
+			logger.info(PROPERTIES_FILENAME_PROPERTY + "=" + propertiesFilename);
+			return propertiesFilename;
+		}
+		logger.info("Property " + PROPERTIES_FILENAME_PROPERTY + " is not set, using "
+				+ DEFAULT_PROPERTIES_FILENAME);
+		return DEFAULT_PROPERTIES_FILENAME;
+	}
+
+	/**
+	 * Returns a configuration in which the specified properties replace the properties of this
+	 * configuration. This configuration is not changed.
+	 *
+	 * @param overrides
+	 *            the properties to override
+	 * @return the new configuration
+	 */
+	public TestConfiguration withOverrides (Properties overrides) {
+		return new TestConfiguration(new FunctionalTestProperties(overrides), this, null);
+	}
+
+	/**
+	 * Returns a configuration in which {@link #getReferencedConfiguration} returns the specified
+	 * configuration for a file name property instead of loading the referenced file. This
+	 * configuration is not changed.
+	 *
+	 * @param filenameProperty
+	 *            the name of the property that specifies the file name
+	 * @param configuration
+	 *            the configuration to return for the property
+	 * @return the new configuration
+	 */
+	public TestConfiguration withReferencedConfiguration (String filenameProperty,
+			TestConfiguration configuration) {
+		return new TestConfiguration(new FunctionalTestProperties(new Properties()), this, null,
+				Collections.singletonMap(filenameProperty, configuration));
+	}
+
+	/**
+	 * Returns the configuration loaded from the properties file whose name is the value of a
+	 * property of this configuration, unless a configuration has been set for the property with
+	 * {@link #withReferencedConfiguration}.
+	 *
+	 * @param filenameProperty
+	 *            the name of the property that specifies the file name
+	 * @return the configuration
+	 * @throws MissingResourceException
+	 *             if the property is not defined
+	 * @throws RuntimeException
+	 *             if the file cannot be read
+	 */
+	public TestConfiguration getReferencedConfiguration (String filenameProperty)
+			throws MissingResourceException {
+		// the result never changes, since neither this configuration nor its parents change
+		TestConfiguration resolved = this.resolvedReferencedConfigurations.get(filenameProperty);
+		if( resolved == null ) {
+			resolved = resolveReferencedConfiguration(filenameProperty);
+			this.resolvedReferencedConfigurations.putIfAbsent(filenameProperty, resolved);
+		}
+		return resolved;
+	}
+
+	protected TestConfiguration resolveReferencedConfiguration (String filenameProperty)
+			throws MissingResourceException {
+		for( TestConfiguration configuration = this; configuration != null;
+				configuration = configuration.parent ) {
+			if( configuration.referencedConfigurations != null ) {
+				TestConfiguration referenced =
+					configuration.referencedConfigurations.get(filenameProperty);
+				if( referenced != null ) {
+					return referenced;
+				}
+			}
+		}
+		try {
+			return load(getRequiredProperty(filenameProperty));
+		} catch( IOException e ) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the name of the file from which this configuration was loaded, or null if it was
+	 * not loaded from a file.
+	 */
+	public String getFilename () {
+		return this.filename;
+	}
+
+	/**
+	 * Returns the properties of a class, including overridden properties.
+	 *
+	 * @see FunctionalTestProperties#getClassProperties(Class)
+	 */
+	public ClassProperties getClassProperties (Class<? extends Object> cls) {
+		if( this.parent == null ) {
+			return this.properties.getClassProperties(cls);
+		}
+		ClassProperties classProperties = this.mergedClassProperties.get(cls);
+		if( classProperties == null ) {
+			Map<String, String> values = new HashMap<String, String>(
+					this.parent.getClassProperties(cls).getValues());
+			values.putAll(this.properties.getClassProperties(cls).getValues());
+			classProperties = new ClassProperties(cls, Collections.unmodifiableMap(values));
+			ClassProperties existing = this.mergedClassProperties.putIfAbsent(cls, classProperties);
+			if( existing != null ) {
+				classProperties = existing;
+			}
+		}
+		return classProperties;
+	}
+
+	/**
+	 * Returns the properties of the configuration that defines a property, so that typed values
+	 * are parsed once by that configuration.
+	 */
+	protected FunctionalTestProperties getDefiningProperties (String propertyName) {
+		TestConfiguration configuration = this;
+		while( configuration.parent != null
+				&& configuration.properties.getProperty(propertyName) == null ) {
+			configuration = configuration.parent;
+		}
+		return configuration.properties;
+	}
+
+	public String getProperty (String propertyName) {
+		return getDefiningProperties(propertyName).getProperty(propertyName);
+	}
+
+	public String getProperty (String propertyName, String defaultValue) {
+		String propertyValue = getProperty(propertyName);
+		return propertyValue != null ? propertyValue : defaultValue;
+	}
+
+	public String getProperty (String propertyName, Class<? extends Object> cls) {
+		return getClassProperties(cls).getProperty(propertyName);
+	}
+
+	public String getProperty (String propertyName, Class<? extends Object> cls, String defaultValue) {
+		return getClassProperties(cls).getProperty(propertyName, defaultValue);
+	}
+
+	public String getRequiredProperty (String propertyName)
+			throws MissingResourceException {
+		return getDefiningProperties(propertyName).getRequiredProperty(propertyName);
+	}
+
+	public String getRequiredProperty (String propertyName, Class<? extends Object> cls)
+			throws MissingResourceException {
+		return getClassProperties(cls).getRequiredProperty(propertyName);
+	}
+
+	public int getInt (String propertyName, int defaultValue) {
+		return getDefiningProperties(propertyName).getInt(propertyName, defaultValue);
+	}
+
+	public int getInt (String propertyName, Class<? extends Object> cls, int defaultValue) {
+		return getClassProperties(cls).getInt(propertyName, defaultValue);
+	}
+
+	public long getLong (String propertyName, long defaultValue) {
+		return getDefiningProperties(propertyName).getLong(propertyName, defaultValue);
+	}
+
+	public long getLong (String propertyName, Class<? extends Object> cls, long defaultValue) {
+		return getClassProperties(cls).getLong(propertyName, defaultValue);
+	}
+
+	public boolean getBoolean (String propertyName, boolean defaultValue) {
+		return getDefiningProperties(propertyName).getBoolean(propertyName, defaultValue);
+	}
+
+	public boolean getBoolean (String propertyName, Class<? extends Object> cls, boolean defaultValue) {
+		return getClassProperties(cls).getBoolean(propertyName, defaultValue);
+	}
+
+	public long getDuration (String propertyName, TimeUnit unit, long defaultValue) {
+		return getDefiningProperties(propertyName).getDuration(propertyName, unit, defaultValue);
+	}
+
+	public long getDuration (String propertyName, Class<? extends Object> cls, TimeUnit unit,
+			long defaultValue) {
+		return getClassProperties(cls).getDuration(propertyName, unit, defaultValue);
+	}
+
+	/**
+	 * Parses a properties file on first use. Threads that request the same file wait until it
+	 * has been parsed. If parsing fails, the next request tries again.
+	 */
+	protected static class FileLoader {
+
+		protected final String filename;
+		protected volatile TestConfiguration configuration;
+
+		protected FileLoader (String filename) {
+			this.filename = filename;
+		}
+
+		protected TestConfiguration get () throws IOException {
+			TestConfiguration loaded = this.configuration;
+			if( loaded == null ) {
+				synchronized( this ) {
+					if( this.configuration == null ) {
+						logger.info("Loading properties from " + this.filename);
+						this.configuration = new TestConfiguration(
+								new FunctionalTestProperties(this.filename), null, this.filename);
+					}
+					loaded = this.configuration;
+				}
+			}
+			return loaded;
+		}
+	}
+}
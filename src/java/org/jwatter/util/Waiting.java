@@ -19,7 +19,9 @@ package org.jwatter.util;
  * A class to wait until a condition becomes true. Periodically calls {@link #until()} and sleeps
  * for a specified amount of time if it returns false. If {@link #until()} does not return true
  * within the timeout, throws a {@link TimedOut} exception. If the timeout is 0, it may wait
- * forever, and a {@link TimedOut} exception is never thrown.
+ * forever, and a {@link TimedOut} exception is never thrown. If a maximum sleep time greater than
+ * the sleep time is given, the sleep time doubles after each check until it reaches the maximum,
+ * so that a condition that becomes true quickly is noticed quickly.
  * 
  * A concrete subclass must implement {@link #until()}.
  */
@@ -31,6 +33,7 @@ public abstract class Waiting {
 
     protected int timeout;
     protected int sleep;
+    protected int maxSleep;
     protected String timeoutMessage;
 
     /**
@@ -97,8 +100,26 @@ public abstract class Waiting {
      *        the message in the {@link TimedOut} exception
      */
     public Waiting (int timeout, int sleep, String timeoutMessage) {
+        this(timeout, sleep, sleep, timeoutMessage);
+    }
+
+    /**
+     * Creates an instance that waits at most the specified time and checks the condition first
+     * after the specified sleep time, then after doubling sleep times up to the specified maximum.
+     * 
+     * @param timeout
+     *        the timeout in milliseconds
+     * @param sleep
+     *        the initial time to sleep between calling {@link #until()}, in milliseconds
+     * @param maxSleep
+     *        the maximum time to sleep between calling {@link #until()}, in milliseconds
+     * @param timeoutMessage
+     *        the message in the {@link TimedOut} exception
+     */
+    public Waiting (int timeout, int sleep, int maxSleep, String timeoutMessage) {
         this.timeout = timeout;
         this.sleep = sleep;
+        this.maxSleep = Math.max(sleep, maxSleep);
         this.timeoutMessage = timeoutMessage;
     }
 
@@ -198,6 +219,7 @@ public abstract class Waiting {
     public void waitUntil (int timeout, int sleep, String timeoutMessage)
             throws TimedOut, Exception {
         int waited = 0;
+        int maxSleep = Math.max(sleep, this.maxSleep);
         while (true) {
             if (this.until())
                 break;
@@ -209,6 +231,7 @@ public abstract class Waiting {
             }
             catch (InterruptedException e) {}
             waited += sleep;
+            sleep = Math.min(2 * sleep, maxSleep);
         }
     }
 
@@ -0,0 +1,59 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReadinessProbeTest {
+
+    @Test
+    public void testScript () {
+        assertEquals("return !!(document.body != null);", ReadinessProbe.BODY_PRESENT.getScript());
+        assertNull(ReadinessProbe.BODY_PRESENT.getSetupScript());
+    }
+
+    @Test
+    public void testMarkerElementEscapesSelector () {
+        assertEquals("document.querySelector('a[title=\\'it\\\\s\\']') != null",
+            ReadinessProbe.markerElement("a[title='it\\s']").getCondition());
+    }
+
+    @Test
+    public void testRequestProbesInstallMonitor () {
+        assertEquals(ReadinessProbe.REQUEST_MONITOR + ";",
+            ReadinessProbe.noPendingRequests().getSetupScript());
+        assertEquals(ReadinessProbe.REQUEST_MONITOR + ";",
+            ReadinessProbe.networkIdle(500).getSetupScript());
+        assertTrue(ReadinessProbe.networkIdle(500).getCondition().contains(">= 500"));
+    }
+
+    @Test
+    public void testAllOf () {
+        ReadinessProbe probe = ReadinessProbe.allOf(ReadinessProbe.DOCUMENT_COMPLETE,
+            ReadinessProbe.noPendingRequests(), ReadinessProbe.networkIdle(500));
+        assertTrue(probe.getCondition().startsWith(
+            "(" + ReadinessProbe.DOCUMENT_COMPLETE.getCondition() + ") && ("));
+        // the monitor is set up once, even though two probes need it
+        assertEquals(ReadinessProbe.REQUEST_MONITOR + ";", probe.getSetupScript());
+        assertNull(ReadinessProbe.allOf(ReadinessProbe.BODY_PRESENT,
+            ReadinessProbe.DOCUMENT_COMPLETE).getSetupScript());
+        assertEquals("true", ReadinessProbe.allOf().getCondition());
+    }
+}
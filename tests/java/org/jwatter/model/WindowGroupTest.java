@@ -0,0 +1,228 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jwatter.browser.WebAutomationFramework;
+
+public class WindowGroupTest {
+
+    protected WindowGroup group;
+    protected Window first;
+    protected Window second;
+
+    /**
+     * Returns a window without a name, so that invokeAll does not set it as the target, with its
+     * own browser framework.
+     */
+    protected static Window window () {
+        final WebAutomationFramework browserFramework = (WebAutomationFramework)Proxy
+            .newProxyInstance(WebAutomationFramework.class.getClassLoader(),
+                new Class<?>[] { WebAutomationFramework.class }, new IdentityHandler());
+        return (Window)Proxy.newProxyInstance(Window.class.getClassLoader(),
+            new Class<?>[] { Window.class }, new IdentityHandler() {
+
+                @Override
+                public Object invoke (Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getBrowserFramework")) {
+                        return browserFramework;
+                    }
+                    return super.invoke(proxy, method, args);
+                }
+            });
+    }
+
+    protected static class IdentityHandler
+            implements InvocationHandler {
+
+        public Object invoke (Object proxy, Method method, Object[] args) {
+            String methodName = method.getName();
+            if (methodName.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (methodName.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return null;
+        }
+    }
+
+    @Before
+    public void setUp ()
+            throws Exception {
+        group = new WindowGroup();
+        first = window();
+        second = window();
+        group.add(first);
+        group.add(second);
+    }
+
+    @Test
+    public void testResultsByWindow ()
+            throws Exception {
+        Map<Window, WindowTask<Window, String>> tasks =
+            new LinkedHashMap<Window, WindowTask<Window, String>>();
+        tasks.put(second, result("second"));
+        tasks.put(first, result("first"));
+        Map<Window, String> results = group.invokeAll(tasks);
+        List<Window> windows = new ArrayList<Window>(results.keySet());
+        assertEquals(2, windows.size());
+        assertSame(second, windows.get(0));
+        assertSame(first, windows.get(1));
+        assertEquals("second", results.get(second));
+        assertEquals("first", results.get(first));
+    }
+
+    @Test(expected = WindowException.class)
+    public void testDuplicateFramework ()
+            throws Exception {
+        Window copy = (Window)Proxy.newProxyInstance(Window.class.getClassLoader(),
+            new Class<?>[] { Window.class }, new IdentityHandler() {
+
+                @Override
+                public Object invoke (Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getBrowserFramework")) {
+                        return first.getBrowserFramework();
+                    }
+                    return super.invoke(proxy, method, args);
+                }
+            });
+        group.add(copy);
+    }
+
+    @Test
+    public void testExceptionAfterAllTasks ()
+            throws Exception {
+        final AtomicInteger finished = new AtomicInteger();
+        final IllegalStateException failure = new IllegalStateException("failed");
+        Map<Window, WindowTask<Window, Object>> tasks =
+            new LinkedHashMap<Window, WindowTask<Window, Object>>();
+        tasks.put(first, new WindowTask<Window, Object>() {
+
+            public Object call (Window window)
+                    throws Exception {
+                throw failure;
+            }
+        });
+        tasks.put(second, slowTask(finished));
+        try {
+            group.invokeAll(tasks);
+            fail("exception expected");
+        }
+        catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(1, finished.get());
+    }
+
+    @Test
+    public void testErrorAfterAllTasks ()
+            throws Exception {
+        final AtomicInteger finished = new AtomicInteger();
+        final AssertionError failure = new AssertionError("failed");
+        Map<Window, WindowTask<Window, Object>> tasks =
+            new LinkedHashMap<Window, WindowTask<Window, Object>>();
+        tasks.put(first, new WindowTask<Window, Object>() {
+
+            public Object call (Window window)
+                    throws Exception {
+                throw new IllegalStateException("exception");
+            }
+        });
+        tasks.put(second, new WindowTask<Window, Object>() {
+
+            public Object call (Window window)
+                    throws Exception {
+                throw failure;
+            }
+        });
+        Window third = window();
+        group.add(third);
+        tasks.put(third, slowTask(finished));
+        try {
+            group.invokeAll(tasks);
+            fail("error expected");
+        }
+        catch (AssertionError e) {
+            assertSame(failure, e);
+        }
+        assertEquals(1, finished.get());
+    }
+
+    @Test(expected = WindowException.class)
+    public void testWindowNotInGroup ()
+            throws Exception {
+        Map<Window, WindowTask<Window, String>> tasks =
+            new LinkedHashMap<Window, WindowTask<Window, String>>();
+        tasks.put(window(), result("other"));
+        group.invokeAll(tasks);
+    }
+
+    @Test
+    public void testSameTaskOnAllWindows ()
+            throws Exception {
+        Map<Window, Window> results = group.invokeAll(new WindowTask<Window, Window>() {
+
+            public Window call (Window window)
+                    throws Exception {
+                return window;
+            }
+        });
+        assertEquals(2, results.size());
+        assertTrue(results.containsKey(first));
+        for (Map.Entry<Window, Window> result : results.entrySet()) {
+            assertSame(result.getKey(), result.getValue());
+        }
+    }
+
+    protected static WindowTask<Window, String> result (final String result) {
+        return new WindowTask<Window, String>() {
+
+            public String call (Window window)
+                    throws Exception {
+                return result;
+            }
+        };
+    }
+
+    protected static WindowTask<Window, Object> slowTask (final AtomicInteger finished) {
+        return new WindowTask<Window, Object>() {
+
+            public Object call (Window window)
+                    throws Exception {
+                Thread.sleep(200);
+                finished.incrementAndGet();
+                return null;
+            }
+        };
+    }
+}
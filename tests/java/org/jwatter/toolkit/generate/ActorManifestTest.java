@@ -0,0 +1,104 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.jwatter.util.OrderedProperties;
+import org.jwatter.util.SegmentedProperties;
+
+public class ActorManifestTest
+{
+	@Test
+	public void testSaveAndLoad () throws Exception
+	{
+		File file = File.createTempFile("actor", ActorManifest.MANIFEST_SUFFIX);
+		try
+		{
+			ActorManifest manifest = new ActorManifest();
+			manifest.setFingerprint("abc");
+			manifest.putMethodName(UidKey.of("clickLinkWithText.C.Home: =x"),
+					"clickLinkWithTextHome");
+			manifest.putElementPrefix(UidKey
+					.of("a\u0000clickLinkWithText.C.Home"), "a3");
+			manifest.save(file);
+
+			ActorManifest loaded = ActorManifest.load(file);
+			assertEquals("abc", loaded.getFingerprint());
+			assertEquals("clickLinkWithTextHome", loaded
+					.getMethodName(UidKey.of("clickLinkWithText.C.Home: =x")));
+			assertEquals("a3", loaded.getElementPrefix(UidKey
+					.of("a\u0000clickLinkWithText.C.Home")));
+			assertNull(loaded.getMethodName(UidKey
+					.of("clickLinkWithText.C.About")));
+			assertTrue(loaded.getMethodNames().contains(
+					"clickLinkWithTextHome"));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testLoadOtherFormat () throws Exception
+	{
+		File file = File.createTempFile("actor", ActorManifest.MANIFEST_SUFFIX);
+		try
+		{
+			OrderedProperties entries = new OrderedProperties();
+			entries.setProperty("fingerprint", "abc");
+			entries.setProperty("method.clickLinkWithText.C.Home",
+					"clickLinkWithTextHome");
+			SegmentedProperties.storeAtomically(entries, file, null);
+
+			ActorManifest loaded = ActorManifest.load(file);
+			assertNull(loaded.getFingerprint());
+			assertTrue(loaded.getMethodNames().isEmpty());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testLoadMissing () throws Exception
+	{
+		File file = new File("no-such-dir", "Actor.manifest");
+		assertNull(ActorManifest.load(file).getFingerprint());
+	}
+
+	@Test
+	public void testFingerprint ()
+	{
+		String fingerprint =
+				ActorManifest.computeFingerprint(Arrays.asList("ab", "c"));
+		assertEquals(40, fingerprint.length());
+		assertEquals(fingerprint, ActorManifest.computeFingerprint(Arrays
+				.asList("ab", "c")));
+		assertFalse(fingerprint.equals(ActorManifest.computeFingerprint(Arrays
+				.asList("a", "bc"))));
+	}
+}
@@ -0,0 +1,67 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.jwatter.html.Element;
+import org.jwatter.toolkit.generate.CodeGenerator.ActorElement;
+
+public class CodeGeneratorTest
+{
+	protected static ActorElement actorElement ( Element element,
+			ElementActorMethod method, UidKey key )
+	{
+		ActorElement actorelement = new ActorElement(element, 1);
+		actorelement.methods.add(method);
+		actorelement.uids.add(key);
+		return actorelement;
+	}
+
+	@Test
+	public void testCollidingKeyGetsNextKey ()
+	{
+		Element home = ElementActorIndexTest.element("a", "Home");
+		Element about = ElementActorIndexTest.element("a", "About");
+		ElementActorMethod method =
+				ElementActorBroker.getElementActorMethods(home).get(0);
+		// pretend that the uids of both links have the same key
+		UidKey key = UidKey.of(method.getUniqueIdForElement(home));
+		Map<UidKey, ActorElement> actormethoduids =
+				new HashMap<UidKey, ActorElement>();
+		actormethoduids.put(key, actorElement(home, method, key));
+
+		UidKey next = CodeGenerator.findFreeUidKey(actormethoduids, key,
+				method, about);
+		assertEquals(key.next(), next);
+		actormethoduids.put(next, actorElement(about, method, next));
+
+		// the same uid is found under either key
+		assertNull(CodeGenerator.findFreeUidKey(actormethoduids, key, method,
+				home));
+		assertNull(CodeGenerator.findFreeUidKey(actormethoduids, key, method,
+				about));
+		assertEquals(next.next(), CodeGenerator.findFreeUidKey(
+				actormethoduids, key, method, ElementActorIndexTest.element(
+						"a", "Contact")));
+	}
+}
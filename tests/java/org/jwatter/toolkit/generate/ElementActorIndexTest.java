@@ -0,0 +1,119 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.jwatter.browser.WebAutomationFramework;
+import org.jwatter.html.Element;
+
+public class ElementActorIndexTest
+{
+	protected static Element element ( final String name, final String text,
+			String... attributes )
+	{
+		final Map<String, String> values = new HashMap<String, String>();
+		for ( int i = 0 ; i < attributes.length ; i += 2 )
+		{
+			values.put(attributes[i], attributes[i + 1]);
+		}
+		return (Element) Proxy.newProxyInstance(Element.class
+				.getClassLoader(), new Class<?>[]
+		{
+			Element.class
+		}, new InvocationHandler()
+		{
+			public Object invoke ( Object proxy, Method method, Object[] args )
+			{
+				String methodName = method.getName();
+				if ( methodName.equals("getName") ) return name;
+				if ( methodName.equals("getText") ) return text;
+				if ( methodName.equals("getAttributeValue") ) return values
+						.get(args[0]);
+				return null;
+			}
+		});
+	}
+
+	protected static void assertSameAsLinearMatch ( Element element )
+	{
+		List<ElementActorMethod> expected = new ArrayList<ElementActorMethod>();
+		for ( ElementActorMethod method : ElementActorBroker
+				.getElementActorMethods() )
+		{
+			for ( String elementName : method.getHtmlElementNames() )
+			{
+				if ( elementName.equals(element.getName()) )
+				{
+					if ( method.isForElement(element) ) expected.add(method);
+					break;
+				}
+			}
+		}
+		assertEquals(expected, ElementActorBroker
+				.getElementActorMethods(element));
+	}
+
+	@Test
+	public void testMatchesLinearScan ()
+	{
+		assertSameAsLinearMatch(element("input", null, "type", "text", "id",
+				"q"));
+		assertSameAsLinearMatch(element("input", null, "type", "text", "name",
+				"q"));
+		assertSameAsLinearMatch(element("input", null, "type", "password",
+				"id", "p", "name", "p"));
+		assertSameAsLinearMatch(element("input", null, "type", "submit",
+				"value", "Go"));
+		assertSameAsLinearMatch(element("input", null, "name", "q"));
+		assertSameAsLinearMatch(element("a", "Home", "href", "/index.html"));
+		assertSameAsLinearMatch(element("a", " ", "id", "top"));
+		assertSameAsLinearMatch(element("select", null, "name", "s"));
+		assertSameAsLinearMatch(element("button", "OK"));
+	}
+
+	@Test
+	public void testContentRequired () throws Exception
+	{
+		ElementActorMethod method =
+				new ElementActorMethod(WebAutomationFramework.class.getMethod(
+						"clickLinkWithText", String.class));
+		List<ElementActorMethod> methods = new ArrayList<ElementActorMethod>();
+		methods.add(method);
+		ElementActorIndex index = new ElementActorIndex("a", methods);
+		assertTrue(index.match(element("a", "Home")).contains(method));
+		assertFalse(index.match(element("a", "  ")).contains(method));
+	}
+
+	@Test
+	public void testUnsupportedElement ()
+	{
+		assertTrue(ElementActorBroker.getElementActorMethods(
+				element("marquee", "x")).isEmpty());
+	}
+}
@@ -16,6 +16,8 @@ limitations under the License.
 package org.jwatter.toolkit.generate;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Method;
@@ -25,6 +27,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.jwatter.browser.WebAutomationFramework;
+import org.jwatter.html.Element;
 
 public class ElementActorMethodTest
 {
@@ -175,4 +178,56 @@ public class ElementActorMethodTest
 	{
 	}
 
+	@Test
+	public void testHasSameUniqueId ()
+	{
+		Element home = ElementActorIndexTest.element("a", "Home");
+		Element input = ElementActorIndexTest.element("input", null, "id", "q");
+		ElementActorMethod[] methods =
+		{
+				actorAttributeMethod, actorAttributeIndexMethod,
+				actorContentMethod
+		};
+		Element[] elements =
+		{
+				home, ElementActorIndexTest.element("a", "Home"),
+				ElementActorIndexTest.element("a", "Homepage"),
+				ElementActorIndexTest.element("a", ""), input,
+				ElementActorIndexTest.element("input", null, "id", "q")
+		};
+		for ( ElementActorMethod method : methods )
+		{
+			for ( Element element : elements )
+			{
+				for ( ElementActorMethod otherMethod : methods )
+				{
+					for ( Element otherElement : elements )
+					{
+						assertEquals(method.getUniqueIdForElement(element)
+								.equals(otherMethod
+										.getUniqueIdForElement(otherElement)),
+								method.hasSameUniqueId(element, otherMethod,
+										otherElement));
+					}
+				}
+			}
+		}
+		assertTrue(actorContentMethod.hasSameUniqueId(home,
+				actorContentMethod, elements[1]));
+		assertFalse(actorContentMethod.hasSameUniqueId(home,
+				actorContentMethod, elements[2]));
+	}
+
+	@Test
+	public void testInterfaceMethodMetadata ()
+	{
+		assertEquals("valueOfTextInputWithName", actorAttributeIndexMethod
+				.getInterfaceMethodName());
+		assertEquals("valueOfTextInputWithName(String,int)",
+				actorAttributeIndexMethod.getInterfaceMethodSignature());
+		assertEquals(2, actorAttributeIndexMethod.getInterfaceParameterCount());
+		assertSame(actorAttributeIndexMethod.getExceptionTypes(),
+				actorAttributeIndexMethod.getExceptionTypes());
+	}
+
 }
@@ -0,0 +1,145 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+
+import org.jwatter.model.ModelClassMetadata;
+import org.jwatter.toolkit.generate.code.ClassDefinition;
+import org.jwatter.toolkit.generate.code.CodeFactory;
+import org.jwatter.toolkit.generate.code.SourceFile;
+import org.junit.Test;
+
+public class InMemoryCompilerTest
+{
+	private static SourceFile sourceFile ( String value )
+	{
+		SourceFile sourceFile = SourceFile.createNewSourceFile("a.b", "C");
+		ClassDefinition classDefinition =
+				CodeFactory.createClassDefinition(Modifier.PUBLIC, "C",
+						Object.class);
+		sourceFile.addClassDefinition(classDefinition);
+		classDefinition.addFieldDeclaration(CodeFactory.createFieldDeclaration(
+				Modifier.PUBLIC | Modifier.STATIC | Modifier.FINAL,
+				String.class, "VALUE", value));
+		return sourceFile;
+	}
+
+	@Test
+	public void testCompileAndLoad () throws Exception
+	{
+		ClassLoader classLoader =
+				new InMemoryCompiler().compile(Collections
+						.singletonList(sourceFile("\"x\"")), Collections
+						.<File> emptyList());
+		Class<?> cls = Class.forName("a.b.C", true, classLoader);
+		assertSame(classLoader, cls.getClassLoader());
+		assertEquals("x", cls.getField("VALUE").get(null));
+
+		// each compilation has its own class loader
+		ClassLoader otherClassLoader =
+				new InMemoryCompiler().compile(Collections
+						.singletonList(sourceFile("\"y\"")), Collections
+						.<File> emptyList());
+		assertEquals("y", Class.forName("a.b.C", true, otherClassLoader)
+				.getField("VALUE").get(null));
+	}
+
+	@Test
+	public void testCompileWithFile () throws Exception
+	{
+		File directory = File.createTempFile("sources", "");
+		directory.delete();
+		directory.mkdir();
+		File source = new File(directory, "D.java");
+		try
+		{
+			OutputStream out = new FileOutputStream(source);
+			try
+			{
+				out.write("package a.b; public class D extends C { }"
+						.getBytes("UTF-8"));
+			}
+			finally
+			{
+				out.close();
+			}
+			ClassLoader classLoader =
+					new InMemoryCompiler().compile(Collections
+							.singletonList(sourceFile("\"x\"")), Collections
+							.singletonList(source));
+			assertEquals("a.b.C", classLoader.loadClass("a.b.D")
+					.getSuperclass().getName());
+		}
+		finally
+		{
+			source.delete();
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void testCompilationErrors () throws IOException
+	{
+		try
+		{
+			new InMemoryCompiler().compile(Collections
+					.singletonList(sourceFile("42")), Collections
+					.<File> emptyList());
+			fail("Compiled a String field initialized with an int");
+		}
+		catch ( CodeGeneratorException e )
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith(
+					"Compilation failed"));
+			assertTrue(e.getMessage(), e.getMessage().contains("C.java"));
+		}
+	}
+
+	@Test
+	public void testCompiledClassIsNotPinnedByMetadata () throws Exception
+	{
+		ClassLoader classLoader =
+				new InMemoryCompiler().compile(Collections
+						.singletonList(sourceFile("\"z\"")), Collections
+						.<File> emptyList());
+		Class<?> cls = Class.forName("a.b.C", true, classLoader);
+		assertSame(ModelClassMetadata.forClass(cls), ModelClassMetadata
+				.forClass(cls));
+		WeakReference<ClassLoader> reference =
+				new WeakReference<ClassLoader>(classLoader);
+		classLoader = null;
+		cls = null;
+		for ( int i = 0 ; i < 50 && reference.get() != null ; i++ )
+		{
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+	}
+}
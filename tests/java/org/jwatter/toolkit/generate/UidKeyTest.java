@@ -0,0 +1,78 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import org.jwatter.html.Element;
+
+public class UidKeyTest
+{
+	@Test
+	public void testStreamingKeyEqualsKeyOfUid ()
+	{
+		StringBuilder text = new StringBuilder();
+		for ( int i = 0 ; i < 1000 ; i++ )
+		{
+			text.append((char) ('a' + i % 26));
+		}
+		Element[] elements =
+				{
+						ElementActorIndexTest.element("a", "Home", "href",
+								"/index.html", "id", "home"),
+						ElementActorIndexTest.element("a", text.toString()),
+						ElementActorIndexTest.element("input", null, "type",
+								"text", "name", "q\u00e9")
+				};
+		UidKey.Builder builder = new UidKey.Builder();
+		int count = 0;
+		for ( Element element : elements )
+		{
+			for ( ElementActorMethod method : ElementActorBroker
+					.getElementActorMethods(element) )
+			{
+				assertEquals(UidKey.of(method.getUniqueIdForElement(element)),
+						method.getUniqueKeyForElement(element, builder));
+				count++;
+			}
+		}
+		assertFalse(count == 0);
+	}
+
+	@Test
+	public void testBuilderIsReset ()
+	{
+		UidKey.Builder builder = new UidKey.Builder();
+		UidKey first = builder.append("ab").append('c').build();
+		assertEquals(first, builder.append("abc").build());
+		assertEquals(UidKey.of("abc"), first);
+		assertEquals(UidKey.of("null"), builder.append(null).build());
+	}
+
+	@Test
+	public void testToStringAndNext ()
+	{
+		assertEquals("000000000000000100000000000000ff", new UidKey(1L, 255L)
+				.toString());
+		assertEquals(new UidKey(1L, 256L), new UidKey(1L, 255L).next());
+		assertEquals(new UidKey(2L, 0L), new UidKey(1L, -1L).next());
+		assertEquals(32, UidKey.of("abc").toString().length());
+		assertFalse(UidKey.of("ab").equals(UidKey.of("ba")));
+	}
+}
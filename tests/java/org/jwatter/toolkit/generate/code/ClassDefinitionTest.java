@@ -0,0 +1,108 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ClassDefinitionTest
+{
+	private static MethodDefinition method ( String name,
+			Class<?>... parameterTypes )
+	{
+		String[] parameterNames = new String[parameterTypes.length];
+		for ( int i = 0 ; i < parameterNames.length ; i++ )
+		{
+			parameterNames[i] = "arg" + (i + 1);
+		}
+		return CodeFactory.createNewMethodDefinition(Modifier.PROTECTED,
+				void.class, name, parameterTypes, parameterNames, null)
+				.getMethodDefinition();
+	}
+
+	private static String addUnique ( ClassDefinition classDefinition,
+			MethodDefinition method, Set<String> excludedNames )
+	{
+		classDefinition.makeMethodNameUnique(method, excludedNames);
+		classDefinition.addMethodDefinition(method);
+		return method.getName();
+	}
+
+	private static ClassDefinition classDefinition ()
+	{
+		return CodeFactory.createClassDefinition(Modifier.PUBLIC, "C",
+				Object.class);
+	}
+
+	@Test
+	public void testSuffixes ()
+	{
+		ClassDefinition classDefinition = classDefinition();
+		assertEquals("delete", addUnique(classDefinition, method("delete"),
+				null));
+		for ( int i = 2 ; i <= 200 ; i++ )
+		{
+			assertEquals("delete" + i, addUnique(classDefinition,
+					method("delete"), null));
+		}
+		assertTrue(classDefinition.containsMethod(method("delete200")));
+		assertFalse(classDefinition.containsMethod(method("delete201")));
+	}
+
+	@Test
+	public void testOverloadsKeepTheirName ()
+	{
+		ClassDefinition classDefinition = classDefinition();
+		assertEquals("set", addUnique(classDefinition, method("set",
+				String.class), null));
+		assertEquals("set", addUnique(classDefinition, method("set",
+				String.class, int.class), null));
+		assertEquals("set2", addUnique(classDefinition, method("set",
+				String.class), null));
+		assertEquals("set2", addUnique(classDefinition, method("set",
+				String.class, int.class), null));
+	}
+
+	@Test
+	public void testExcludedNamesAndTakenSuffixes ()
+	{
+		ClassDefinition classDefinition = classDefinition();
+		assertEquals("click2", addUnique(classDefinition, method("click2"),
+				null));
+		Set<String> excluded = Collections.singleton("click3");
+		assertEquals("click", addUnique(classDefinition, method("click"),
+				excluded));
+		assertEquals("click4", addUnique(classDefinition, method("click"),
+				excluded));
+		assertEquals("click5", addUnique(classDefinition, method("click"),
+				excluded));
+	}
+
+	@Test(expected = MalformedCodeError.class)
+	public void testDuplicateMethod ()
+	{
+		ClassDefinition classDefinition = classDefinition();
+		classDefinition.addMethodDefinition(method("get", String.class));
+		classDefinition.addMethodDefinition(method("get", String.class));
+	}
+}
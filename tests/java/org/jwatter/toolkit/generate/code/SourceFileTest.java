@@ -0,0 +1,103 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.toolkit.generate.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceFileTest
+{
+	private File directory;
+
+	@Before
+	public void setUp () throws IOException
+	{
+		directory = File.createTempFile("sources", "");
+		directory.delete();
+		directory.mkdir();
+	}
+
+	@After
+	public void tearDown ()
+	{
+		delete(directory);
+	}
+
+	private static void delete ( File file )
+	{
+		File[] files = file.listFiles();
+		if ( files != null )
+		{
+			for ( File f : files )
+			{
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+
+	private static SourceFile sourceFile ( String comment, String field )
+	{
+		SourceFile sourceFile = SourceFile.createNewSourceFile("a.b", "C");
+		sourceFile.addComment(comment);
+		ClassDefinition classDefinition =
+				CodeFactory.createClassDefinition(Modifier.PUBLIC, "C",
+						Object.class);
+		sourceFile.addClassDefinition(classDefinition);
+		classDefinition.addFieldDeclaration(CodeFactory.createFieldDeclaration(
+				Modifier.PROTECTED, String.class, field));
+		return sourceFile;
+	}
+
+	@Test
+	public void testSaveSkipsUnchangedBody () throws IOException
+	{
+		String sourceDirectory = directory.getPath();
+		assertTrue(sourceFile("first", "x").save(sourceDirectory));
+		File file = new File(sourceFile("first", "x").getFilename(
+				sourceDirectory));
+		long length = file.length();
+
+		// only the header comment differs
+		assertFalse(sourceFile("second run", "x").save(sourceDirectory));
+		assertEquals(length, file.length());
+
+		assertTrue(sourceFile("third run", "y").save(sourceDirectory));
+		assertEquals(1, file.getParentFile().list().length);
+	}
+
+	@Test
+	public void testWriterCountsSkippedFiles () throws IOException
+	{
+		SourceFileWriter writer = new SourceFileWriter(2);
+		writer.submit(sourceFile("first", "x"), directory.getPath());
+		writer.awaitCompletion();
+		writer.submit(sourceFile("second", "x"), directory.getPath());
+		writer.awaitCompletion();
+		writer.shutdown();
+		assertEquals(1, writer.getWrittenCount());
+		assertEquals(1, writer.getSkippedCount());
+	}
+}
@@ -0,0 +1,127 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.MissingResourceException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FunctionalTestPropertiesTest
+{
+	private FunctionalTestProperties properties;
+
+	@Before
+	public void setUp ()
+	{
+		Properties values = new Properties();
+		values.setProperty("count", "7");
+		values.setProperty("java.lang.String.count", "3");
+		values.setProperty("java.lang.String.enabled", "TRUE");
+		values.setProperty("java.lang.String.timeout", "500ms");
+		values.setProperty("java.lang.String.wait", "2m");
+		values.setProperty("java.lang.String.plain", "30");
+		values.setProperty("java.lang.String.bad", "x");
+		values.setProperty("java.lang.StringBuilder.count", "9");
+		properties = new FunctionalTestProperties(values);
+	}
+
+	@Test
+	public void testClassProperty ()
+	{
+		assertEquals("3", properties.getProperty("count", String.class));
+		assertEquals("9", properties.getProperty("count", StringBuilder.class));
+		assertNull(properties.getProperty("count", Integer.class));
+		assertEquals("7", properties.getProperty("count"));
+	}
+
+	@Test
+	public void testClassProperties ()
+	{
+		FunctionalTestProperties.ClassProperties classProperties = properties
+				.getClassProperties(StringBuilder.class);
+		assertEquals(1, classProperties.getValues().size());
+		assertEquals("9", classProperties.getRequiredProperty("count"));
+	}
+
+	@Test
+	public void testClassPropertyWithDots ()
+	{
+		Properties values = new Properties();
+		values.setProperty("java.lang.String.frame.timeout", "5");
+		values.setProperty("java.lang.timeout", "6");
+		FunctionalTestProperties dotted = new FunctionalTestProperties(values);
+		assertEquals("5", dotted.getProperty("frame.timeout", String.class));
+		assertEquals(1, dotted.getClassProperties(String.class).getValues().size());
+		assertNull(dotted.getProperty("timeout", String.class));
+		assertEquals(0, dotted.getClassProperties(Integer.class).getValues().size());
+	}
+
+	@Test(expected = MissingResourceException.class)
+	public void testRequiredPropertyMissing ()
+	{
+		properties.getRequiredProperty("missing", String.class);
+	}
+
+	@Test
+	public void testInt ()
+	{
+		assertEquals(3, properties.getInt("count", String.class, 0));
+		assertEquals(3, properties.getInt("count", String.class, 0));
+		assertEquals(5, properties.getInt("missing", String.class, 5));
+		assertEquals(7L, properties.getLong("count", 0L));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testIntInvalid ()
+	{
+		properties.getInt("bad", String.class, 0);
+	}
+
+	@Test
+	public void testBoolean ()
+	{
+		assertTrue(properties.getBoolean("enabled", String.class, false));
+		assertFalse(properties.getBoolean("bad", String.class, true));
+		assertTrue(properties.getBoolean("missing", String.class, true));
+	}
+
+	@Test
+	public void testDuration ()
+	{
+		assertEquals(500L, properties.getDuration("timeout", String.class,
+				TimeUnit.MILLISECONDS, 0));
+		assertEquals(0L, properties.getDuration("timeout", String.class,
+				TimeUnit.SECONDS, 1));
+		assertEquals(120L, properties.getDuration("wait", String.class,
+				TimeUnit.SECONDS, 0));
+		assertEquals(30L, properties.getDuration("plain", String.class,
+				TimeUnit.SECONDS, 0));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testDurationInvalid ()
+	{
+		FunctionalTestProperties.parseDuration("3 weeks", TimeUnit.SECONDS);
+	}
+}
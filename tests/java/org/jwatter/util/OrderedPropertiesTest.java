@@ -23,6 +23,8 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Date;
@@ -32,6 +34,9 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -366,6 +371,151 @@ public class OrderedPropertiesTest {
         checkReplaced(inputPropertiesArray, randomInputPropertiesIndex, newProperty[1]);
     }
 
+    @Test
+    public void testRemoveKeyValue ()
+            throws Exception {
+        setProperties(inputPropertiesArray);
+        assertFalse(properties.remove(randomInputPropertyName, newProperty[1]));
+        checkAll(inputPropertiesArray);
+        assertTrue(properties.remove(randomInputPropertyName, randomInputPropertyValue));
+        checkDeleted(inputPropertiesArray, randomInputPropertiesIndex);
+    }
+
+    @Test
+    public void testForEach ()
+            throws Exception {
+        setProperties(inputPropertiesArray);
+        final Map<Object, Object> visited = new LinkedHashMap<Object, Object>();
+        properties.forEach(new BiConsumer<Object, Object>() {
+            public void accept (Object key, Object value) {
+                visited.put(key, value);
+            }
+        });
+        assertEquals(inputPropertiesArray.length, visited.size());
+        Iterator<Entry<Object, Object>> iterator = visited.entrySet().iterator();
+        for (String[] property : inputPropertiesArray) {
+            Entry<Object, Object> entry = iterator.next();
+            assertEquals(property[0], entry.getKey());
+            assertEquals(property[1], entry.getValue());
+        }
+    }
+
+    @Test
+    public void testReplaceAll ()
+            throws Exception {
+        setProperties(inputPropertiesArray);
+        properties.replaceAll(new BiFunction<Object, Object, Object>() {
+            public Object apply (Object key, Object value) {
+                return key + "=" + value;
+            }
+        });
+        String[][] expected = new String[inputPropertiesArray.length][];
+        for (int i = 0; i < inputPropertiesArray.length; i++) {
+            String[] property = inputPropertiesArray[i];
+            expected[i] = new String[] { property[0], property[0] + "=" + property[1] };
+        }
+        checkAll(expected);
+    }
+
+    @Test
+    public void testComputeIfAbsent ()
+            throws Exception {
+        setProperties(inputPropertiesArray);
+        Function<Object, Object> function = new Function<Object, Object>() {
+            public Object apply (Object key) {
+                return newProperty[1];
+            }
+        };
+        assertEquals(randomInputPropertyValue,
+                     properties.computeIfAbsent(randomInputPropertyName, function));
+        checkAll(inputPropertiesArray);
+        assertEquals(newProperty[1], properties.computeIfAbsent(newProperty[0], function));
+        checkAdded(inputPropertiesArray, newProperty);
+    }
+
+    @Test
+    public void testCompute ()
+            throws Exception {
+        setProperties(inputPropertiesArray);
+        BiFunction<Object, Object, Object> function = new BiFunction<Object, Object, Object>() {
+            public Object apply (Object key, Object value) {
+                return value == null ? newProperty[1] : null;
+            }
+        };
+        assertEquals(newProperty[1], properties.compute(newProperty[0], function));
+        checkAdded(inputPropertiesArray, newProperty);
+        assertNull(properties.compute(newProperty[0], function));
+        checkAll(inputPropertiesArray);
+        assertNull(properties.computeIfPresent(randomInputPropertyName, function));
+        checkDeleted(inputPropertiesArray, randomInputPropertiesIndex);
+    }
+
+    @Test
+    public void testMerge ()
+            throws Exception {
+        setProperties(inputPropertiesArray);
+        BiFunction<Object, Object, Object> function = new BiFunction<Object, Object, Object>() {
+            public Object apply (Object value, Object newValue) {
+                return value.equals(newValue) ? null : value + "," + newValue;
+            }
+        };
+        assertEquals(newProperty[1], properties.merge(newProperty[0], newProperty[1], function));
+        checkAdded(inputPropertiesArray, newProperty);
+        assertEquals(newProperty[1] + ",x", properties.merge(newProperty[0], "x", function));
+        assertEquals(newProperty[1] + ",x", properties.getProperty(newProperty[0]));
+        assertNull(properties.merge(randomInputPropertyName, randomInputPropertyValue, function));
+        assertFalse(properties.containsKey(randomInputPropertyName));
+    }
+
+    @Test
+    public void testGetOrDefaultAndPutIfAbsent ()
+            throws Exception {
+        setProperties(inputPropertiesArray);
+        assertEquals(randomInputPropertyValue,
+                     properties.getOrDefault(randomInputPropertyName, newProperty[1]));
+        assertEquals(newProperty[1], properties.getOrDefault(newProperty[0], newProperty[1]));
+        assertEquals(randomInputPropertyValue,
+                     properties.putIfAbsent(randomInputPropertyName, newProperty[1]));
+        checkAll(inputPropertiesArray);
+        assertNull(properties.putIfAbsent(newProperty[0], newProperty[1]));
+        checkAdded(inputPropertiesArray, newProperty);
+    }
+
+    @Test
+    public void testRemoveManyKeepsOrder ()
+            throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            properties.setProperty("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 != 0) {
+                properties.remove("key" + i);
+            }
+        }
+        properties.setProperty("last", "value");
+        String[][] expected = new String[101][];
+        for (int i = 0; i < 100; i++) {
+            expected[i] = new String[] { "key" + (i * 10), "value" + (i * 10) };
+        }
+        expected[100] = new String[] { "last", "value" };
+        checkAll(expected);
+    }
+
+    @Test
+    public void testSerialization ()
+            throws Exception {
+        setProperties(inputPropertiesArray);
+        properties.remove(randomInputPropertyName);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(properties);
+        out.close();
+        properties =
+            (OrderedProperties)new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        checkDeleted(inputPropertiesArray, randomInputPropertiesIndex);
+    }
+
     protected void setProperties (String[][] propertiesArray)
             throws Exception {
         for (String[] prop : propertiesArray) {
@@ -0,0 +1,126 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentedPropertiesTest
+{
+	private File directory;
+	private String filename;
+
+	@Before
+	public void setUp () throws IOException
+	{
+		directory = File.createTempFile("segmented", "");
+		directory.delete();
+		directory.mkdir();
+		filename = new File(directory, "actor.properties").getPath();
+	}
+
+	@After
+	public void tearDown ()
+	{
+		delete(directory);
+	}
+
+	private static void delete ( File file )
+	{
+		File[] files = file.listFiles();
+		if ( files != null )
+		{
+			for ( File f : files )
+			{
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+
+	private static OrderedProperties properties ( String... namesAndValues )
+	{
+		OrderedProperties properties = new OrderedProperties();
+		for ( int i = 0; i < namesAndValues.length; i += 2 )
+		{
+			properties.setProperty(namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return properties;
+	}
+
+	@Test
+	public void testLoadWithoutSegments () throws IOException
+	{
+		SegmentedProperties.storeAtomically(properties("a.B.x", "1"), new File(
+				filename), null);
+		OrderedProperties merged = new OrderedProperties();
+		SegmentedProperties.load(filename, merged);
+		assertEquals("1", merged.getProperty("a.B.x"));
+		assertFalse(SegmentedProperties.isSegmented(filename));
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testLoadMissing () throws IOException
+	{
+		SegmentedProperties.load(filename, new OrderedProperties());
+	}
+
+	@Test
+	public void testSegmentOverridesClass () throws IOException
+	{
+		SegmentedProperties.storeAtomically(properties("a.B.x", "1", "a.B.y",
+				"2", "a.C.x", "3"), new File(filename), null);
+		SegmentedProperties.storeSegment(filename, "a.B", properties("a.B.x",
+				"4"));
+		OrderedProperties merged = new OrderedProperties();
+		SegmentedProperties.load(filename, merged);
+		assertTrue(SegmentedProperties.isSegmented(filename));
+		assertEquals("4", merged.getProperty("a.B.x"));
+		assertNull(merged.getProperty("a.B.y"));
+		assertEquals("3", merged.getProperty("a.C.x"));
+		Iterator<Object> keys = merged.keySet().iterator();
+		assertEquals("a.C.x", keys.next());
+		assertEquals("a.B.x", keys.next());
+		assertFalse(keys.hasNext());
+	}
+
+	@Test
+	public void testSegmentsWithoutFile () throws IOException
+	{
+		SegmentedProperties.storeSegment(filename, "a.B", properties("a.B.x",
+				"1"));
+		SegmentedProperties.storeSegment(filename, "a.C", properties("a.C.x",
+				"2"));
+		SegmentedProperties.storeSegment(filename, "a.B", properties());
+		OrderedProperties merged = new OrderedProperties();
+		SegmentedProperties.load(filename, merged);
+		assertEquals(1, merged.size());
+		assertEquals("2", merged.getProperty("a.C.x"));
+		assertEquals(2, SegmentedProperties.readIndex(filename).size());
+		assertFalse(new File(filename).exists());
+	}
+}
@@ -17,6 +17,8 @@ package org.jwatter.util;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 public class StringUtilTest
@@ -62,4 +64,52 @@ public class StringUtilTest
 		assertEquals("path", StringUtil
 				.getUrlFilename("http://www.test.com/path/"));
 	}
+
+	@Test
+	public void testNormalizeWhitespace ()
+	{
+		assertEquals("a b c", StringUtil
+				.normalizeWhitespace(" \t a \n\n b\r\nc \u000B\f"));
+	}
+
+	@Test
+	public void testNormalizeWhitespaceEmpty ()
+	{
+		assertEquals("", StringUtil.normalizeWhitespace(""));
+		assertEquals("", StringUtil.normalizeWhitespace(" \n\t "));
+	}
+
+	@Test
+	public void testNormalizeWhitespaceMatchesRegex ()
+	{
+		String s = "  Name:\t\tJohn \n  Doe \u00a0 (admin)\n";
+		assertEquals(s.replaceAll("\\s+", " ").trim(), StringUtil
+				.normalizeWhitespace(s));
+	}
+
+	@Test
+	public void testNormalizeWhitespaceMaxlen ()
+	{
+		assertEquals("a b c", StringUtil.normalizeWhitespace(" a  b  c  ", 5));
+		assertEquals("a b c ", StringUtil.normalizeWhitespace(" a  b  c d", 5));
+		assertEquals("a bc", StringUtil.normalizeWhitespace("a  bcdef", 3));
+	}
+
+	@Test
+	public void testTruncate ()
+	{
+		assertEquals("abcdef", StringUtil.truncate("abcdef", 0));
+		assertEquals("abcdef", StringUtil.truncate("abcdef", 6));
+		assertEquals("ab...", StringUtil.truncate("abcdef", 5));
+		assertEquals("abc", StringUtil.truncate("abcdef", 3));
+	}
+
+	@Test
+	public void testJoin ()
+	{
+		assertEquals("", StringUtil.join(Arrays.<String> asList(), ","));
+		assertEquals("a,b", StringUtil.join(Arrays.asList("a", "b"), ","));
+		assertEquals(",a", StringUtil.join(Arrays.asList("", "a"), ","));
+		assertEquals("a,,", StringUtil.join(Arrays.asList("a", "", ""), ","));
+	}
 }
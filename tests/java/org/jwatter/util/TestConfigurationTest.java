@@ -0,0 +1,187 @@
+/*
+Copyright 2011 Karl-Michael Schneider
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.jwatter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.MissingResourceException;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestConfigurationTest
+{
+	@After
+	public void clearThreadConfiguration ()
+	{
+		TestConfiguration.setForCurrentThread(null);
+	}
+
+	protected static Properties properties (String... namesAndValues)
+	{
+		Properties properties = new Properties();
+		for ( int i = 0; i < namesAndValues.length; i += 2 )
+		{
+			properties.setProperty(namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return properties;
+	}
+
+	@Test
+	public void testFromPropertiesCopies ()
+	{
+		Properties properties = properties("a", "1");
+		TestConfiguration configuration = TestConfiguration.fromProperties(properties);
+		properties.setProperty("a", "2");
+		assertEquals("1", configuration.getProperty("a"));
+	}
+
+	@Test
+	public void testClassProperty ()
+	{
+		TestConfiguration configuration = TestConfiguration.fromProperties(
+				properties("java.lang.String.x", "s"));
+		assertEquals("s", configuration.getProperty("x", String.class));
+		assertEquals("d", configuration.getProperty("y", String.class, "d"));
+	}
+
+	@Test(expected = MissingResourceException.class)
+	public void testRequiredPropertyMissing ()
+	{
+		TestConfiguration.fromProperties(new Properties()).getRequiredProperty("a");
+	}
+
+	@Test
+	public void testOverrides ()
+	{
+		TestConfiguration configuration = TestConfiguration.fromProperties(
+				properties("a", "1", "b", "2"));
+		TestConfiguration overridden = configuration.withOverrides(properties("b", "3"));
+		assertEquals("1", overridden.getProperty("a"));
+		assertEquals("3", overridden.getProperty("b"));
+		assertEquals("2", configuration.getProperty("b"));
+	}
+
+	@Test
+	public void testReferencedConfiguration ()
+	{
+		TestConfiguration referenced = TestConfiguration.fromProperties(properties("c", "4"));
+		TestConfiguration configuration = TestConfiguration.fromProperties(
+				properties("a", "1")).withReferencedConfiguration("file", referenced);
+		assertSame(referenced, configuration.getReferencedConfiguration("file"));
+		assertSame(referenced, configuration.withOverrides(properties("a", "2"))
+				.getReferencedConfiguration("file"));
+		assertEquals("1", configuration.getProperty("a"));
+	}
+
+	@Test
+	public void testReferencedConfigurationIsResolvedOnce () throws IOException
+	{
+		File file = File.createTempFile("referenced", ".properties");
+		try
+		{
+			OutputStream out = new FileOutputStream(file);
+			try
+			{
+				properties("c", "4").store(out, null);
+			}
+			finally
+			{
+				out.close();
+			}
+			TestConfiguration configuration = TestConfiguration.fromProperties(
+					properties("file", file.getPath()));
+			TestConfiguration referenced = configuration.getReferencedConfiguration("file");
+			assertEquals("4", referenced.getProperty("c"));
+			assertSame(referenced, configuration.getReferencedConfiguration("file"));
+			// a configuration set for the property still takes precedence over the cached file
+			TestConfiguration override = TestConfiguration.fromProperties(properties("c", "5"));
+			assertSame(override, configuration.withReferencedConfiguration("file", override)
+					.getReferencedConfiguration("file"));
+			assertSame(referenced, configuration.getReferencedConfiguration("file"));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testGetForCurrentThread ()
+	{
+		assertNull(TestConfiguration.getForCurrentThread());
+		TestConfiguration configuration = TestConfiguration.fromProperties(
+				properties("a", "1"));
+		TestConfiguration.setForCurrentThread(configuration);
+		assertSame(configuration, TestConfiguration.getForCurrentThread());
+		TestConfiguration.setForCurrentThread(null);
+		assertNull(TestConfiguration.getForCurrentThread());
+	}
+
+	@Test
+	public void testThreadConfigurationIsInherited () throws Exception
+	{
+		final TestConfiguration configuration = TestConfiguration.fromProperties(
+				properties("a", "1"));
+		TestConfiguration.setForCurrentThread(configuration);
+		assertSame(configuration, TestConfiguration.get());
+		final TestConfiguration[] inherited = new TestConfiguration[1];
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run ()
+			{
+				inherited[0] = TestConfiguration.get();
+			}
+		};
+		thread.start();
+		thread.join();
+		assertSame(configuration, inherited[0]);
+	}
+
+	@Test
+	public void testLoadOnce () throws IOException
+	{
+		File file = File.createTempFile("configuration", ".properties");
+		try
+		{
+			OutputStream out = new FileOutputStream(file);
+			try
+			{
+				properties("a", "1").store(out, null);
+			}
+			finally
+			{
+				out.close();
+			}
+			TestConfiguration configuration = TestConfiguration.load(file.getPath());
+			assertEquals("1", configuration.getProperty("a"));
+			assertNull(configuration.getProperty("b"));
+			assertSame(configuration, TestConfiguration.load(file.getPath()));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+}